@@ -0,0 +1,59 @@
+package geometries;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The slab test of the four children of a {@link BVH4} node with the Vector
+ * API - the four lanes of each bound are loaded as one vector of floats,
+ * widened to doubles, and the six slabs are tested on all the lanes together.
+ * <p>
+ * The class is in a separate source set, since it needs the incubator module
+ * jdk.incubator.vector: compile it with {@code --add-modules
+ * jdk.incubator.vector} together with the sources, and run with the same flag.
+ * {@link BVH4} loads it by its name and falls back to the scalar loop when it
+ * is missing or the module is not there.
+ *
+ * @author David and Matan
+ */
+class BVH4Vector implements BVH4.Lanes {
+	private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_128;
+	private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_256;
+
+	/**
+	 * load the four lanes of a bound as doubles
+	 *
+	 * @param bounds - the bounds of the children of the nodes
+	 * @param offset - the offset of the lanes of the bound
+	 * @return the lanes
+	 */
+	private static DoubleVector lanes(float[] bounds, int offset) {
+		return (DoubleVector) FloatVector.fromArray(FLOATS, bounds, offset).convertShape(VectorOperators.F2D, DOUBLES,
+				0);
+	}
+
+	@Override
+	public int hitChildren(float[] bounds, int base, double ox, double oy, double oz, double idx, double idy,
+			double idz, double max, double[] tNear) {
+		DoubleVector t1 = lanes(bounds, base).sub(ox).mul(idx);
+		DoubleVector t2 = lanes(bounds, base + 3 * BVH4.WIDTH).sub(ox).mul(idx);
+		DoubleVector tMin = t1.min(t2), tMax = t1.max(t2);
+		t1 = lanes(bounds, base + BVH4.WIDTH).sub(oy).mul(idy);
+		t2 = lanes(bounds, base + 4 * BVH4.WIDTH).sub(oy).mul(idy);
+		tMin = tMin.max(t1.min(t2));
+		tMax = tMax.min(t1.max(t2));
+		t1 = lanes(bounds, base + 2 * BVH4.WIDTH).sub(oz).mul(idz);
+		t2 = lanes(bounds, base + 5 * BVH4.WIDTH).sub(oz).mul(idz);
+		tMin = tMin.max(t1.min(t2));
+		tMax = tMax.min(t1.max(t2));
+		// a NaN fails all the comparisons, so the box is considered as hit from the
+		// head of the ray - like the scalar loop
+		VectorMask<Double> miss = tMax.compare(VectorOperators.LT, 0).or(tMin.compare(VectorOperators.GT, tMax))
+				.or(tMin.compare(VectorOperators.GT, max));
+		tMin.blend(0, tMin.compare(VectorOperators.GT, 0).not()).intoArray(tNear, 0);
+		return (int) miss.not().toLong();
+	}
+}
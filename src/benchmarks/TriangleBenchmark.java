@@ -0,0 +1,181 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import geometries.*;
+import geometries.Intersectable.GeoPoint;
+import primitives.*;
+
+/**
+ * Benchmark of the triangles - the memory per triangle and the rays per second
+ * through a hierarchy over a wavy terrain, and the tests per second of a single
+ * triangle. The heap in use and the times depend on the GC and the JIT, so it
+ * is a program that reports them and not a unit test.
+ *
+ * @author David and Matan
+ */
+public final class TriangleBenchmark {
+	private static final int SIZE = 150;
+	private static final int RAYS = 300;
+
+	/**
+	 * the heap in use after collecting the garbage (a hint only - the numbers are
+	 * not exact)
+	 *
+	 * @return bytes in use
+	 */
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; ++i)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * the vertices of a wavy terrain of SIZE x SIZE cells
+	 *
+	 * @return the vertices by rows
+	 */
+	private static Point3D[] terrain() {
+		Point3D[] points = new Point3D[(SIZE + 1) * (SIZE + 1)];
+		for (int i = 0; i <= SIZE; ++i)
+			for (int j = 0; j <= SIZE; ++j)
+				points[i * (SIZE + 1) + j] = new Point3D(j, i, 3 * Math.sin(j * 0.3) * Math.cos(i * 0.2));
+		return points;
+	}
+
+	/**
+	 * build the triangles of the terrain
+	 *
+	 * @param points - the vertices of the terrain
+	 * @param single - true for single precision triangles
+	 * @return the triangles
+	 */
+	private static Geometry[] triangles(Point3D[] points, boolean single) {
+		Material material = new Material().setKd(0.5);
+		Geometry[] triangles = new Geometry[2 * SIZE * SIZE];
+		int k = 0;
+		for (int i = 0; i < SIZE; ++i)
+			for (int j = 0; j < SIZE; ++j) {
+				Point3D a = points[i * (SIZE + 1) + j], b = points[i * (SIZE + 1) + j + 1];
+				Point3D c = points[(i + 1) * (SIZE + 1) + j], d = points[(i + 1) * (SIZE + 1) + j + 1];
+				triangles[k++] = (single ? new FloatTriangle(a, b, d) : new Triangle(a, b, d)).setMaterial(material);
+				triangles[k++] = (single ? new FloatTriangle(a, d, c) : new Triangle(a, d, c)).setMaterial(material);
+			}
+		return triangles;
+	}
+
+	/**
+	 * the time of tracing a grid of rays over the terrain (after a warm up pass
+	 * of the JIT)
+	 *
+	 * @param bodies - the structure over the triangles
+	 * @return the time in nanoseconds
+	 */
+	private static long trace(Intersectable bodies) {
+		Vector dir = new Vector(0.1, 0.05, -1);
+		long time = 0;
+		for (int pass = 0; pass < 2; ++pass) {
+			long start = System.nanoTime();
+			for (int i = 0; i < RAYS; ++i)
+				for (int j = 0; j < RAYS; ++j)
+					bodies.findClosestIntersection(
+							new Ray(new Point3D((j + 0.5) * SIZE / RAYS, (i + 0.5) * SIZE / RAYS, 20), dir));
+			time = System.nanoTime() - start;
+		}
+		return time;
+	}
+
+	/**
+	 * Report the memory per triangle and the rays per second of
+	 * {@link FloatTriangle} against {@link Triangle}
+	 *
+	 * @param points - the vertices of the terrain
+	 */
+	private static void floatTriangles(Point3D[] points) {
+		int count = 2 * SIZE * SIZE;
+		long before = usedMemory();
+		Geometry[] doubles = triangles(points, false);
+		double doubleBytes = (double) (usedMemory() - before) / count;
+		before = usedMemory();
+		Geometry[] floats = triangles(points, true);
+		double floatBytes = (double) (usedMemory() - before) / count;
+		long doubleTime = trace(new BVH(new Geometries(doubles)));
+		long floatTime = trace(new BVH(new Geometries(floats)));
+		System.out.printf("memory per triangle: double %.0f bytes, float %.0f bytes%n", doubleBytes, floatBytes);
+		System.out.printf("rays per second: double %.0f, float %.0f%n", RAYS * RAYS * 1e9 / doubleTime,
+				RAYS * RAYS * 1e9 / floatTime);
+	}
+
+	/**
+	 * Report the memory per triangle of {@link TriangleMesh} against
+	 * {@link Triangle}
+	 *
+	 * @param points - the vertices of the terrain
+	 */
+	private static void mesh(Point3D[] points) {
+		int count = 2 * SIZE * SIZE;
+		long before = usedMemory();
+		Geometry[] triangles = triangles(points, false);
+		double triangleBytes = (double) (usedMemory() - before) / count;
+		List<Triangle> list = new ArrayList<>(count);
+		for (Geometry triangle : triangles)
+			list.add((Triangle) triangle);
+		before = usedMemory();
+		TriangleMesh mesh = new TriangleMesh(list);
+		double meshBytes = (double) (usedMemory() - before) / count;
+		System.out.printf("memory per triangle: Triangle %.0f bytes, TriangleMesh %.0f bytes (%d vertices)%n",
+				triangleBytes, meshBytes, mesh.getVertexCount());
+	}
+
+	/**
+	 * Report the tests per second of a {@link Triangle} against the general path
+	 * of a {@link Polygon} of the same vertices (through its plane), with rays from
+	 * around the triangle toward points near it - about a half of them cross it
+	 */
+	private static void polygon() {
+		final int count = 200000;
+		Point3D a = new Point3D(0, 0, 3), b = new Point3D(3, 0, 0), c = new Point3D(0, 1, 0);
+		Triangle triangle = new Triangle(a, b, c);
+		Polygon polygon = new Polygon(a, b, c);
+		Random random = new Random(1);
+		Ray[] rays = new Ray[count];
+		for (int i = 0; i < count; ++i) {
+			Point3D head = new Point3D(random.nextDouble() * 4 - 0.5, random.nextDouble() * 4 - 2,
+					random.nextDouble() * 4 - 0.5);
+			Point3D target = new Point3D(random.nextDouble() * 3, random.nextDouble(), random.nextDouble() * 3);
+			rays[i] = new Ray(head, target.subtract(head));
+		}
+		long triangleTime = 0, polygonTime = 0;
+		int hits = 0;
+		for (int pass = 0; pass < 3; ++pass) { // the first passes warm up the JIT
+			long start = System.nanoTime();
+			hits = 0;
+			for (Ray ray : rays)
+				if (triangle.findGeoIntersections(ray) != null)
+					++hits;
+			triangleTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (Ray ray : rays)
+				if (polygon.findGeoIntersections(ray) != null)
+					--hits;
+			polygonTime = System.nanoTime() - start;
+		}
+		System.out.printf("tests per second: triangle %.0f, plane and polygon %.0f (hits difference %d)%n",
+				count * 1e9 / triangleTime, count * 1e9 / polygonTime, hits);
+	}
+
+	/**
+	 * Run the benchmarks of the triangles
+	 *
+	 * @param args irrelevant here
+	 */
+	public static void main(String[] args) {
+		Point3D[] points = terrain();
+		floatTriangles(points);
+		mesh(points);
+		polygon();
+	}
+}
@@ -107,8 +107,6 @@ public class Camera {
 	 * @return ray that passes in given pixel in the grid
 	 */
 	public Ray constructRayThroughPixel(int nX, int nY, int j, int i) {
-		// image center
-		Point3D pc = p0.add(vTo.scale(distance));
 		// ratio
 		var ry = height / nY;
 		var rx = width / nX;
@@ -116,15 +114,15 @@ public class Camera {
 		var yi = (i - (nY - 1) / 2.0) * ry;
 		var xj = (j - (nX - 1) / 2.0) * rx;
 
-		Point3D pij = pc;
+		// the pixel is found in a scratch from the image center, so only the ray and
+		// its direction are created
+		MutableVec3 pij = new MutableVec3().set(p0).scaleAdd(distance, vTo);
 		if (xj != 0)
-			pij = pij.add(vRight.scale(xj));
+			pij.scaleAdd(xj, vRight);
 		if (yi != 0)
-			pij = pij.add(vUp.scale(-yi));
+			pij.scaleAdd(-yi, vUp);
 
-		Vector vij = pij.subtract(p0);
-
-		return new Ray(p0, vij);
+		return new Ray(p0, pij.subtract(p0));
 	}
 
 	/**
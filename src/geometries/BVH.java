@@ -0,0 +1,757 @@
+package geometries;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import primitives.*;
+
+/**
+ * Bounding Volume Hierarchy over the bodies of a scene. The hierarchy is a
+ * binary tree of AABBs (built from the {@link Intersectable#getMinBoundary()}
+ * and {@link Intersectable#getMaxBoundary()} of the bodies) where the split of
+ * each node is chosen by the Surface Area Heuristic (SAH).
+ * <p>
+ * Unlike the uniform grid of {@link scene.Box} the hierarchy adapts itself to
+ * the distribution of the bodies, so scenes that mix a few big bodies with
+ * dense clusters of small triangles are handled well.
+ * <p>
+ * The tree is kept flattened in depth first order in primitive arrays: the
+ * first child of an inner node is always the next node, the second child is
+ * referenced by index, and a leaf references a range of the compact bodies
+ * array. The traversal uses an explicit stack of node indexes and allocates
+ * nothing per ray (except the intersection points themselves).
+ * <p>
+ * Unbounded bodies (like planes) can't be in a node, so they are kept aside and
+ * tested by every ray.
+ * <p>
+ * When the bodies move between frames of an animation (but none is added or
+ * removed) the hierarchy is refitted by {@link #refit()} instead of being
+ * rebuilt. The refitted tree keeps its topology, so its quality degrades as the
+ * bodies move away from their places at the build - {@link #degradation()}
+ * tells when a full rebuild becomes worthwhile.
+ * <p>
+ * The binary traversal is the default. A four wide layout of the same tree
+ * (see {@link #setWide(boolean)}) tests the boxes of four children together and
+ * halves the depth of the traversal.
+ *
+ * @author David and Matan
+ */
+public class BVH extends Intersectable {
+
+	/**
+	 * Number of bins for evaluating the SAH on each axis
+	 */
+	private static final int BINS = 12;
+	/**
+	 * Cost of traversing a node relatively to intersecting a body
+	 */
+	private static final double TRAVERSAL_COST = 1;
+	/**
+	 * Nodes with no more bodies than this may become leaves
+	 */
+	private static final int MAX_LEAF_SIZE = 4;
+
+	/**
+	 * The algorithm for building the hierarchy
+	 */
+	public enum Construction {
+		/**
+		 * top down build with the Surface Area Heuristic - the best tree quality
+		 */
+		SAH,
+		/**
+		 * linear build from Morton codes in parallel - the fastest build
+		 */
+		MORTON
+	}
+
+	/**
+	 * the bounds of the nodes - {minX,minY,minZ,maxX,maxY,maxZ} for each node
+	 */
+	private double[] nodeBounds;
+	/**
+	 * inner node - index of the second child, leaf - index of the first body
+	 */
+	private int[] nodeOffset;
+	/**
+	 * inner node - 0, leaf - number of bodies
+	 */
+	private int[] nodeCount;
+	private int nodesUsed = 0;
+	/**
+	 * the bodies ordered such that the bodies of each leaf are consecutive
+	 */
+	private Intersectable[] bodies;
+	/**
+	 * the bodies with infinite boundaries
+	 */
+	private final Geometries unbounded;
+	private int depth = 0;
+	/**
+	 * the SAH cost of the tree right after the build
+	 */
+	private double buildCost = 0;
+	/**
+	 * the four wide layout of the tree - null for the binary traversal
+	 */
+	private BVH4 wide = null;
+	/**
+	 * per thread traversal stack - so the traversal allocates nothing per ray
+	 */
+	private final ThreadLocal<TraversalStack> stacks = ThreadLocal.withInitial(() -> new TraversalStack(depth + 1));
+
+	/**
+	 * stack of nodes to visit with their distance of entry
+	 */
+	private static class TraversalStack {
+		private final int[] nodes;
+		private final double[] distances;
+
+		/**
+		 * Ctor
+		 *
+		 * @param size - maximal number of pending nodes
+		 */
+		private TraversalStack(int size) {
+			nodes = new int[size];
+			distances = new double[size];
+		}
+	}
+
+	/**
+	 * Ctor - build the hierarchy over the bodies of the geometries collection with
+	 * the Surface Area Heuristic
+	 *
+	 * @param geometries - the geometries in the scene
+	 */
+	public BVH(Geometries geometries) {
+		this(geometries, Construction.SAH);
+	}
+
+	/**
+	 * Ctor - build the hierarchy over the bodies of the geometries collection
+	 *
+	 * @param geometries   - the geometries in the scene
+	 * @param construction - the algorithm for building the hierarchy
+	 */
+	public BVH(Geometries geometries, Construction construction) {
+		minBoundary = geometries.getMinBoundary();
+		maxBoundary = geometries.getMaxBoundary();
+		unbounded = geometries.getUnbounded();
+		var list = geometries.getBounded().getBudies().toArray(new Intersectable[0]);
+		int n = list.length;
+		bodies = new Intersectable[n];
+		if (n == 0)
+			return;
+		double[] bounds = new double[6 * n];
+		double[] centroids = new double[3 * n];
+		int[] order = new int[n];
+		for (int i = 0; i < n; ++i) {
+			Point3D min = list[i].minBoundary, max = list[i].maxBoundary;
+			bounds[6 * i] = min.getX();
+			bounds[6 * i + 1] = min.getY();
+			bounds[6 * i + 2] = min.getZ();
+			bounds[6 * i + 3] = max.getX();
+			bounds[6 * i + 4] = max.getY();
+			bounds[6 * i + 5] = max.getZ();
+			for (int axis = 0; axis < 3; ++axis)
+				centroids[3 * i + axis] = (bounds[6 * i + axis] + bounds[6 * i + axis + 3]) / 2;
+			order[i] = i;
+		}
+		if (construction == Construction.MORTON) {
+			LBVHBuilder builder = new LBVHBuilder(ForkJoinPool.commonPool(), bounds, centroids);
+			builder.build();
+			order = builder.order;
+			nodeBounds = builder.nodeBounds;
+			nodeOffset = builder.nodeOffset;
+			nodeCount = builder.nodeCount;
+			nodesUsed = 2 * n - 1;
+			depth = builder.depth;
+		} else {
+			nodeBounds = new double[6 * (2 * n - 1)];
+			nodeOffset = new int[2 * n - 1];
+			nodeCount = new int[2 * n - 1];
+			build(bounds, centroids, order, 0, n, 0);
+		}
+		for (int i = 0; i < n; ++i)
+			bodies[i] = list[order[i]];
+		buildCost = sahCost();
+	}
+
+	/**
+	 * Recompute the bounds of the nodes bottom up from the current boundaries of
+	 * the bodies, after the bodies moved (e.g. by {@link Sphere#setCenter(Point3D)}
+	 * or {@link Instance#setTransform(Transform)}). The topology of the tree is
+	 * kept, so it costs a single pass over the nodes. The bodies must not be
+	 * changed while rays are traced.
+	 *
+	 * @return the hierarchy itself
+	 */
+	public BVH refit() {
+		// the children of a node always come after it, so a backward pass visits
+		// the children before their parent
+		for (int node = nodesUsed - 1; node >= 0; --node) {
+			empty(nodeBounds, node);
+			int count = nodeCount[node];
+			if (count == 0) {
+				grow(nodeBounds, node, nodeBounds, node + 1);
+				grow(nodeBounds, node, nodeBounds, nodeOffset[node]);
+				continue;
+			}
+			int first = nodeOffset[node];
+			for (int i = first; i < first + count; ++i) {
+				Point3D min = bodies[i].minBoundary, max = bodies[i].maxBoundary;
+				int b = 6 * node;
+				nodeBounds[b] = Math.min(nodeBounds[b], min.getX());
+				nodeBounds[b + 1] = Math.min(nodeBounds[b + 1], min.getY());
+				nodeBounds[b + 2] = Math.min(nodeBounds[b + 2], min.getZ());
+				nodeBounds[b + 3] = Math.max(nodeBounds[b + 3], max.getX());
+				nodeBounds[b + 4] = Math.max(nodeBounds[b + 4], max.getY());
+				nodeBounds[b + 5] = Math.max(nodeBounds[b + 5], max.getZ());
+			}
+		}
+		Point3D min = unbounded.getMinBoundary(), max = unbounded.getMaxBoundary();
+		if (nodesUsed > 0) {
+			min = new Point3D(Math.min(min.getX(), nodeBounds[0]), Math.min(min.getY(), nodeBounds[1]),
+					Math.min(min.getZ(), nodeBounds[2]));
+			max = new Point3D(Math.max(max.getX(), nodeBounds[3]), Math.max(max.getY(), nodeBounds[4]),
+					Math.max(max.getZ(), nodeBounds[5]));
+		}
+		minBoundary = min;
+		maxBoundary = max;
+		if (wide != null)
+			setWide(true); // collapse the refitted nodes again
+		return this;
+	}
+
+	/**
+	 * Choose the layout of the traversal - the binary tree (the default) or the
+	 * tree collapsed to four children in each node
+	 *
+	 * @param wide - true for the four wide traversal
+	 * @return the hierarchy itself
+	 */
+	public BVH setWide(boolean wide) {
+		this.wide = wide && nodesUsed > 0 ? new BVH4(nodeBounds, nodeOffset, nodeCount, nodesUsed, bodies, depth)
+				: null;
+		return this;
+	}
+
+	/**
+	 * The SAH cost of the tree - the expected cost of tracing a random ray that
+	 * hits the root, by the areas of the nodes relatively to the root.
+	 *
+	 * @return the cost of the tree (0 for an empty tree)
+	 */
+	public double sahCost() {
+		if (nodesUsed == 0)
+			return 0;
+		double rootArea = area(nodeBounds, 0);
+		if (rootArea <= 0)
+			return bodies.length; // all the bodies in a single point
+		double cost = 0;
+		for (int node = 0; node < nodesUsed; ++node)
+			cost += (nodeCount[node] == 0 ? TRAVERSAL_COST : nodeCount[node]) * area(nodeBounds, node);
+		return cost / rootArea;
+	}
+
+	/**
+	 * The quality of the refitted tree relatively to the tree at the build - the
+	 * ratio of the current SAH cost to the cost right after the build. A ratio
+	 * near 1 means the refit is as good as a rebuild, and when it grows (to about
+	 * 1.5 and more) the time lost tracing the refitted tree outgrows the time of a
+	 * new build.
+	 *
+	 * @return the ratio of the current cost to the cost at the build
+	 */
+	public double degradation() {
+		return buildCost == 0 ? 1 : sahCost() / buildCost;
+	}
+
+	/**
+	 * Recursive build of a sub tree over the bodies in range [from, to) of the
+	 * order. The nodes are emitted in depth first order.
+	 *
+	 * @param bounds    - the bounds of the bodies (6 for each)
+	 * @param centroids - the centroids of the bodies (3 for each)
+	 * @param order     - the order of the bodies (the range is reordered in place)
+	 * @param from      - first body of the node
+	 * @param to        - one after the last body of the node
+	 * @param level     - the depth of the node
+	 * @return the index of the node
+	 */
+	private int build(double[] bounds, double[] centroids, int[] order, int from, int to, int level) {
+		int node = nodesUsed++;
+		depth = Math.max(depth, level);
+		double[] nb = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+				Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		double[] cMin = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+		double[] cMax = { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		for (int i = from; i < to; ++i) {
+			int b = order[i];
+			for (int axis = 0; axis < 3; ++axis) {
+				nb[axis] = Math.min(nb[axis], bounds[6 * b + axis]);
+				nb[axis + 3] = Math.max(nb[axis + 3], bounds[6 * b + axis + 3]);
+				cMin[axis] = Math.min(cMin[axis], centroids[3 * b + axis]);
+				cMax[axis] = Math.max(cMax[axis], centroids[3 * b + axis]);
+			}
+		}
+		System.arraycopy(nb, 0, nodeBounds, 6 * node, 6);
+
+		int count = to - from;
+		int bestAxis = -1, bestBin = -1;
+		double bestCost = Double.POSITIVE_INFINITY;
+		double area = area(nb, 0);
+		double[] binBounds = new double[6 * BINS];
+		int[] binCount = new int[BINS];
+		double[] rightArea = new double[BINS];
+		int[] rightCount = new int[BINS];
+		double[] sweep = new double[6];
+		for (int axis = 0; axis < 3; ++axis) {
+			double extent = cMax[axis] - cMin[axis];
+			if (extent <= 0)
+				continue; // all the centroids on the same place - can't split on this axis
+			for (int b = 0; b < BINS; ++b) {
+				empty(binBounds, b);
+				binCount[b] = 0;
+			}
+			for (int i = from; i < to; ++i) {
+				int b = bin(centroids[3 * order[i] + axis], cMin[axis], extent);
+				++binCount[b];
+				grow(binBounds, b, bounds, order[i]);
+			}
+			// sweep from the right side to get the area and count of each right part
+			empty(sweep, 0);
+			int n = 0;
+			for (int b = BINS - 1; b > 0; --b) {
+				grow(sweep, 0, binBounds, b);
+				n += binCount[b];
+				rightArea[b] = n == 0 ? 0 : area(sweep, 0);
+				rightCount[b] = n;
+			}
+			empty(sweep, 0);
+			n = 0;
+			for (int b = 0; b < BINS - 1; ++b) {
+				grow(sweep, 0, binBounds, b);
+				n += binCount[b];
+				if (n == 0 || rightCount[b + 1] == 0)
+					continue;
+				double cost = TRAVERSAL_COST + (area(sweep, 0) * n + rightArea[b + 1] * rightCount[b + 1]) / area;
+				if (cost < bestCost) {
+					bestCost = cost;
+					bestAxis = axis;
+					bestBin = b;
+				}
+			}
+		}
+		// leaf when there is no split or when the split costs more than the leaf
+		if (bestAxis == -1 || count <= MAX_LEAF_SIZE && count <= bestCost) {
+			nodeOffset[node] = from;
+			nodeCount[node] = count;
+			return node;
+		}
+		// partition the range by the chosen bin
+		double extent = cMax[bestAxis] - cMin[bestAxis];
+		int mid = from;
+		for (int i = from; i < to; ++i)
+			if (bin(centroids[3 * order[i] + bestAxis], cMin[bestAxis], extent) <= bestBin) {
+				int temp = order[i];
+				order[i] = order[mid];
+				order[mid++] = temp;
+			}
+		build(bounds, centroids, order, from, mid, level + 1); // the first child is always node + 1
+		nodeOffset[node] = build(bounds, centroids, order, mid, to, level + 1);
+		nodeCount[node] = 0;
+		return node;
+	}
+
+	/**
+	 * Find the SAH bin of a centroid
+	 *
+	 * @param centroid - the centroid coordinate on the axis
+	 * @param min      - the minimal centroid on the axis
+	 * @param extent   - the extent of the centroids on the axis
+	 * @return the bin index
+	 */
+	private static int bin(double centroid, double min, double extent) {
+		int b = (int) (BINS * (centroid - min) / extent);
+		return b < BINS ? b : BINS - 1;
+	}
+
+	/**
+	 * Set bounds {minX,minY,minZ,maxX,maxY,maxZ} at the index to be empty
+	 *
+	 * @param bounds - array of bounds
+	 * @param index  - the index of the bounds in the array
+	 */
+	private static void empty(double[] bounds, int index) {
+		for (int i = 0; i < 3; ++i) {
+			bounds[6 * index + i] = Double.POSITIVE_INFINITY;
+			bounds[6 * index + i + 3] = Double.NEGATIVE_INFINITY;
+		}
+	}
+
+	/**
+	 * Grow bounds at the index by other bounds
+	 *
+	 * @param bounds - array of bounds to grow
+	 * @param index  - the index of the bounds to grow
+	 * @param other  - array of the other bounds
+	 * @param o      - the index of the other bounds
+	 */
+	private static void grow(double[] bounds, int index, double[] other, int o) {
+		for (int i = 0; i < 3; ++i) {
+			bounds[6 * index + i] = Math.min(bounds[6 * index + i], other[6 * o + i]);
+			bounds[6 * index + i + 3] = Math.max(bounds[6 * index + i + 3], other[6 * o + i + 3]);
+		}
+	}
+
+	/**
+	 * Surface area of bounds {minX,minY,minZ,maxX,maxY,maxZ}
+	 *
+	 * @param b     - array of bounds
+	 * @param index - the index of the bounds in the array
+	 * @return the surface area
+	 */
+	private static double area(double[] b, int index) {
+		double dx = b[6 * index + 3] - b[6 * index];
+		double dy = b[6 * index + 4] - b[6 * index + 1];
+		double dz = b[6 * index + 5] - b[6 * index + 2];
+		return 2 * (dx * dy + dy * dz + dz * dx);
+	}
+
+	/**
+	 * Slab test of the ray against the bounding box of the node
+	 *
+	 * @param node - the node index
+	 * @param ox   - ray origin x
+	 * @param oy   - ray origin y
+	 * @param oz   - ray origin z
+	 * @param idx  - inverse of the ray direction x
+	 * @param idy  - inverse of the ray direction y
+	 * @param idz  - inverse of the ray direction z
+	 * @param max  - maximum distance of intersection
+	 * @return the distance to the box entry, or positive infinity when missed
+	 */
+	private double hitNode(int node, double ox, double oy, double oz, double idx, double idy, double idz,
+			double max) {
+		int b = 6 * node;
+		double t1 = (nodeBounds[b] - ox) * idx, t2 = (nodeBounds[b + 3] - ox) * idx;
+		double tMin = Math.min(t1, t2), tMax = Math.max(t1, t2);
+		t1 = (nodeBounds[b + 1] - oy) * idy;
+		t2 = (nodeBounds[b + 4] - oy) * idy;
+		tMin = Math.max(tMin, Math.min(t1, t2));
+		tMax = Math.min(tMax, Math.max(t1, t2));
+		t1 = (nodeBounds[b + 2] - oz) * idz;
+		t2 = (nodeBounds[b + 5] - oz) * idz;
+		tMin = Math.max(tMin, Math.min(t1, t2));
+		tMax = Math.min(tMax, Math.max(t1, t2));
+		// a NaN (ray on a slab boundary - 0 * infinity) fails all the comparisons, so
+		// the box is conservatively considered as hit from the head of the ray
+		if (tMax < 0 || tMin > tMax || tMin > max)
+			return Double.POSITIVE_INFINITY;
+		return tMin > 0 ? tMin : 0;
+	}
+
+	/**
+	 * Find the closest intersection of the ray with the bodies in the hierarchy.
+	 * Nodes are visited near child first and a node is skipped when its box starts
+	 * farther than the closest intersection found so far.
+	 *
+	 * @param ray - the ray
+	 * @param max - maximum distance of intersection
+	 * @return the closest intersection point or null if there is no intersection
+	 */
+	@Override
+	public GeoPoint findClosestIntersection(Ray ray, double max) {
+		// the unbounded bodies first - their closest point limits the traversal
+		GeoPoint closest = unbounded.findClosestIntersection(ray, max);
+		if (nodesUsed == 0)
+			return closest;
+		Point3D p0 = ray.getP0();
+		Vector dir = ray.getDir();
+		double closestDistance = closest == null ? max : closest.point.distance(p0);
+		double ox = p0.getX(), oy = p0.getY(), oz = p0.getZ();
+		double idx = 1 / dir.getX(), idy = 1 / dir.getY(), idz = 1 / dir.getZ();
+		if (hitNode(0, ox, oy, oz, idx, idy, idz, closestDistance) == Double.POSITIVE_INFINITY)
+			return closest;
+		if (wide != null)
+			return wide.findClosestIntersection(ray, closest, closestDistance);
+
+		TraversalStack stack = stacks.get();
+		int[] nodes = stack.nodes;
+		double[] distances = stack.distances;
+		int sp = 0;
+		int node = 0;
+		while (true) {
+			int count = nodeCount[node];
+			if (count > 0) {
+				int first = nodeOffset[node];
+				for (int i = first; i < first + count; ++i) {
+					var gp = bodies[i].findClosestIntersection(ray, closestDistance);
+					if (gp != null) {
+						double d = gp.point.distance(p0);
+						if (closest == null || d < closestDistance) {
+							closestDistance = d;
+							closest = gp;
+						}
+					}
+				}
+			} else {
+				int left = node + 1, right = nodeOffset[node];
+				double tLeft = hitNode(left, ox, oy, oz, idx, idy, idz, closestDistance);
+				double tRight = hitNode(right, ox, oy, oz, idx, idy, idz, closestDistance);
+				if (tLeft != Double.POSITIVE_INFINITY || tRight != Double.POSITIVE_INFINITY) {
+					if (tRight < tLeft) {
+						node = right;
+						if (tLeft != Double.POSITIVE_INFINITY) {
+							nodes[sp] = left;
+							distances[sp++] = tLeft;
+						}
+					} else {
+						node = left;
+						if (tRight != Double.POSITIVE_INFINITY) {
+							nodes[sp] = right;
+							distances[sp++] = tRight;
+						}
+					}
+					continue;
+				}
+			}
+			// pop the next node that still may contain a closer intersection
+			do {
+				if (sp == 0)
+					return closest;
+				node = nodes[--sp];
+			} while (distances[sp] > closestDistance);
+		}
+	}
+
+	/**
+	 * Find the closest intersections of a packet of rays from a common head (like
+	 * the rays of a block of pixels from the camera). The packet is bounded by the
+	 * intervals of the inverse directions of its rays on each axis, so a node that
+	 * all the rays miss is dropped for the whole packet by a single test, and each
+	 * ray is tested alone only against the boxes of the leaves. The points are the
+	 * same as of {@link #findClosestIntersection(Ray)} of each ray. A packet of
+	 * rays from different heads, or toward both sides of an axis, is traced ray by
+	 * ray.
+	 *
+	 * @param rays - the rays of the packet
+	 * @return the closest intersection point of each ray (null where there is no
+	 *         intersection)
+	 */
+	public GeoPoint[] findClosestIntersections(Ray[] rays) {
+		int n = rays.length;
+		GeoPoint[] closest = new GeoPoint[n];
+		if (n == 0)
+			return closest;
+		Point3D p0 = rays[0].getP0();
+		double ox = p0.getX(), oy = p0.getY(), oz = p0.getZ();
+		double[] origin = { ox, oy, oz };
+		double[] inverse = new double[3 * n];
+		double[] idMin = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+		double[] idMax = { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		boolean coherent = true;
+		for (int i = 0; i < n && coherent; ++i) {
+			Point3D head = rays[i].getP0();
+			Vector dir = rays[i].getDir();
+			coherent = head.getX() == ox && head.getY() == oy && head.getZ() == oz;
+			inverse[3 * i] = 1 / dir.getX();
+			inverse[3 * i + 1] = 1 / dir.getY();
+			inverse[3 * i + 2] = 1 / dir.getZ();
+			for (int axis = 0; axis < 3; ++axis) {
+				idMin[axis] = Math.min(idMin[axis], inverse[3 * i + axis]);
+				idMax[axis] = Math.max(idMax[axis], inverse[3 * i + axis]);
+			}
+		}
+		for (int axis = 0; axis < 3; ++axis)
+			coherent = coherent && (idMin[axis] > 0 || idMax[axis] < 0);
+		if (!coherent || nodesUsed == 0 || wide != null) {
+			for (int i = 0; i < n; ++i)
+				closest[i] = findClosestIntersection(rays[i]);
+			return closest;
+		}
+
+		// the unbounded bodies first - their closest points limit the traversal
+		double[] closestDistance = new double[n];
+		double packetDistance = 0;
+		for (int i = 0; i < n; ++i) {
+			closest[i] = unbounded.findClosestIntersection(rays[i], Double.POSITIVE_INFINITY);
+			closestDistance[i] = closest[i] == null ? Double.POSITIVE_INFINITY : closest[i].point.distance(p0);
+			packetDistance = Math.max(packetDistance, closestDistance[i]);
+		}
+
+		TraversalStack stack = stacks.get();
+		int[] nodes = stack.nodes;
+		double[] distances = stack.distances;
+		int sp = 0;
+		int node = 0;
+		if (hitPacket(node, origin, idMin, idMax, packetDistance) == Double.POSITIVE_INFINITY)
+			return closest;
+		while (true) {
+			int count = nodeCount[node];
+			if (count > 0) {
+				int first = nodeOffset[node];
+				packetDistance = 0;
+				for (int r = 0; r < n; ++r) {
+					if (hitNode(node, ox, oy, oz, inverse[3 * r], inverse[3 * r + 1], inverse[3 * r + 2],
+							closestDistance[r]) != Double.POSITIVE_INFINITY)
+						for (int i = first; i < first + count; ++i) {
+							var gp = bodies[i].findClosestIntersection(rays[r], closestDistance[r]);
+							if (gp != null) {
+								double d = gp.point.distance(p0);
+								if (closest[r] == null || d < closestDistance[r]) {
+									closestDistance[r] = d;
+									closest[r] = gp;
+								}
+							}
+						}
+					packetDistance = Math.max(packetDistance, closestDistance[r]);
+				}
+			} else {
+				int left = node + 1, right = nodeOffset[node];
+				double tLeft = hitPacket(left, origin, idMin, idMax, packetDistance);
+				double tRight = hitPacket(right, origin, idMin, idMax, packetDistance);
+				if (tLeft != Double.POSITIVE_INFINITY || tRight != Double.POSITIVE_INFINITY) {
+					if (tRight < tLeft) {
+						node = right;
+						if (tLeft != Double.POSITIVE_INFINITY) {
+							nodes[sp] = left;
+							distances[sp++] = tLeft;
+						}
+					} else {
+						node = left;
+						if (tRight != Double.POSITIVE_INFINITY) {
+							nodes[sp] = right;
+							distances[sp++] = tRight;
+						}
+					}
+					continue;
+				}
+			}
+			// pop the next node that still may contain a closer intersection of a ray
+			do {
+				if (sp == 0)
+					return closest;
+				node = nodes[--sp];
+			} while (distances[sp] > packetDistance);
+		}
+	}
+
+	/**
+	 * Slab test of a packet of rays from a common head against the bounding box of
+	 * the node. The inverse directions of the rays on each axis are in an interval
+	 * that doesn't cross zero, so the entry and the exit of every ray are bounded
+	 * by the ends of the intervals.
+	 *
+	 * @param node   - the node index
+	 * @param origin - rays origin {x,y,z}
+	 * @param idMin  - minimal inverse of the rays direction on each axis
+	 * @param idMax  - maximal inverse of the rays direction on each axis
+	 * @param max    - maximum distance of intersection of the rays
+	 * @return a lower bound of the distance to the box entry of the rays, or
+	 *         positive infinity when all the rays miss the box
+	 */
+	private double hitPacket(int node, double[] origin, double[] idMin, double[] idMax, double max) {
+		int b = 6 * node;
+		double tMin = Double.NEGATIVE_INFINITY, tMax = Double.POSITIVE_INFINITY;
+		for (int axis = 0; axis < 3; ++axis) {
+			double lo = nodeBounds[b + axis] - origin[axis], hi = nodeBounds[b + axis + 3] - origin[axis];
+			if (idMin[axis] < 0) { // toward the negative side - enters by the high slab
+				double temp = lo;
+				lo = hi;
+				hi = temp;
+			}
+			tMin = Math.max(tMin, Math.min(lo * idMin[axis], lo * idMax[axis]));
+			tMax = Math.min(tMax, Math.max(hi * idMin[axis], hi * idMax[axis]));
+		}
+		// a NaN (a ray on a slab boundary - 0 * infinity) fails all the comparisons,
+		// so the box is conservatively considered as hit from the head of the rays
+		if (tMax < 0 || tMin > tMax || tMin > max)
+			return Double.POSITIVE_INFINITY;
+		return tMin > 0 ? tMin : 0;
+	}
+
+	@Override
+	public List<GeoPoint> findGeoIntersections(Ray ray, double max) {
+		List<GeoPoint> points = unbounded.findGeoIntersections(ray, max);
+		if (nodesUsed == 0)
+			return points;
+		if (wide != null)
+			return wide.findGeoIntersections(ray, max, points);
+		Point3D p0 = ray.getP0();
+		Vector dir = ray.getDir();
+		double ox = p0.getX(), oy = p0.getY(), oz = p0.getZ();
+		double idx = 1 / dir.getX(), idy = 1 / dir.getY(), idz = 1 / dir.getZ();
+
+		int[] nodes = stacks.get().nodes;
+		int sp = 0;
+		nodes[sp++] = 0;
+		while (sp > 0) {
+			int node = nodes[--sp];
+			if (hitNode(node, ox, oy, oz, idx, idy, idz, max) == Double.POSITIVE_INFINITY)
+				continue;
+			int count = nodeCount[node];
+			if (count == 0) {
+				nodes[sp++] = nodeOffset[node];
+				nodes[sp++] = node + 1;
+				continue;
+			}
+			int first = nodeOffset[node];
+			for (int i = first; i < first + count; ++i) {
+				var result = bodies[i].findGeoIntersections(ray, max);
+				if (result != null)
+					if (points == null)
+						points = new LinkedList<GeoPoint>(result);
+					else
+						points.addAll(result);
+			}
+		}
+		return points;
+	}
+
+	@Override
+	public double occlusion(Ray ray, double max, double threshold) {
+		double ktr = unbounded.occlusion(ray, max, threshold);
+		if (nodesUsed == 0 || ktr == 0.0)
+			return ktr;
+		if (wide != null)
+			return wide.occlusion(ray, max, ktr, threshold);
+		Point3D p0 = ray.getP0();
+		Vector dir = ray.getDir();
+		double ox = p0.getX(), oy = p0.getY(), oz = p0.getZ();
+		double idx = 1 / dir.getX(), idy = 1 / dir.getY(), idz = 1 / dir.getZ();
+
+		int[] nodes = stacks.get().nodes;
+		int sp = 0;
+		nodes[sp++] = 0;
+		while (sp > 0) {
+			int node = nodes[--sp];
+			if (hitNode(node, ox, oy, oz, idx, idy, idz, max) == Double.POSITIVE_INFINITY)
+				continue;
+			int count = nodeCount[node];
+			if (count == 0) {
+				nodes[sp++] = nodeOffset[node];
+				nodes[sp++] = node + 1;
+				continue;
+			}
+			int first = nodeOffset[node];
+			for (int i = first; i < first + count; ++i) {
+				ktr *= bodies[i].occlusion(ray, max, threshold / ktr);
+				if (ktr == 0.0 || ktr < threshold)
+					return 0.0; // no need to look for more bodies
+			}
+		}
+		return ktr;
+	}
+
+	@Override
+	public void setMaxBoundary() {
+	} // Already initialized by the geometries
+
+	@Override
+	public void setMinBoundary() {
+	} // Already initialized by the geometries
+}
@@ -0,0 +1,447 @@
+package geometries;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import geometries.Intersectable.GeoPoint;
+import primitives.*;
+
+/**
+ * Four wide layout of a {@link BVH}. The binary tree is collapsed such that
+ * each node has up to four children - an inner node is replaced by its two
+ * children (the biggest first) until there is no more room. The bounds of the
+ * four children of a node are kept together as structure of arrays
+ * {minX[4],minY[4],minZ[4],maxX[4],maxY[4],maxZ[4]} of floats (rounded
+ * outwards, so a box never shrinks), and the slab test of the four children is
+ * done on the four lanes together - by the Vector API kernel {@code BVH4Vector}
+ * of the source set src-vector when it is compiled and the module
+ * jdk.incubator.vector is added, otherwise by a loop over the four lanes. The
+ * tree has half the depth of the binary tree and a node is tested with a single
+ * load of a cache line and a half.
+ * <p>
+ * A child is an inner node (a node index) or a leaf (a range of the bodies of
+ * the binary tree). The traversal stack holds the nodes as non negative indexes
+ * and the leaves as the negative index of their child slot.
+ *
+ * @author David and Matan
+ */
+class BVH4 {
+	/**
+	 * Number of children of a node
+	 */
+	static final int WIDTH = 4;
+	/**
+	 * the slab test of the four lanes - the Vector API kernel when it is there,
+	 * otherwise the scalar loop
+	 */
+	private static final Lanes LANES = lanes();
+
+	/**
+	 * the bounds of the children of each node (6 * WIDTH for each node)
+	 */
+	private final float[] bounds;
+	/**
+	 * inner child - index of its node, leaf child - index of its first body
+	 */
+	private final int[] child;
+	/**
+	 * inner child - 0, leaf child - number of bodies, empty slot - -1
+	 */
+	private final int[] count;
+	/**
+	 * mask of the non empty slots of each node
+	 */
+	private final int[] live;
+	private int nodesUsed = 0;
+	private final Intersectable[] bodies;
+	/**
+	 * per thread traversal stack - so the traversal allocates nothing per ray
+	 */
+	private final ThreadLocal<TraversalStack> stacks;
+
+	/**
+	 * stack of nodes and leaves to visit with their distance of entry, and the
+	 * entry distances of the children of the current node
+	 */
+	private static class TraversalStack {
+		private final int[] nodes;
+		private final double[] distances;
+		private final double[] tNear = new double[WIDTH];
+		private final int[] hits = new int[WIDTH];
+
+		/**
+		 * Ctor
+		 *
+		 * @param size - maximal number of pending nodes
+		 */
+		private TraversalStack(int size) {
+			nodes = new int[size];
+			distances = new double[size];
+		}
+	}
+
+	/**
+	 * Slab test of a ray against the four lanes of the bounds of a node
+	 */
+	interface Lanes {
+		/**
+		 * Slab test of the ray against the four boxes
+		 *
+		 * @param bounds - the bounds of the children of the nodes
+		 * @param base   - the offset of the bounds of the node
+		 * @param ox     - ray origin x
+		 * @param oy     - ray origin y
+		 * @param oz     - ray origin z
+		 * @param idx    - inverse of the ray direction x
+		 * @param idy    - inverse of the ray direction y
+		 * @param idz    - inverse of the ray direction z
+		 * @param max    - maximum distance of intersection
+		 * @param tNear  - the distances to the box entries of the hit lanes
+		 * @return mask of the hit lanes
+		 */
+		int hitChildren(float[] bounds, int base, double ox, double oy, double oz, double idx, double idy,
+				double idz, double max, double[] tNear);
+	}
+
+	/**
+	 * The slab test as one loop over the four lanes
+	 */
+	private static class ScalarLanes implements Lanes {
+		@Override
+		public int hitChildren(float[] bounds, int base, double ox, double oy, double oz, double idx, double idy,
+				double idz, double max, double[] tNear) {
+			int mask = 0;
+			for (int c = 0; c < WIDTH; ++c) {
+				double t1 = (bounds[base + c] - ox) * idx, t2 = (bounds[base + 3 * WIDTH + c] - ox) * idx;
+				double tMin = Math.min(t1, t2), tMax = Math.max(t1, t2);
+				t1 = (bounds[base + WIDTH + c] - oy) * idy;
+				t2 = (bounds[base + 4 * WIDTH + c] - oy) * idy;
+				tMin = Math.max(tMin, Math.min(t1, t2));
+				tMax = Math.min(tMax, Math.max(t1, t2));
+				t1 = (bounds[base + 2 * WIDTH + c] - oz) * idz;
+				t2 = (bounds[base + 5 * WIDTH + c] - oz) * idz;
+				tMin = Math.max(tMin, Math.min(t1, t2));
+				tMax = Math.min(tMax, Math.max(t1, t2));
+				// a NaN (ray on a slab boundary - 0 * infinity) fails all the comparisons,
+				// so the box is conservatively considered as hit from the head of the ray
+				if (!(tMax < 0 || tMin > tMax || tMin > max)) {
+					tNear[c] = tMin > 0 ? tMin : 0;
+					mask |= 1 << c;
+				}
+			}
+			return mask;
+		}
+	}
+
+	/**
+	 * Load the Vector API kernel ({@code geometries.BVH4Vector} of the source set
+	 * src-vector), or the scalar loop when it is not on the class path or the
+	 * module jdk.incubator.vector is not added
+	 *
+	 * @return the kernel of the slab test
+	 */
+	private static Lanes lanes() {
+		try {
+			return (Lanes) Class.forName("geometries.BVH4Vector").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return new ScalarLanes();
+		}
+	}
+
+	/**
+	 * Is the slab test done by the Vector API kernel
+	 *
+	 * @return true if the Vector API kernel is loaded
+	 */
+	static boolean isVectorized() {
+		return !(LANES instanceof ScalarLanes);
+	}
+
+	/**
+	 * Ctor - collapse the binary tree (in the flattened depth first layout of
+	 * {@link BVH})
+	 *
+	 * @param nodeBounds - the bounds of the binary nodes
+	 * @param nodeOffset - inner node - index of the second child, leaf - index of
+	 *                   the first body
+	 * @param nodeCount  - inner node - 0, leaf - number of bodies
+	 * @param nodesUsed  - number of the binary nodes (at least one)
+	 * @param bodies     - the bodies of the leaves
+	 * @param depth      - the depth of the binary tree
+	 */
+	BVH4(double[] nodeBounds, int[] nodeOffset, int[] nodeCount, int nodesUsed, Intersectable[] bodies, int depth) {
+		this.bodies = bodies;
+		// each node takes at least one inner binary node (or the single leaf root)
+		int capacity = Math.max(1, nodesUsed / 2);
+		bounds = new float[6 * WIDTH * capacity];
+		child = new int[WIDTH * capacity];
+		count = new int[WIDTH * capacity];
+		live = new int[capacity];
+		collapse(nodeBounds, nodeOffset, nodeCount, 0);
+		// each node on the path pushes up to WIDTH - 1 siblings besides the one
+		// that is visited
+		stacks = ThreadLocal.withInitial(() -> new TraversalStack(WIDTH * (depth + 2)));
+	}
+
+	/**
+	 * Collapse the binary sub tree into a node and its descendants
+	 *
+	 * @param nodeBounds - the bounds of the binary nodes
+	 * @param nodeOffset - the offsets of the binary nodes
+	 * @param nodeCount  - the counts of the binary nodes
+	 * @param node       - the root of the binary sub tree
+	 * @return the index of the node
+	 */
+	private int collapse(double[] nodeBounds, int[] nodeOffset, int[] nodeCount, int node) {
+		int wide = nodesUsed++;
+		int[] slots = new int[WIDTH];
+		int n = 0;
+		slots[n++] = node;
+		// open the biggest inner node while there is room for its children
+		while (n < WIDTH) {
+			int best = -1;
+			double bestArea = -1;
+			for (int i = 0; i < n; ++i)
+				if (nodeCount[slots[i]] == 0) {
+					double area = area(nodeBounds, slots[i]);
+					if (area > bestArea) {
+						bestArea = area;
+						best = i;
+					}
+				}
+			if (best == -1)
+				break; // only leaves
+			int opened = slots[best];
+			slots[best] = opened + 1;
+			slots[n++] = nodeOffset[opened];
+		}
+		int base = 6 * WIDTH * wide;
+		for (int c = 0; c < WIDTH; ++c) {
+			int slot = WIDTH * wide + c;
+			if (c >= n) {
+				count[slot] = -1;
+				continue;
+			}
+			live[wide] |= 1 << c;
+			int b = slots[c];
+			for (int axis = 0; axis < 3; ++axis) {
+				bounds[base + WIDTH * axis + c] = down(nodeBounds[6 * b + axis]);
+				bounds[base + WIDTH * (axis + 3) + c] = up(nodeBounds[6 * b + axis + 3]);
+			}
+			if (nodeCount[b] > 0) {
+				child[slot] = nodeOffset[b];
+				count[slot] = nodeCount[b];
+			} else {
+				count[slot] = 0;
+				child[slot] = collapse(nodeBounds, nodeOffset, nodeCount, b);
+			}
+		}
+		return wide;
+	}
+
+	/**
+	 * Surface area of the bounds of a binary node
+	 *
+	 * @param b     - array of bounds {minX,minY,minZ,maxX,maxY,maxZ}
+	 * @param index - the index of the bounds in the array
+	 * @return the surface area
+	 */
+	private static double area(double[] b, int index) {
+		double dx = b[6 * index + 3] - b[6 * index];
+		double dy = b[6 * index + 4] - b[6 * index + 1];
+		double dz = b[6 * index + 5] - b[6 * index + 2];
+		return 2 * (dx * dy + dy * dz + dz * dx);
+	}
+
+	/**
+	 * the closest float that isn't above the value
+	 *
+	 * @param value - the value
+	 * @return the float
+	 */
+	private static float down(double value) {
+		float f = (float) value;
+		return f > value ? Math.nextDown(f) : f;
+	}
+
+	/**
+	 * the closest float that isn't below the value
+	 *
+	 * @param value - the value
+	 * @return the float
+	 */
+	private static float up(double value) {
+		float f = (float) value;
+		return f < value ? Math.nextUp(f) : f;
+	}
+
+	/**
+	 * Slab test of the ray against the boxes of the four children of a node
+	 *
+	 * @param node  - the node index
+	 * @param ox    - ray origin x
+	 * @param oy    - ray origin y
+	 * @param oz    - ray origin z
+	 * @param idx   - inverse of the ray direction x
+	 * @param idy   - inverse of the ray direction y
+	 * @param idz   - inverse of the ray direction z
+	 * @param max   - maximum distance of intersection
+	 * @param tNear - the distances to the box entries of the hit children
+	 * @return mask of the hit children
+	 */
+	private int hitChildren(int node, double ox, double oy, double oz, double idx, double idy, double idz,
+			double max, double[] tNear) {
+		return LANES.hitChildren(bounds, 6 * WIDTH * node, ox, oy, oz, idx, idy, idz, max, tNear) & live[node];
+	}
+
+	/**
+	 * the stack entry of a child
+	 *
+	 * @param slot - the slot of the child
+	 * @return the node index of an inner child, or the negative slot of a leaf
+	 */
+	private int entry(int slot) {
+		return count[slot] == 0 ? child[slot] : -slot - 1;
+	}
+
+	/**
+	 * Find the closest intersection of the ray with the bodies in the tree. The hit
+	 * children of a node are visited near first.
+	 *
+	 * @param ray             - the ray
+	 * @param closest         - the closest intersection found so far (or null)
+	 * @param closestDistance - the distance of the closest intersection (or the
+	 *                        maximum distance)
+	 * @return the closest intersection point or null if there is no intersection
+	 */
+	GeoPoint findClosestIntersection(Ray ray, GeoPoint closest, double closestDistance) {
+		Point3D p0 = ray.getP0();
+		Vector dir = ray.getDir();
+		double ox = p0.getX(), oy = p0.getY(), oz = p0.getZ();
+		double idx = 1 / dir.getX(), idy = 1 / dir.getY(), idz = 1 / dir.getZ();
+
+		TraversalStack stack = stacks.get();
+		int[] nodes = stack.nodes, hits = stack.hits;
+		double[] distances = stack.distances, tNear = stack.tNear;
+		int sp = 0;
+		nodes[sp] = 0;
+		distances[sp++] = 0;
+		while (sp > 0) {
+			int node = nodes[--sp];
+			if (distances[sp] > closestDistance)
+				continue;
+			if (node < 0) {
+				int slot = -node - 1;
+				int first = child[slot];
+				for (int i = first; i < first + count[slot]; ++i) {
+					var gp = bodies[i].findClosestIntersection(ray, closestDistance);
+					if (gp != null) {
+						double d = gp.point.distance(p0);
+						if (closest == null || d < closestDistance) {
+							closestDistance = d;
+							closest = gp;
+						}
+					}
+				}
+				continue;
+			}
+			int mask = hitChildren(node, ox, oy, oz, idx, idy, idz, closestDistance, tNear);
+			// sort the hit children far to near, so the nearest is popped first
+			int n = 0;
+			for (int c = 0; c < WIDTH; ++c)
+				if ((mask & 1 << c) != 0) {
+					int i = n++;
+					for (; i > 0 && tNear[hits[i - 1]] < tNear[c]; --i)
+						hits[i] = hits[i - 1];
+					hits[i] = c;
+				}
+			for (int i = 0; i < n; ++i) {
+				nodes[sp] = entry(WIDTH * node + hits[i]);
+				distances[sp++] = tNear[hits[i]];
+			}
+		}
+		return closest;
+	}
+
+	/**
+	 * Find all the intersections of the ray with the bodies in the tree
+	 *
+	 * @param ray    - the ray
+	 * @param max    - maximum distance of intersection
+	 * @param points - the intersections found so far (or null)
+	 * @return the intersections or null if there is no intersection
+	 */
+	List<GeoPoint> findGeoIntersections(Ray ray, double max, List<GeoPoint> points) {
+		Point3D p0 = ray.getP0();
+		Vector dir = ray.getDir();
+		double ox = p0.getX(), oy = p0.getY(), oz = p0.getZ();
+		double idx = 1 / dir.getX(), idy = 1 / dir.getY(), idz = 1 / dir.getZ();
+
+		TraversalStack stack = stacks.get();
+		int[] nodes = stack.nodes;
+		double[] tNear = stack.tNear;
+		int sp = 0;
+		nodes[sp++] = 0;
+		while (sp > 0) {
+			int node = nodes[--sp];
+			if (node >= 0) {
+				int mask = hitChildren(node, ox, oy, oz, idx, idy, idz, max, tNear);
+				for (int c = 0; c < WIDTH; ++c)
+					if ((mask & 1 << c) != 0)
+						nodes[sp++] = entry(WIDTH * node + c);
+				continue;
+			}
+			int slot = -node - 1;
+			int first = child[slot];
+			for (int i = first; i < first + count[slot]; ++i) {
+				var result = bodies[i].findGeoIntersections(ray, max);
+				if (result != null)
+					if (points == null)
+						points = new LinkedList<GeoPoint>(result);
+					else
+						points.addAll(result);
+			}
+		}
+		return points;
+	}
+
+	/**
+	 * The transparency of the bodies in the tree along the ray
+	 *
+	 * @param ray       - the ray
+	 * @param max       - maximum distance of intersection
+	 * @param ktr       - the transparency found so far
+	 * @param threshold - transparency below it is considered as blocked
+	 * @return the transparency, or 0 when it falls below the threshold
+	 */
+	double occlusion(Ray ray, double max, double ktr, double threshold) {
+		Point3D p0 = ray.getP0();
+		Vector dir = ray.getDir();
+		double ox = p0.getX(), oy = p0.getY(), oz = p0.getZ();
+		double idx = 1 / dir.getX(), idy = 1 / dir.getY(), idz = 1 / dir.getZ();
+
+		TraversalStack stack = stacks.get();
+		int[] nodes = stack.nodes;
+		double[] tNear = stack.tNear;
+		int sp = 0;
+		nodes[sp++] = 0;
+		while (sp > 0) {
+			int node = nodes[--sp];
+			if (node >= 0) {
+				int mask = hitChildren(node, ox, oy, oz, idx, idy, idz, max, tNear);
+				for (int c = 0; c < WIDTH; ++c)
+					if ((mask & 1 << c) != 0)
+						nodes[sp++] = entry(WIDTH * node + c);
+				continue;
+			}
+			int slot = -node - 1;
+			int first = child[slot];
+			for (int i = first; i < first + count[slot]; ++i) {
+				ktr *= bodies[i].occlusion(ray, max, threshold / ktr);
+				if (ktr == 0.0 || ktr < threshold)
+					return 0.0; // no need to look for more bodies
+			}
+		}
+		return ktr;
+	}
+}
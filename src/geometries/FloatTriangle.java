@@ -0,0 +1,189 @@
+package geometries;
+
+import java.util.List;
+
+import primitives.Point3D;
+import primitives.Ray;
+import primitives.Vector;
+
+/**
+ * A triangle in single precision - for scenes of millions of triangles, where
+ * the vertices in doubles and the objects of {@link Triangle} (its points, its
+ * plane and their vectors) make the working set far larger than the caches.
+ * The triangle keeps only its first vertex, its two edges and its unit normal
+ * as floats, and it is intersected by the Moller-Trumbore test in floats.
+ * <p>
+ * The absolute thresholds of {@link primitives.Util#alignZero(double)} are
+ * below the precision of a float, so the test uses thresholds relative to the
+ * sizes of the calculation instead:
+ * <ul>
+ * <li>a ray is parallel to the triangle when the cosine between the ray and
+ * the normal is below {@link #PARALLEL_EPSILON}
+ * <li>the edges and the vertices belong to the triangle up to
+ * {@link #BARYCENTRIC_EPSILON} of the edges, so the triangles of a mesh leave
+ * no cracks between them
+ * <li>a hit is in front of the head of the ray when its distance is more than
+ * {@link #DISTANCE_EPSILON} of the distance of the head from the first vertex
+ * </ul>
+ * The hit point is calculated from the barycentric coordinates on the triangle
+ * (and not along the ray), so it lies on the triangle up to the precision of a
+ * float.
+ *
+ * @author David and Matan
+ */
+public class FloatTriangle extends Geometry {
+
+	/**
+	 * the cosine between the ray and the normal below which the ray is parallel
+	 * to the triangle
+	 */
+	public static final float PARALLEL_EPSILON = 1e-6f;
+	/**
+	 * the part of the edges by which the barycentric coordinates may be outside
+	 * the triangle
+	 */
+	public static final float BARYCENTRIC_EPSILON = 1e-5f;
+	/**
+	 * the part of the distance of the head of the ray from the first vertex below
+	 * which a hit is considered as the head itself
+	 */
+	public static final float DISTANCE_EPSILON = 1e-5f;
+
+	/**
+	 * the first vertex
+	 */
+	private final float x0, y0, z0;
+	/**
+	 * the edge from the first vertex to the second
+	 */
+	private final float e1x, e1y, e1z;
+	/**
+	 * the edge from the first vertex to the third
+	 */
+	private final float e2x, e2y, e2z;
+	/**
+	 * the unit normal (the direction of e1 x e2, like {@link Triangle})
+	 */
+	private final float nx, ny, nz;
+
+	/**
+	 * FloatTriangle constructor receiving a 3 Point3d values - the vertices are
+	 * rounded to floats
+	 *
+	 * @param point  - a one Vertex value
+	 * @param point1 - a one Vertex value
+	 * @param point2 - a one Vertex value
+	 * @throws IllegalArgumentException
+	 *                                  <li>When one of the points is similar to the
+	 *                                  other
+	 *                                  <li>When they are on the same straight line
+	 *                                  (also after rounding to floats)
+	 */
+	public FloatTriangle(Point3D point, Point3D point1, Point3D point2) {
+		x0 = (float) point.getX();
+		y0 = (float) point.getY();
+		z0 = (float) point.getZ();
+		e1x = (float) point1.getX() - x0;
+		e1y = (float) point1.getY() - y0;
+		e1z = (float) point1.getZ() - z0;
+		e2x = (float) point2.getX() - x0;
+		e2y = (float) point2.getY() - y0;
+		e2z = (float) point2.getZ() - z0;
+		// the normal of the rounded edges - throws for a degenerate triangle
+		Vector n = new Vector(e1x, e1y, e1z).crossProduct(new Vector(e2x, e2y, e2z)).normalize();
+		nx = (float) n.getX();
+		ny = (float) n.getY();
+		nz = (float) n.getZ();
+		setMinBoundary();
+		setMaxBoundary();
+	}
+
+	/**
+	 * FloatTriangle constructor receiving a triangle - its vertices are rounded to
+	 * floats, and its emission and material are shared
+	 *
+	 * @param triangle - the triangle in double precision
+	 */
+	public FloatTriangle(Triangle triangle) {
+		this(triangle.getVertices().get(0), triangle.getVertices().get(1), triangle.getVertices().get(2));
+		setEmission(triangle.getEmission());
+		setMaterial(triangle.getMaterial());
+	}
+
+	/**
+	 * getter the vertices (as rounded to floats)
+	 *
+	 * @return the three vertices
+	 */
+	public List<Point3D> getVertices() {
+		return List.of(new Point3D(x0, y0, z0), new Point3D(x0 + (double) e1x, y0 + (double) e1y, z0 + (double) e1z),
+				new Point3D(x0 + (double) e2x, y0 + (double) e2y, z0 + (double) e2z));
+	}
+
+	@Override
+	public Vector getNormal(Point3D point) {
+		return new Vector(nx, ny, nz);
+	}
+
+	@Override
+	public List<GeoPoint> findGeoIntersections(Ray ray, double max) {
+		Vector dir = ray.getDir();
+		float dx = (float) dir.getX(), dy = (float) dir.getY(), dz = (float) dir.getZ();
+		// the direction is a unit vector, so this is the cosine to the normal
+		float dn = dx * nx + dy * ny + dz * nz;
+		if (dn > -PARALLEL_EPSILON && dn < PARALLEL_EPSILON)
+			return null;
+
+		float px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+		float inverse = 1 / (e1x * px + e1y * py + e1z * pz);
+		// the head of the ray from the first vertex - subtracted in doubles, so the
+		// rounding is relative to the size of the triangle and not of the scene
+		Point3D p0 = ray.getP0();
+		float sx = (float) (p0.getX() - x0), sy = (float) (p0.getY() - y0), sz = (float) (p0.getZ() - z0);
+		float u = (sx * px + sy * py + sz * pz) * inverse;
+		if (u < -BARYCENTRIC_EPSILON || u > 1 + BARYCENTRIC_EPSILON)
+			return null;
+
+		float qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+		float v = (dx * qx + dy * qy + dz * qz) * inverse;
+		if (v < -BARYCENTRIC_EPSILON || u + v > 1 + BARYCENTRIC_EPSILON)
+			return null;
+
+		float t = (e2x * qx + e2y * qy + e2z * qz) * inverse;
+		if (t <= DISTANCE_EPSILON * (Math.abs(sx) + Math.abs(sy) + Math.abs(sz)) || t > max)
+			return null;
+		return List.of(new GeoPoint(this, new Point3D(x0 + (double) u * e1x + (double) v * e2x,
+				y0 + (double) u * e1y + (double) v * e2y, z0 + (double) u * e1z + (double) v * e2z)));
+	}
+
+	@Override
+	public void setMaxBoundary() {
+		maxBoundary = new Point3D(bound(x0, e1x, e2x, 1), bound(y0, e1y, e2y, 1), bound(z0, e1z, e2z, 1));
+	}
+
+	@Override
+	public void setMinBoundary() {
+		minBoundary = new Point3D(bound(x0, e1x, e2x, -1), bound(y0, e1y, e2y, -1), bound(z0, e1z, e2z, -1));
+	}
+
+	/**
+	 * the boundary of the triangle on an axis - widened by the tolerance of the
+	 * barycentric coordinates, so the hits on the edges are inside the boundaries
+	 *
+	 * @param origin - the coordinate of the first vertex
+	 * @param edge1  - the coordinate of the first edge
+	 * @param edge2  - the coordinate of the second edge
+	 * @param side   - 1 for the maximum, -1 for the minimum
+	 * @return the boundary
+	 */
+	private static double bound(float origin, float edge1, float edge2, int side) {
+		double low = Math.min(0, Math.min(edge1, edge2)), high = Math.max(0, Math.max(edge1, edge2));
+		double pad = 2 * BARYCENTRIC_EPSILON * (high - low);
+		return side > 0 ? origin + high + pad : origin + low - pad;
+	}
+
+	@Override
+	public String toString() {
+		return "vertices=" + getVertices() + ", normal=" + getNormal(null);
+	}
+}
@@ -46,6 +46,39 @@ public class Geometries extends Intersectable {
 		return bodies;
 	}
 
+	/**
+	 * get the bounded bodies - an acceleration structure is built over them
+	 * 
+	 * @return new collection of the bodies with finite boundaries
+	 */
+	public Geometries getBounded() {
+		return split(true);
+	}
+
+	/**
+	 * get the unbounded bodies (like planes and tubes) - they are tested by every
+	 * ray beside the acceleration structure
+	 * 
+	 * @return new collection of the bodies with infinite boundaries
+	 */
+	public Geometries getUnbounded() {
+		return split(false);
+	}
+
+	/**
+	 * split the bodies by their boundaries
+	 * 
+	 * @param bounded - true for the bounded bodies, false for the unbounded
+	 * @return new collection of the bodies
+	 */
+	private Geometries split(boolean bounded) {
+		var part = new Geometries();
+		for (var body : bodies)
+			if (body.isBounded() == bounded)
+				part.add(body);
+		return part;
+	}
+
 	/**
 	 * add bodies to the list of bodies
 	 * 
@@ -93,6 +126,38 @@ public class Geometries extends Intersectable {
 		return points;
 	}
 
+	@Override
+	public GeoPoint findClosestIntersection(Ray ray, double max) {
+		GeoPoint closest = null;
+		double closestDistance = max;
+		if (bodies != null) {
+			Point3D p0 = ray.getP0();
+			for (var body : bodies) {
+				// only a closer point than the closest so far is relevant
+				var gp = body.findClosestIntersection(ray, closestDistance);
+				if (gp != null) {
+					double distance = gp.point.distance(p0);
+					if (closest == null || distance < closestDistance) {
+						closestDistance = distance;
+						closest = gp;
+					}
+				}
+			}
+		}
+		return closest;
+	}
+
+	@Override
+	public double occlusion(Ray ray, double max, double threshold) {
+		double ktr = 1.0;
+		for (var body : bodies) {
+			ktr *= body.occlusion(ray, max, threshold / ktr);
+			if (ktr == 0.0 || ktr < threshold)
+				return 0.0; // no need to look for more bodies
+		}
+		return ktr;
+	}
+
 	@Override
 	public void setMaxBoundary() {
 		double x, y, z;
@@ -0,0 +1,169 @@
+package geometries;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import primitives.*;
+
+/**
+ * Instance of a shared mesh placed in the scene by an affine transform. The
+ * mesh (usually a bottom level acceleration structure like {@link BVH} over the
+ * bodies of the mesh) is built once and shared by all its instances, and each
+ * instance holds only its transform and its boundaries - so a scene of
+ * thousands of identical props takes memory by the number of instances and not
+ * by the number of instances times the bodies of the mesh. The instances
+ * themselves are bounded bodies, so a top level structure is built over them.
+ * <p>
+ * The ray is transformed into the space of the mesh, and the points and
+ * normals that are found are transformed back into the scene.
+ *
+ * @author David and Matan
+ */
+public class Instance extends Intersectable {
+
+	private final Intersectable mesh;
+	private Transform transform;
+
+	/**
+	 * Ctor - place the mesh in the scene
+	 *
+	 * @param mesh      - the shared mesh
+	 * @param transform - the transform from the space of the mesh into the scene
+	 */
+	public Instance(Intersectable mesh, Transform transform) {
+		this.mesh = mesh;
+		this.transform = transform;
+		setMinBoundary();
+		setMaxBoundary();
+	}
+
+	/**
+	 * getter the shared mesh
+	 *
+	 * @return the mesh
+	 */
+	public Intersectable getMesh() {
+		return mesh;
+	}
+
+	/**
+	 * getter the transform of the instance
+	 *
+	 * @return the transform from the space of the mesh into the scene
+	 */
+	public Transform getTransform() {
+		return transform;
+	}
+
+	/**
+	 * setter the transform of the instance - move the instance (and its
+	 * boundaries), e.g. for the next frame of an animation
+	 *
+	 * @param transform - the new transform from the space of the mesh into the
+	 *                  scene
+	 * @return the instance itself
+	 */
+	public Instance setTransform(Transform transform) {
+		this.transform = transform;
+		setMinBoundary();
+		setMaxBoundary();
+		return this;
+	}
+
+	/**
+	 * the ray in the space of the mesh
+	 *
+	 * @param ray - the ray in the scene
+	 * @param dir - the direction of the ray in the space of the mesh
+	 * @return the ray in the space of the mesh
+	 */
+	private Ray toMesh(Ray ray, Vector dir) {
+		return new Ray(transform.inversePoint(ray.getP0()), dir);
+	}
+
+	/**
+	 * the maximum distance in the space of the mesh - the distances along the ray
+	 * are scaled by the transform
+	 *
+	 * @param dir - the direction of the ray in the space of the mesh (before
+	 *            normalizing)
+	 * @param max - maximum distance of intersection in the scene
+	 * @return maximum distance of intersection in the space of the mesh
+	 */
+	private double toMesh(Vector dir, double max) {
+		return max == Double.POSITIVE_INFINITY ? max : max * dir.length();
+	}
+
+	/**
+	 * the point of the mesh in the scene
+	 *
+	 * @param gp - the point in the space of the mesh
+	 * @return the point in the scene with the normal of the transformed body
+	 */
+	private GeoPoint toScene(GeoPoint gp) {
+		return new GeoPoint(gp.geometry, transform.transformPoint(gp.point),
+				transform.transformNormal(gp.getNormal()), gp.emission, gp.material);
+	}
+
+	@Override
+	public List<GeoPoint> findGeoIntersections(Ray ray, double max) {
+		Vector dir = transform.inverseVector(ray.getDir());
+		var result = mesh.findGeoIntersections(toMesh(ray, dir), toMesh(dir, max));
+		if (result == null)
+			return null;
+		List<GeoPoint> points = new LinkedList<GeoPoint>();
+		for (GeoPoint gp : result)
+			points.add(toScene(gp));
+		return points;
+	}
+
+	@Override
+	public GeoPoint findClosestIntersection(Ray ray, double max) {
+		Vector dir = transform.inverseVector(ray.getDir());
+		GeoPoint gp = mesh.findClosestIntersection(toMesh(ray, dir), toMesh(dir, max));
+		return gp == null ? null : toScene(gp);
+	}
+
+	@Override
+	public double occlusion(Ray ray, double max, double threshold) {
+		Vector dir = transform.inverseVector(ray.getDir());
+		return mesh.occlusion(toMesh(ray, dir), toMesh(dir, max), threshold);
+	}
+
+	@Override
+	public void setMaxBoundary() {
+		if (!mesh.isBounded())
+			return; // the instance of an unbounded mesh is unbounded
+		double[] corners = corners();
+		maxBoundary = new Point3D(corners[3], corners[4], corners[5]);
+	}
+
+	@Override
+	public void setMinBoundary() {
+		if (!mesh.isBounded())
+			return; // the instance of an unbounded mesh is unbounded
+		double[] corners = corners();
+		minBoundary = new Point3D(corners[0], corners[1], corners[2]);
+	}
+
+	/**
+	 * the boundaries of the transformed corners of the mesh boundaries
+	 *
+	 * @return {minX,minY,minZ,maxX,maxY,maxZ}
+	 */
+	private double[] corners() {
+		Point3D min = mesh.getMinBoundary(), max = mesh.getMaxBoundary();
+		double[] bounds = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+				Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		for (int corner = 0; corner < 8; ++corner) {
+			Point3D p = transform.transformPoint(new Point3D((corner & 1) == 0 ? min.getX() : max.getX(),
+					(corner & 2) == 0 ? min.getY() : max.getY(), (corner & 4) == 0 ? min.getZ() : max.getZ()));
+			double[] xyz = { p.getX(), p.getY(), p.getZ() };
+			for (int axis = 0; axis < 3; ++axis) {
+				bounds[axis] = Math.min(bounds[axis], xyz[axis]);
+				bounds[axis + 3] = Math.max(bounds[axis + 3], xyz[axis]);
+			}
+		}
+		return bounds;
+	}
+}
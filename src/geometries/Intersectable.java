@@ -27,6 +27,18 @@ public abstract class Intersectable {
 	public static class GeoPoint {
 		public Geometry geometry;
 		public Point3D point;
+		/**
+		 * the normal of the body in the point when the body is transformed (null -
+		 * the geometry calculates it)
+		 */
+		public Vector normal;
+		/**
+		 * the emission and the material of the point when they are not of the
+		 * geometry (null - the geometry has them), like a face of a mesh of several
+		 * surfaces
+		 */
+		public Color emission;
+		public Material material;
 
 		/**
 		 * Ctor - build the GeoPoint
@@ -39,6 +51,62 @@ public abstract class Intersectable {
 			this.point = point;
 		}
 
+		/**
+		 * Ctor - build the GeoPoint of a transformed body
+		 * 
+		 * @param body   - the geometry Body that have a point
+		 * @param point  - the point on the transformed body
+		 * @param normal - the normal of the transformed body in the point
+		 */
+		public GeoPoint(Geometry body, Point3D point, Vector normal) {
+			geometry = body;
+			this.point = point;
+			this.normal = normal;
+		}
+
+		/**
+		 * Ctor - build the GeoPoint of a part of a body with its own emission and
+		 * material
+		 * 
+		 * @param body     - the geometry Body that have a point
+		 * @param point    - the point on the body
+		 * @param normal   - the normal of the body in the point
+		 * @param emission - the emission of the body in the point
+		 * @param material - the material of the body in the point
+		 */
+		public GeoPoint(Geometry body, Point3D point, Vector normal, Color emission, Material material) {
+			this(body, point, normal);
+			this.emission = emission;
+			this.material = material;
+		}
+
+		/**
+		 * get the normal of the body in the point
+		 * 
+		 * @return the normal
+		 */
+		public Vector getNormal() {
+			return normal != null ? normal : geometry.getNormal(point);
+		}
+
+		/**
+		 * get the emission of the body in the point
+		 * 
+		 * @return the emission
+		 */
+		public Color getEmission() {
+			return emission != null ? emission : geometry.getEmission();
+		}
+
+		/**
+		 * get the material of the body in the point
+		 * 
+		 * @return the material
+		 */
+		public Material getMaterial() {
+			return material != null ? material : geometry.getMaterial();
+		}
+
 		@Override
 		public boolean equals(Object obj) {
 			if (this == obj)
@@ -73,6 +141,59 @@ public abstract class Intersectable {
 		return findGeoIntersections(ray, Double.POSITIVE_INFINITY);
 	}
 
+	/**
+	 * Function for finding the closest intersection point of the Ray in the
+	 * Geometry up to a maximum distance. Collections of bodies pass the distance
+	 * of the closest point found so far as the maximum distance of the next
+	 * bodies, so farther bodies are rejected early.
+	 * 
+	 * @param ray - The ray that crosses the body
+	 * @param max - maximum distance of intersection
+	 * @return the closest intersection point, null if there is no intersection
+	 *         point
+	 */
+	public GeoPoint findClosestIntersection(Ray ray, double max) {
+		return ray.findClosestGeoPoint(findGeoIntersections(ray, max));
+	}
+
+	/**
+	 * Function for finding the closest intersection point of the Ray in the
+	 * Geometry
+	 * 
+	 * @param ray - The ray that crosses the body
+	 * @return the closest intersection point, null if there is no intersection
+	 *         point
+	 */
+	public GeoPoint findClosestIntersection(Ray ray) {
+		return findClosestIntersection(ray, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Function for finding how much light passes along the Ray through the
+	 * geometry up to a maximum distance - the product of the transparency factors
+	 * of all the intersection points. The product is stopped as soon as it falls
+	 * below the threshold, so an opaque body ends the query at its first
+	 * intersection.
+	 * 
+	 * @param ray       - The ray that crosses the body
+	 * @param max       - maximum distance of intersection
+	 * @param threshold - transmittance below this is considered as full shadow
+	 * @return the transmittance (1 - no intersection), or 0 when it falls below
+	 *         the threshold
+	 */
+	public double occlusion(Ray ray, double max, double threshold) {
+		var intersections = findGeoIntersections(ray, max);
+		if (intersections == null)
+			return 1.0;
+		double ktr = 1.0;
+		for (GeoPoint geopoint : intersections) {
+			ktr *= geopoint.getMaterial().kT;
+			if (ktr < threshold)
+				return 0.0;
+		}
+		return ktr;
+	}
+
 	/**
 	 * Function for finding intersection points
 	 * 
@@ -102,6 +223,18 @@ public abstract class Intersectable {
 		return minBoundary;
 	}
 
+	/**
+	 * check if the body is bounded - infinite bodies (like planes and tubes) have
+	 * infinite boundaries
+	 * 
+	 * @return true if all the boundaries are finite
+	 */
+	public boolean isBounded() {
+		return Double.isFinite(minBoundary.getX()) && Double.isFinite(minBoundary.getY())
+				&& Double.isFinite(minBoundary.getZ()) && Double.isFinite(maxBoundary.getX())
+				&& Double.isFinite(maxBoundary.getY()) && Double.isFinite(maxBoundary.getZ());
+	}
+
 	/**
 	 * set the maximum Boundary for geometry
 	 */
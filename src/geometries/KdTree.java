@@ -0,0 +1,510 @@
+package geometries;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import primitives.*;
+
+/**
+ * Kd-tree over the bodies of a scene. The space of the scene is split
+ * recursively by axis aligned planes chosen by the Surface Area Heuristic
+ * (SAH), and each leaf holds a range of indexes of the bodies that overlap it.
+ * <p>
+ * Each leaf keeps six ropes - references to the neighbour node on the other
+ * side of each of its faces - so the traversal is stackless: the ray walks from
+ * leaf to leaf in its order along the ray, and a closest hit query stops at the
+ * first leaf that contains an intersection.
+ * <p>
+ * Unbounded bodies (like planes) can't be split into leaves, so they are kept
+ * aside and tested by every ray.
+ *
+ * @author David and Matan
+ */
+public class KdTree extends Intersectable {
+
+	/**
+	 * Cost of traversing a node
+	 */
+	private static final double TRAVERSAL_COST = 1;
+	/**
+	 * Cost of intersecting a body
+	 */
+	private static final double INTERSECTION_COST = 1.5;
+	/**
+	 * Bonus for splits that cut off empty space
+	 */
+	private static final double EMPTY_BONUS = 0.8;
+
+	private Node root;
+	private final Intersectable[] bodies;
+	/**
+	 * the bodies with infinite boundaries
+	 */
+	private final Geometries unbounded;
+	/**
+	 * the indexes of the bodies of all the leaves - each leaf holds a range
+	 */
+	private int[] leafBodies = new int[16];
+	private int leafBodiesUsed = 0;
+	private int maxDepth;
+	/**
+	 * per thread mailboxes - the last query that tested each body, so a body that
+	 * is in several leaves is tested once per query
+	 */
+	private final ThreadLocal<int[]> mailboxes;
+
+	/**
+	 * node of the tree - inner nodes hold a split plane, leaves hold a range of
+	 * bodies and ropes
+	 */
+	private static class Node {
+		/**
+		 * split axis - 0 for x, 1 for y, 2 for z, -1 for a leaf
+		 */
+		private int axis = -1;
+		private double split;
+		private Node left, right;
+		/**
+		 * {minX,minY,minZ,maxX,maxY,maxZ} of the node's space
+		 */
+		private final double[] bounds;
+		private int first, count;
+		/**
+		 * neighbours of the leaf by faces: -x, +x, -y, +y, -z, +z (null - out of the
+		 * scene)
+		 */
+		private Node[] ropes;
+
+		/**
+		 * Ctor
+		 *
+		 * @param bounds - the space of the node
+		 */
+		private Node(double[] bounds) {
+			this.bounds = bounds;
+		}
+	}
+
+	/**
+	 * Ctor - build the tree over the bodies of the geometries collection
+	 *
+	 * @param geometries - the geometries in the scene
+	 */
+	public KdTree(Geometries geometries) {
+		minBoundary = geometries.getMinBoundary();
+		maxBoundary = geometries.getMaxBoundary();
+		unbounded = geometries.getUnbounded();
+		geometries = geometries.getBounded();
+		bodies = geometries.getBudies().toArray(new Intersectable[0]);
+		int n = bodies.length;
+		mailboxes = ThreadLocal.withInitial(() -> new int[n + 1]);
+		if (n == 0)
+			return;
+		double[] bounds = new double[6 * n];
+		int[] all = new int[n];
+		for (int i = 0; i < n; ++i) {
+			Point3D min = bodies[i].minBoundary, max = bodies[i].maxBoundary;
+			bounds[6 * i] = min.getX();
+			bounds[6 * i + 1] = min.getY();
+			bounds[6 * i + 2] = min.getZ();
+			bounds[6 * i + 3] = max.getX();
+			bounds[6 * i + 4] = max.getY();
+			bounds[6 * i + 5] = max.getZ();
+			all[i] = i;
+		}
+		maxDepth = (int) Math.round(8 + 1.3 * Math.log(n) / Math.log(2));
+		Point3D min = geometries.getMinBoundary(), max = geometries.getMaxBoundary();
+		root = build(new double[] { min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ() }, bounds,
+				all, 0);
+		setRopes(root, new Node[6]);
+	}
+
+	/**
+	 * Recursive build of a sub tree
+	 *
+	 * @param space  - the space of the node
+	 * @param bounds - the bounds of all the bodies (6 for each)
+	 * @param items  - the indexes of the bodies overlapping the node
+	 * @param depth  - the depth of the node
+	 * @return the node
+	 */
+	private Node build(double[] space, double[] bounds, int[] items, int depth) {
+		Node node = new Node(space);
+		int n = items.length;
+		double area = area(space);
+		double bestCost = INTERSECTION_COST * n;
+		int bestAxis = -1;
+		double bestSplit = 0;
+		if (depth < maxDepth && n > 1 && area > 0) {
+			double[] starts = new double[n], ends = new double[n];
+			for (int axis = 0; axis < 3; ++axis) {
+				double min = space[axis], max = space[axis + 3];
+				if (max <= min)
+					continue;
+				for (int i = 0; i < n; ++i) {
+					starts[i] = Math.max(bounds[6 * items[i] + axis], min);
+					ends[i] = Math.min(bounds[6 * items[i] + axis + 3], max);
+				}
+				Arrays.sort(starts);
+				Arrays.sort(ends);
+				// candidate planes are the body boundaries inside the node
+				for (int c = 0; c < 2 * n; ++c) {
+					double plane = c < n ? starts[c] : ends[c - n];
+					if (plane <= min || plane >= max)
+						continue;
+					int nLeft = lowerBound(starts, plane); // bodies that start before the plane
+					int nRight = n - upperBound(ends, plane); // bodies that end after the plane
+					double[] child = space.clone();
+					child[axis + 3] = plane;
+					double pLeft = area(child) / area;
+					child[axis + 3] = max;
+					child[axis] = plane;
+					double pRight = area(child) / area;
+					double cost = TRAVERSAL_COST
+							+ INTERSECTION_COST * (pLeft * nLeft + pRight * nRight)
+									* (nLeft == 0 || nRight == 0 ? EMPTY_BONUS : 1);
+					if (cost < bestCost) {
+						bestCost = cost;
+						bestAxis = axis;
+						bestSplit = plane;
+					}
+				}
+			}
+		}
+		if (bestAxis == -1) { // the leaf is cheaper than any split
+			node.first = leafBodiesUsed;
+			node.count = n;
+			if (leafBodiesUsed + n > leafBodies.length)
+				leafBodies = Arrays.copyOf(leafBodies, Math.max(2 * leafBodies.length, leafBodiesUsed + n));
+			System.arraycopy(items, 0, leafBodies, leafBodiesUsed, n);
+			leafBodiesUsed += n;
+			return node;
+		}
+		int[] leftItems = new int[n], rightItems = new int[n];
+		int nLeft = 0, nRight = 0;
+		for (int item : items) {
+			double start = bounds[6 * item + bestAxis], end = bounds[6 * item + bestAxis + 3];
+			if (start < bestSplit || start == bestSplit && end == bestSplit) // planar bodies go to the left
+				leftItems[nLeft++] = item;
+			if (end > bestSplit)
+				rightItems[nRight++] = item;
+		}
+		double[] leftSpace = space.clone(), rightSpace = space.clone();
+		leftSpace[bestAxis + 3] = bestSplit;
+		rightSpace[bestAxis] = bestSplit;
+		node.axis = bestAxis;
+		node.split = bestSplit;
+		node.left = build(leftSpace, bounds, Arrays.copyOf(leftItems, nLeft), depth + 1);
+		node.right = build(rightSpace, bounds, Arrays.copyOf(rightItems, nRight), depth + 1);
+		return node;
+	}
+
+	/**
+	 * Number of values smaller than the key in a sorted array
+	 */
+	private static int lowerBound(double[] sorted, double key) {
+		int low = 0, high = sorted.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sorted[mid] < key)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Number of values smaller than or equal to the key in a sorted array
+	 */
+	private static int upperBound(double[] sorted, double key) {
+		int low = 0, high = sorted.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sorted[mid] <= key)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Surface area of bounds {minX,minY,minZ,maxX,maxY,maxZ}
+	 *
+	 * @param b - the bounds
+	 * @return the surface area
+	 */
+	private static double area(double[] b) {
+		double dx = b[3] - b[0], dy = b[4] - b[1], dz = b[5] - b[2];
+		return 2 * (dx * dy + dy * dz + dz * dx);
+	}
+
+	/**
+	 * Set the ropes of the leaves in a sub tree. The ropes of the node are pushed
+	 * down to the deepest node that still covers the whole face.
+	 *
+	 * @param node  - the root of the sub tree
+	 * @param ropes - the neighbours of the node by its faces
+	 */
+	private static void setRopes(Node node, Node[] ropes) {
+		for (int face = 0; face < 6; ++face)
+			ropes[face] = optimizeRope(ropes[face], face, node.bounds);
+		if (node.axis == -1) {
+			node.ropes = ropes;
+			return;
+		}
+		Node[] leftRopes = ropes.clone(), rightRopes = ropes.clone();
+		leftRopes[2 * node.axis + 1] = node.right;
+		rightRopes[2 * node.axis] = node.left;
+		setRopes(node.left, leftRopes);
+		setRopes(node.right, rightRopes);
+	}
+
+	/**
+	 * Push a rope down the neighbour sub tree while only one child of the
+	 * neighbour is adjacent to the face
+	 *
+	 * @param rope   - the neighbour
+	 * @param face   - the face of the node
+	 * @param bounds - the space of the node
+	 * @return the deepest neighbour covering the face
+	 */
+	private static Node optimizeRope(Node rope, int face, double[] bounds) {
+		while (rope != null && rope.axis != -1) {
+			int axis = rope.axis;
+			if (axis == face / 2)
+				rope = face % 2 == 1 ? rope.left : rope.right;
+			else if (rope.split <= bounds[axis])
+				rope = rope.right;
+			else if (rope.split >= bounds[axis + 3])
+				rope = rope.left;
+			else
+				break;
+		}
+		return rope;
+	}
+
+	/**
+	 * Descend from a node to the leaf that contains the point. A point on a split
+	 * plane goes to the side that the ray continues to.
+	 */
+	private static Node findLeaf(Node node, double px, double py, double pz, double dx, double dy, double dz) {
+		while (node.axis != -1) {
+			double p = node.axis == 0 ? px : node.axis == 1 ? py : pz;
+			double d = node.axis == 0 ? dx : node.axis == 1 ? dy : dz;
+			node = p < node.split || p == node.split && d < 0 ? node.left : node.right;
+		}
+		return node;
+	}
+
+	/**
+	 * Find the closest intersection of the ray with the bodies in the tree. The
+	 * leaves are visited in their order along the ray by the ropes and the walk
+	 * stops at the first leaf that contains an intersection.
+	 *
+	 * @param ray - the ray
+	 * @param max - maximum distance of intersection
+	 * @return the closest intersection point or null if there is no intersection
+	 */
+	@Override
+	public GeoPoint findClosestIntersection(Ray ray, double max) {
+		// the unbounded bodies first - their closest point limits the walk
+		GeoPoint closest = unbounded.findClosestIntersection(ray, max);
+		if (closest == null)
+			return walk(ray, max, null);
+		Point3D p0 = ray.getP0();
+		double closestDistance = closest.point.distance(p0);
+		GeoPoint gp = walk(ray, closestDistance, null);
+		return gp != null && gp.point.distance(p0) < closestDistance ? gp : closest;
+	}
+
+	@Override
+	public List<GeoPoint> findGeoIntersections(Ray ray, double max) {
+		List<GeoPoint> points = new LinkedList<GeoPoint>();
+		walk(ray, max, points);
+		var result = unbounded.findGeoIntersections(ray, max);
+		if (result != null)
+			points.addAll(result);
+		return points.isEmpty() ? null : points;
+	}
+
+	/**
+	 * Stackless walk of the ray over the leaves by the ropes
+	 *
+	 * @param ray    - the ray
+	 * @param max    - maximum distance of intersection
+	 * @param points - list for collecting all the intersections up to the maximum
+	 *               distance, or null for finding only the closest intersection
+	 * @return the closest intersection (when the list is null)
+	 */
+	private GeoPoint walk(Ray ray, double max, List<GeoPoint> points) {
+		if (root == null)
+			return null;
+		Point3D p0 = ray.getP0();
+		Vector dir = ray.getDir();
+		double ox = p0.getX(), oy = p0.getY(), oz = p0.getZ();
+		double dx = dir.getX(), dy = dir.getY(), dz = dir.getZ();
+		double[] o = { ox, oy, oz }, d = { dx, dy, dz };
+
+		// clip the ray by the space of the scene
+		double[] range = clip(o, d, max);
+		if (range == null)
+			return null;
+		double tExit = range[1];
+
+		int[] mailbox = null;
+		int query = 0;
+		if (points != null) {
+			mailbox = mailboxes.get();
+			query = nextQuery(mailbox);
+		}
+
+		double t = range[0];
+		Node node = findLeaf(root, ox + dx * t, oy + dy * t, oz + dz * t, dx, dy, dz);
+		while (true) {
+			// the distance and face where the ray leaves the leaf
+			double tLeave = Double.POSITIVE_INFINITY;
+			int face = -1;
+			for (int axis = 0; axis < 3; ++axis) {
+				if (d[axis] == 0)
+					continue;
+				int side = d[axis] > 0 ? 1 : 0;
+				double tFace = (node.bounds[axis + 3 * side] - o[axis]) / d[axis];
+				if (tFace < tLeave) {
+					tLeave = tFace;
+					face = 2 * axis + side;
+				}
+			}
+			GeoPoint closest = null;
+			double closestDistance = Double.POSITIVE_INFINITY;
+			if (points == null) {
+				// any intersection up to the leaf exit is closer than all the next leaves
+				double limit = Math.min(tLeave, tExit);
+				for (int i = node.first; i < node.first + node.count; ++i) {
+					var gp = bodies[leafBodies[i]].findClosestIntersection(ray, Math.min(limit, closestDistance));
+					if (gp != null) {
+						double distance = gp.point.distance(p0);
+						if (distance < closestDistance) {
+							closestDistance = distance;
+							closest = gp;
+						}
+					}
+				}
+			} else
+				for (int i = node.first; i < node.first + node.count; ++i) {
+					int body = leafBodies[i];
+					if (mailbox[body] == query)
+						continue; // a body may be in several leaves - it is already tested
+					mailbox[body] = query;
+					var result = bodies[body].findGeoIntersections(ray, max);
+					if (result != null)
+						points.addAll(result);
+				}
+			if (closest != null)
+				return closest;
+			if (tLeave >= tExit || face == -1)
+				return null;
+			Node rope = node.ropes[face];
+			if (rope == null)
+				return null;
+			t = tLeave;
+			node = findLeaf(rope, ox + dx * t, oy + dy * t, oz + dz * t, dx, dy, dz);
+		}
+	}
+
+	@Override
+	public double occlusion(Ray ray, double max, double threshold) {
+		double ktr = unbounded.occlusion(ray, max, threshold);
+		if (root == null || ktr == 0.0)
+			return ktr;
+		Point3D p0 = ray.getP0();
+		Vector dir = ray.getDir();
+		double ox = p0.getX(), oy = p0.getY(), oz = p0.getZ();
+		double dx = dir.getX(), dy = dir.getY(), dz = dir.getZ();
+		double[] o = { ox, oy, oz }, d = { dx, dy, dz };
+		double[] range = clip(o, d, max);
+		if (range == null)
+			return ktr;
+		int[] mailbox = mailboxes.get();
+		int query = nextQuery(mailbox);
+		double t = range[0];
+		Node node = findLeaf(root, ox + dx * t, oy + dy * t, oz + dz * t, dx, dy, dz);
+		while (true) {
+			for (int i = node.first; i < node.first + node.count; ++i) {
+				int body = leafBodies[i];
+				if (mailbox[body] == query)
+					continue; // a body may be in several leaves - it is already tested
+				mailbox[body] = query;
+				ktr *= bodies[body].occlusion(ray, max, threshold / ktr);
+				if (ktr == 0.0 || ktr < threshold)
+					return 0.0; // no need to look for more bodies
+			}
+			// the distance and face where the ray leaves the leaf
+			double tLeave = Double.POSITIVE_INFINITY;
+			int face = -1;
+			for (int axis = 0; axis < 3; ++axis) {
+				if (d[axis] == 0)
+					continue;
+				int side = d[axis] > 0 ? 1 : 0;
+				double tFace = (node.bounds[axis + 3 * side] - o[axis]) / d[axis];
+				if (tFace < tLeave) {
+					tLeave = tFace;
+					face = 2 * axis + side;
+				}
+			}
+			if (tLeave >= range[1] || face == -1 || node.ropes[face] == null)
+				return ktr;
+			t = tLeave;
+			node = findLeaf(node.ropes[face], ox + dx * t, oy + dy * t, oz + dz * t, dx, dy, dz);
+		}
+	}
+
+	/**
+	 * Clip the ray by the space of the scene
+	 *
+	 * @param o   - the ray origin
+	 * @param d   - the ray direction
+	 * @param max - maximum distance of intersection
+	 * @return the distances where the ray enters and leaves the space, or null if
+	 *         it misses the space
+	 */
+	private double[] clip(double[] o, double[] d, double max) {
+		double tEntry = 0, tExit = max;
+		for (int axis = 0; axis < 3; ++axis) {
+			if (d[axis] == 0) {
+				if (o[axis] < root.bounds[axis] || o[axis] > root.bounds[axis + 3])
+					return null;
+				continue;
+			}
+			double t1 = (root.bounds[axis] - o[axis]) / d[axis], t2 = (root.bounds[axis + 3] - o[axis]) / d[axis];
+			tEntry = Math.max(tEntry, Math.min(t1, t2));
+			tExit = Math.min(tExit, Math.max(t1, t2));
+		}
+		return tEntry > tExit ? null : new double[] { tEntry, tExit };
+	}
+
+	/**
+	 * Get a new query id in the mailbox of the thread
+	 *
+	 * @param mailbox - the mailbox (the last cell counts the queries of the thread)
+	 * @return the query id
+	 */
+	private int nextQuery(int[] mailbox) {
+		int query = ++mailbox[bodies.length];
+		if (query == Integer.MAX_VALUE) { // the counter wrapped around - reset the mailbox
+			Arrays.fill(mailbox, 0);
+			query = mailbox[bodies.length] = 1;
+		}
+		return query;
+	}
+
+	@Override
+	public void setMaxBoundary() {
+	} // Already initialized by the geometries
+
+	@Override
+	public void setMinBoundary() {
+	} // Already initialized by the geometries
+}
@@ -0,0 +1,328 @@
+package geometries;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntConsumer;
+
+/**
+ * Linear BVH (LBVH) builder. The bodies are ordered along a Z-order curve by the
+ * Morton codes of their centroids, the codes are radix sorted in parallel and
+ * the hierarchy is emitted by splitting each range of sorted codes at its
+ * highest differing bit. The work is linear in the number of bodies and all the
+ * stages run on a {@link ForkJoinPool}, so it is much faster than the SAH build
+ * (with some loss of the tree quality).
+ * <p>
+ * The nodes are emitted in the same flattened depth first layout of
+ * {@link BVH}, with one body in each leaf.
+ *
+ * @author David and Matan
+ */
+class LBVHBuilder {
+	/**
+	 * Up to this number of bodies 30 bit codes (10 bits per axis) are enough,
+	 * above it 63 bit codes (21 bits per axis) are used
+	 */
+	private static final int MORTON_30_LIMIT = 1 << 20;
+	/**
+	 * Bits of a radix sort digit
+	 */
+	private static final int RADIX_BITS = 8;
+	private static final int RADIX = 1 << RADIX_BITS;
+	/**
+	 * Ranges smaller than this are handled by a single task
+	 */
+	private static final int SEQUENTIAL_THRESHOLD = 1 << 12;
+
+	private final ForkJoinPool pool;
+	private final double[] bounds;
+	private final double[] centroids;
+	private final int n;
+
+	private long[] codes;
+	/**
+	 * the order of the bodies by their codes
+	 */
+	int[] order;
+	double[] nodeBounds;
+	int[] nodeOffset;
+	int[] nodeCount;
+	int depth;
+
+	/**
+	 * Ctor
+	 *
+	 * @param pool      - the pool running the build
+	 * @param bounds    - the bounds of the bodies (6 for each)
+	 * @param centroids - the centroids of the bodies (3 for each)
+	 */
+	LBVHBuilder(ForkJoinPool pool, double[] bounds, double[] centroids) {
+		this.pool = pool;
+		this.bounds = bounds;
+		this.centroids = centroids;
+		this.n = centroids.length / 3;
+	}
+
+	/**
+	 * Build the hierarchy (the result is in the package fields)
+	 */
+	void build() {
+		int bits = n <= MORTON_30_LIMIT ? 10 : 21;
+		computeCodes(bits);
+		sort(3 * bits);
+		nodeBounds = new double[6 * (2 * n - 1)];
+		nodeOffset = new int[2 * n - 1];
+		nodeCount = new int[2 * n - 1];
+		depth = pool.invoke(new EmitTask(0, n - 1, 0, 0));
+	}
+
+	/**
+	 * Run the action on the chunks [0, chunks) in parallel
+	 */
+	private class ChunksTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int from, to;
+		private final IntConsumer action;
+
+		/**
+		 * Ctor
+		 *
+		 * @param from   - first chunk
+		 * @param to     - one after the last chunk
+		 * @param action - the action on a chunk
+		 */
+		private ChunksTask(int from, int to, IntConsumer action) {
+			this.from = from;
+			this.to = to;
+			this.action = action;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				action.accept(from);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new ChunksTask(from, mid, action), new ChunksTask(mid, to, action));
+		}
+	}
+
+	/**
+	 * Number of chunks for splitting the bodies between the workers
+	 *
+	 * @return the number of chunks
+	 */
+	private int chunks() {
+		return Math.max(1, Math.min(4 * pool.getParallelism(), n / SEQUENTIAL_THRESHOLD));
+	}
+
+	/**
+	 * Compute the Morton codes of the body centroids quantized in the centroids
+	 * bounding box
+	 *
+	 * @param bits - bits per axis
+	 */
+	private void computeCodes(int bits) {
+		double[] min = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+		double[] max = { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		for (int i = 0; i < n; ++i)
+			for (int axis = 0; axis < 3; ++axis) {
+				double c = centroids[3 * i + axis];
+				if (c < min[axis])
+					min[axis] = c;
+				if (c > max[axis])
+					max[axis] = c;
+			}
+		int cells = 1 << bits;
+		double[] scale = new double[3];
+		for (int axis = 0; axis < 3; ++axis)
+			scale[axis] = max[axis] > min[axis] ? cells / (max[axis] - min[axis]) : 0;
+
+		codes = new long[n];
+		order = new int[n];
+		int chunks = chunks();
+		int size = (n + chunks - 1) / chunks;
+		pool.invoke(new ChunksTask(0, chunks, c -> {
+			for (int i = c * size; i < Math.min(n, (c + 1) * size); ++i) {
+				long x = quantize(centroids[3 * i], min[0], scale[0], cells);
+				long y = quantize(centroids[3 * i + 1], min[1], scale[1], cells);
+				long z = quantize(centroids[3 * i + 2], min[2], scale[2], cells);
+				codes[i] = bits == 10 ? (expandBits10(x) << 2) | (expandBits10(y) << 1) | expandBits10(z)
+						: (expandBits21(x) << 2) | (expandBits21(y) << 1) | expandBits21(z);
+				order[i] = i;
+			}
+		}));
+	}
+
+	/**
+	 * Quantize a coordinate to a cell of the grid on the axis
+	 *
+	 * @return the cell index
+	 */
+	private static long quantize(double c, double min, double scale, int cells) {
+		long q = (long) ((c - min) * scale);
+		return q < 0 ? 0 : q >= cells ? cells - 1 : q;
+	}
+
+	/**
+	 * Insert two zero bits after each of the 10 low bits of the number
+	 *
+	 * @param v - the number
+	 * @return the expanded bits
+	 */
+	private static long expandBits10(long v) {
+		v &= 0x3ffL;
+		v = (v | v << 16) & 0x30000ffL;
+		v = (v | v << 8) & 0x300f00fL;
+		v = (v | v << 4) & 0x30c30c3L;
+		v = (v | v << 2) & 0x9249249L;
+		return v;
+	}
+
+	/**
+	 * Insert two zero bits after each of the 21 low bits of the number
+	 *
+	 * @param v - the number
+	 * @return the expanded bits
+	 */
+	private static long expandBits21(long v) {
+		v &= 0x1fffffL;
+		v = (v | v << 32) & 0x1f00000000ffffL;
+		v = (v | v << 16) & 0x1f0000ff0000ffL;
+		v = (v | v << 8) & 0x100f00f00f00f00fL;
+		v = (v | v << 4) & 0x10c30c30c30c30c3L;
+		v = (v | v << 2) & 0x1249249249249249L;
+		return v;
+	}
+
+	/**
+	 * Parallel LSD radix sort of the codes (and the order with them). Each pass
+	 * counts the digits of every chunk in parallel, prefix sums the counts into
+	 * the output position of each (chunk, digit), and scatters the chunks in
+	 * parallel - so the sort is stable.
+	 *
+	 * @param bits - the number of bits in the codes
+	 */
+	private void sort(int bits) {
+		int chunks = chunks();
+		int size = (n + chunks - 1) / chunks;
+		long[] codesOut = new long[n];
+		int[] orderOut = new int[n];
+		int[][] offsets = new int[chunks][RADIX];
+		for (int shift = 0; shift < bits; shift += RADIX_BITS) {
+			final int s = shift;
+			final long[] inCodes = codes, outCodes = codesOut;
+			final int[] inOrder = order, outOrder = orderOut;
+			pool.invoke(new ChunksTask(0, chunks, c -> {
+				int[] count = offsets[c];
+				Arrays.fill(count, 0);
+				for (int i = c * size; i < Math.min(n, (c + 1) * size); ++i)
+					++count[(int) (inCodes[i] >>> s) & (RADIX - 1)];
+			}));
+			int position = 0;
+			for (int digit = 0; digit < RADIX; ++digit)
+				for (int c = 0; c < chunks; ++c) {
+					int count = offsets[c][digit];
+					offsets[c][digit] = position;
+					position += count;
+				}
+			pool.invoke(new ChunksTask(0, chunks, c -> {
+				int[] offset = offsets[c];
+				for (int i = c * size; i < Math.min(n, (c + 1) * size); ++i) {
+					int p = offset[(int) (inCodes[i] >>> s) & (RADIX - 1)]++;
+					outCodes[p] = inCodes[i];
+					outOrder[p] = inOrder[i];
+				}
+			}));
+			codesOut = inCodes;
+			orderOut = inOrder;
+			codes = outCodes;
+			order = outOrder;
+		}
+	}
+
+	/**
+	 * Find where to split the range of sorted codes - the last index that shares
+	 * with the first code more than the common prefix of the whole range
+	 *
+	 * @param first - first index of the range
+	 * @param last  - last index of the range
+	 * @return the last index of the first part
+	 */
+	private int findSplit(int first, int last) {
+		long firstCode = codes[first];
+		if (firstCode == codes[last])
+			return (first + last) >>> 1; // identical codes - split in the middle
+		int prefix = Long.numberOfLeadingZeros(firstCode ^ codes[last]);
+		int split = first, step = last - first;
+		do {
+			step = (step + 1) >>> 1;
+			int newSplit = split + step;
+			if (newSplit < last && Long.numberOfLeadingZeros(firstCode ^ codes[newSplit]) > prefix)
+				split = newSplit;
+		} while (step > 1);
+		return split;
+	}
+
+	/**
+	 * Emit the sub tree of a range of sorted codes. A sub tree over k bodies has
+	 * exactly 2k-1 nodes, so the depth first index of the second child is known
+	 * before the first child is built and both are built in parallel.
+	 */
+	private class EmitTask extends RecursiveTask<Integer> {
+		private static final long serialVersionUID = 1L;
+		private final int first, last, node, level;
+
+		/**
+		 * Ctor
+		 *
+		 * @param first - first index of the range
+		 * @param last  - last index of the range
+		 * @param node  - the depth first index of the sub tree root
+		 * @param level - the depth of the sub tree root
+		 */
+		private EmitTask(int first, int last, int node, int level) {
+			this.first = first;
+			this.last = last;
+			this.node = node;
+			this.level = level;
+		}
+
+		@Override
+		protected Integer compute() {
+			return emit(first, last, node, level);
+		}
+
+		/**
+		 * Emit the sub tree (forking the big sub trees)
+		 *
+		 * @return the depth of the deepest leaf
+		 */
+		private int emit(int first, int last, int node, int level) {
+			if (first == last) {
+				nodeOffset[node] = first;
+				nodeCount[node] = 1;
+				System.arraycopy(bounds, 6 * order[first], nodeBounds, 6 * node, 6);
+				return level;
+			}
+			int split = findSplit(first, last);
+			int left = node + 1, right = node + 2 * (split - first + 1);
+			int depth;
+			if (last - first > SEQUENTIAL_THRESHOLD) {
+				EmitTask task = new EmitTask(split + 1, last, right, level + 1);
+				task.fork();
+				depth = Math.max(emit(first, split, left, level + 1), task.join());
+			} else
+				depth = Math.max(emit(first, split, left, level + 1), emit(split + 1, last, right, level + 1));
+			nodeOffset[node] = right;
+			nodeCount[node] = 0;
+			for (int i = 0; i < 3; ++i) {
+				nodeBounds[6 * node + i] = Math.min(nodeBounds[6 * left + i], nodeBounds[6 * right + i]);
+				nodeBounds[6 * node + i + 3] = Math.max(nodeBounds[6 * left + i + 3], nodeBounds[6 * right + i + 3]);
+			}
+			return depth;
+		}
+	}
+}
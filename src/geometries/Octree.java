@@ -0,0 +1,461 @@
+package geometries;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import primitives.*;
+
+/**
+ * Sparse adaptive octree over the bodies of a scene. Unlike the uniform grid of
+ * {@link scene.Box}, which has one resolution for the whole scene, a node is
+ * divided into its eight octants only when it holds more bodies than a
+ * threshold, and octants without bodies are not created at all. So a small
+ * detailed object inside a big empty room gets fine cells only around it.
+ * <p>
+ * The traversal walks the octants of each node in the order of the ray with the
+ * same 3D-DDA stepping of the grid (at most one crossing of each middle plane)
+ * and descends into the octants that exist.
+ * <p>
+ * Unbounded bodies (like planes) can't be in an octant, so they are kept aside
+ * and tested by every ray.
+ *
+ * @author David and Matan
+ */
+public class Octree extends Intersectable {
+
+	/**
+	 * Maximal depth of the tree
+	 */
+	private static final int MAX_DEPTH = 10;
+
+	private Node root;
+	private final Intersectable[] bodies;
+	/**
+	 * the bodies with infinite boundaries
+	 */
+	private final Geometries unbounded;
+	private final int threshold;
+	private int nodeCount = 0;
+	private int leafCount = 0;
+	private int referenceCount = 0;
+	private int depth = 0;
+	/**
+	 * per thread mailboxes - the last query that tested each body, so a body that
+	 * is in several leaves is tested once per query
+	 */
+	private final ThreadLocal<int[]> mailboxes;
+
+	/**
+	 * node of the tree - inner nodes hold their existing octants, leaves hold
+	 * indexes of bodies
+	 */
+	private static class Node {
+		private final double minX, minY, minZ, maxX, maxY, maxZ;
+		/**
+		 * octants by index: bit 0 - upper x half, bit 1 - upper y half, bit 2 - upper
+		 * z half (null - an empty octant)
+		 */
+		private Node[] octants;
+		private int[] items;
+
+		/**
+		 * Ctor
+		 */
+		private Node(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+			this.minX = minX;
+			this.minY = minY;
+			this.minZ = minZ;
+			this.maxX = maxX;
+			this.maxY = maxY;
+			this.maxZ = maxZ;
+		}
+	}
+
+	/**
+	 * Ctor - build the tree over the bodies of the geometries collection
+	 *
+	 * @param geometries - the geometries in the scene
+	 * @param threshold  - a node with more bodies than this is divided
+	 * @throws IllegalArgumentException when the threshold is not positive
+	 */
+	public Octree(Geometries geometries, int threshold) {
+		if (threshold < 1)
+			throw new IllegalArgumentException("Octree threshold must be positive");
+		this.threshold = threshold;
+		minBoundary = geometries.getMinBoundary();
+		maxBoundary = geometries.getMaxBoundary();
+		unbounded = geometries.getUnbounded();
+		geometries = geometries.getBounded();
+		bodies = geometries.getBudies().toArray(new Intersectable[0]);
+		int n = bodies.length;
+		mailboxes = ThreadLocal.withInitial(() -> new int[n + 1]);
+		if (n == 0)
+			return;
+		int[] all = new int[n];
+		for (int i = 0; i < n; ++i)
+			all[i] = i;
+		Point3D min = geometries.getMinBoundary(), max = geometries.getMaxBoundary();
+		root = build(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ(), all, 0);
+	}
+
+	/**
+	 * Recursive build of a sub tree. A node is divided only when it holds more
+	 * bodies than the threshold and at least one of its octants holds less bodies
+	 * than the node - when every octant holds all the bodies of the node (large or
+	 * overlapping bodies), dividing can't separate them at any depth.
+	 *
+	 * @param items - the indexes of the bodies overlapping the node
+	 * @param level - the depth of the node
+	 * @return the node
+	 */
+	private Node build(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, int[] items,
+			int level) {
+		Node node = new Node(minX, minY, minZ, maxX, maxY, maxZ);
+		++nodeCount;
+		depth = Math.max(depth, level);
+		if (items.length <= threshold || level == MAX_DEPTH)
+			return leaf(node, items);
+		double midX = (minX + maxX) / 2, midY = (minY + maxY) / 2, midZ = (minZ + maxZ) / 2;
+		int[][] octantItems = new int[8][];
+		boolean smaller = false;
+		int[] buffer = new int[items.length];
+		for (int octant = 0; octant < 8; ++octant) {
+			double oMinX = (octant & 1) == 0 ? minX : midX, oMaxX = (octant & 1) == 0 ? midX : maxX;
+			double oMinY = (octant & 2) == 0 ? minY : midY, oMaxY = (octant & 2) == 0 ? midY : maxY;
+			double oMinZ = (octant & 4) == 0 ? minZ : midZ, oMaxZ = (octant & 4) == 0 ? midZ : maxZ;
+			int count = 0;
+			for (int item : items) {
+				Point3D min = bodies[item].minBoundary, max = bodies[item].maxBoundary;
+				if (min.getX() <= oMaxX && max.getX() >= oMinX && min.getY() <= oMaxY && max.getY() >= oMinY
+						&& min.getZ() <= oMaxZ && max.getZ() >= oMinZ)
+					buffer[count++] = item;
+			}
+			if (count > 0) // sparse - empty octants are not created
+				octantItems[octant] = count == items.length ? items : Arrays.copyOf(buffer, count);
+			if (count < items.length)
+				smaller = true;
+		}
+		if (!smaller)
+			return leaf(node, items);
+
+		node.octants = new Node[8];
+		for (int octant = 0; octant < 8; ++octant)
+			if (octantItems[octant] != null)
+				node.octants[octant] = build((octant & 1) == 0 ? minX : midX, (octant & 2) == 0 ? minY : midY,
+						(octant & 4) == 0 ? minZ : midZ, (octant & 1) == 0 ? midX : maxX,
+						(octant & 2) == 0 ? midY : maxY, (octant & 4) == 0 ? midZ : maxZ, octantItems[octant],
+						level + 1);
+		return node;
+	}
+
+	/**
+	 * make a node a leaf of the given bodies
+	 *
+	 * @param node  - the node
+	 * @param items - the indexes of the bodies overlapping the node
+	 * @return the node
+	 */
+	private Node leaf(Node node, int[] items) {
+		node.items = items;
+		++leafCount;
+		referenceCount += items.length;
+		return node;
+	}
+
+	/**
+	 * Getter
+	 *
+	 * @return the number of nodes in the tree
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Getter
+	 *
+	 * @return the number of leaves in the tree
+	 */
+	public int getLeafCount() {
+		return leafCount;
+	}
+
+	/**
+	 * Getter
+	 *
+	 * @return the number of references from the leaves to bodies
+	 */
+	public int getReferenceCount() {
+		return referenceCount;
+	}
+
+	/**
+	 * Getter
+	 *
+	 * @return the depth of the deepest leaf
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Find the closest intersection of the ray with the bodies in the tree. The
+	 * leaves are visited in their order along the ray and the traversal stops at
+	 * the first leaf that contains an intersection.
+	 *
+	 * @param ray - the ray
+	 * @param max - maximum distance of intersection
+	 * @return the closest intersection point or null if there is no intersection
+	 */
+	@Override
+	public GeoPoint findClosestIntersection(Ray ray, double max) {
+		// the unbounded bodies first - their closest point limits the traversal
+		GeoPoint closest = unbounded.findClosestIntersection(ray, max);
+		if (closest == null)
+			return traverse(new Traversal(ray, max, null));
+		Point3D p0 = ray.getP0();
+		double closestDistance = closest.point.distance(p0);
+		GeoPoint gp = traverse(new Traversal(ray, closestDistance, null));
+		return gp != null && gp.point.distance(p0) < closestDistance ? gp : closest;
+	}
+
+	@Override
+	public List<GeoPoint> findGeoIntersections(Ray ray, double max) {
+		List<GeoPoint> points = new LinkedList<GeoPoint>();
+		traverse(new Traversal(ray, max, points));
+		var result = unbounded.findGeoIntersections(ray, max);
+		if (result != null)
+			points.addAll(result);
+		return points.isEmpty() ? null : points;
+	}
+
+	@Override
+	public double occlusion(Ray ray, double max, double threshold) {
+		double ktr = unbounded.occlusion(ray, max, threshold);
+		if (ktr == 0.0)
+			return 0.0;
+		var traversal = new Traversal(ray, max, threshold);
+		traversal.ktr = ktr;
+		traverse(traversal);
+		return traversal.ktr;
+	}
+
+	/**
+	 * State of a single traversal
+	 */
+	private class Traversal {
+		private final Ray ray;
+		private final Point3D p0;
+		private final double ox, oy, oz, dx, dy, dz;
+		private final double max;
+		private final List<GeoPoint> points;
+		private final double threshold;
+		private double ktr = 1.0;
+		private int[] mailbox;
+		private int query;
+
+		/**
+		 * Ctor
+		 *
+		 * @param ray    - the ray
+		 * @param max    - maximum distance of intersection
+		 * @param points - list for collecting all the intersections, or null for
+		 *               finding only the closest intersection
+		 */
+		private Traversal(Ray ray, double max, List<GeoPoint> points) {
+			this(ray, max, points, 0);
+		}
+
+		/**
+		 * Ctor - for accumulating the transparency of the bodies along the ray
+		 *
+		 * @param ray       - the ray
+		 * @param max       - maximum distance of intersection
+		 * @param threshold - the transparency below which the ray is blocked
+		 */
+		private Traversal(Ray ray, double max, double threshold) {
+			this(ray, max, null, threshold);
+		}
+
+		/**
+		 * Ctor
+		 *
+		 * @param ray       - the ray
+		 * @param max       - maximum distance of intersection
+		 * @param points    - list for collecting all the intersections
+		 * @param threshold - the transparency below which the ray is blocked, or 0
+		 *                  when not accumulating transparency
+		 */
+		private Traversal(Ray ray, double max, List<GeoPoint> points, double threshold) {
+			this.ray = ray;
+			this.max = max;
+			this.points = points;
+			this.threshold = threshold;
+			p0 = ray.getP0();
+			Vector dir = ray.getDir();
+			ox = p0.getX();
+			oy = p0.getY();
+			oz = p0.getZ();
+			dx = dir.getX();
+			dy = dir.getY();
+			dz = dir.getZ();
+			if (points != null || threshold > 0) {
+				mailbox = mailboxes.get();
+				query = ++mailbox[bodies.length]; // the last cell counts the queries of the thread
+				if (query == Integer.MAX_VALUE) { // the counter wrapped around - reset the mailbox
+					Arrays.fill(mailbox, 0);
+					query = mailbox[bodies.length] = 1;
+				}
+			}
+		}
+
+		/**
+		 * Visit a node in the range [tIn, tOut] of the ray inside it
+		 *
+		 * @return the closest intersection in the node (when finding only the
+		 *         closest)
+		 */
+		private GeoPoint visit(Node node, double tIn, double tOut) {
+			if (node.items != null)
+				return visitLeaf(node, tOut);
+			double midX = (node.minX + node.maxX) / 2;
+			double midY = (node.minY + node.maxY) / 2;
+			double midZ = (node.minZ + node.maxZ) / 2;
+			// the first octant - by the point where the ray enters the node
+			double px = ox + dx * tIn, py = oy + dy * tIn, pz = oz + dz * tIn;
+			int octant = (px > midX || px == midX && dx > 0 ? 1 : 0) | (py > midY || py == midY && dy > 0 ? 2 : 0)
+					| (pz > midZ || pz == midZ && dz > 0 ? 4 : 0);
+			// the distances of crossing each middle plane (only ahead of the entry)
+			double tX = crossing(midX, ox, dx, (octant & 1) == 0, tIn);
+			double tY = crossing(midY, oy, dy, (octant & 2) == 0, tIn);
+			double tZ = crossing(midZ, oz, dz, (octant & 4) == 0, tIn);
+			double t = tIn;
+			while (true) {
+				double tNext = Math.min(Math.min(tX, tY), Math.min(tZ, tOut));
+				Node child = node.octants[octant];
+				if (child != null) {
+					GeoPoint gp = visit(child, t, tNext);
+					if (gp != null || ktr == 0.0)
+						return gp;
+				}
+				if (tNext >= tOut)
+					return null;
+				// step to the next octant by the nearest middle plane crossing
+				if (tNext == tX) {
+					octant ^= 1;
+					tX = Double.POSITIVE_INFINITY;
+				} else if (tNext == tY) {
+					octant ^= 2;
+					tY = Double.POSITIVE_INFINITY;
+				} else {
+					octant ^= 4;
+					tZ = Double.POSITIVE_INFINITY;
+				}
+				t = tNext;
+			}
+		}
+
+		/**
+		 * The distance where the ray crosses a middle plane
+		 *
+		 * @param mid   - the middle plane
+		 * @param o     - ray origin on the axis
+		 * @param d     - ray direction on the axis
+		 * @param lower - whether the ray starts in the lower half
+		 * @param tIn   - the distance of the entry to the node
+		 * @return the distance, or infinity when the ray doesn't cross the plane
+		 *         ahead
+		 */
+		private double crossing(double mid, double o, double d, boolean lower, double tIn) {
+			if (lower ? d <= 0 : d >= 0)
+				return Double.POSITIVE_INFINITY;
+			double t = (mid - o) / d;
+			return t > tIn ? t : tIn;
+		}
+
+		/**
+		 * Test the bodies of a leaf
+		 *
+		 * @param node - the leaf
+		 * @param tOut - the distance where the ray leaves the leaf
+		 * @return the closest intersection up to the leaf exit (when finding only the
+		 *         closest)
+		 */
+		private GeoPoint visitLeaf(Node node, double tOut) {
+			if (threshold > 0) {
+				for (int body : node.items) {
+					if (mailbox[body] == query)
+						continue; // a body may be in several leaves - it is already tested
+					mailbox[body] = query;
+					ktr *= bodies[body].occlusion(ray, max, threshold / ktr);
+					if (ktr < threshold) {
+						ktr = 0.0; // no need to look for more bodies
+						return null;
+					}
+				}
+				return null;
+			}
+			if (points != null) {
+				for (int body : node.items) {
+					if (mailbox[body] == query)
+						continue; // a body may be in several leaves - it is already tested
+					mailbox[body] = query;
+					var result = bodies[body].findGeoIntersections(ray, max);
+					if (result != null)
+						points.addAll(result);
+				}
+				return null;
+			}
+			// any intersection up to the leaf exit is closer than all the next leaves
+			GeoPoint closest = null;
+			double closestDistance = Double.POSITIVE_INFINITY;
+			for (int body : node.items) {
+				var gp = bodies[body].findClosestIntersection(ray, Math.min(tOut, closestDistance));
+				if (gp != null) {
+					double distance = gp.point.distance(p0);
+					if (distance < closestDistance) {
+						closestDistance = distance;
+						closest = gp;
+					}
+				}
+			}
+			return closest;
+		}
+	}
+
+	/**
+	 * Clip the ray by the space of the scene and traverse the tree
+	 *
+	 * @param traversal - state of the traversal
+	 * @return the closest intersection (when finding only the closest)
+	 */
+	private GeoPoint traverse(Traversal traversal) {
+		if (root == null)
+			return null;
+		double[] o = { traversal.ox, traversal.oy, traversal.oz }, d = { traversal.dx, traversal.dy, traversal.dz };
+		double[] min = { root.minX, root.minY, root.minZ }, maxB = { root.maxX, root.maxY, root.maxZ };
+		double tEntry = 0, tExit = traversal.max;
+		for (int axis = 0; axis < 3; ++axis) {
+			if (d[axis] == 0) {
+				if (o[axis] < min[axis] || o[axis] > maxB[axis])
+					return null;
+				continue;
+			}
+			double t1 = (min[axis] - o[axis]) / d[axis], t2 = (maxB[axis] - o[axis]) / d[axis];
+			tEntry = Math.max(tEntry, Math.min(t1, t2));
+			tExit = Math.min(tExit, Math.max(t1, t2));
+		}
+		if (tEntry > tExit)
+			return null;
+		return traversal.visit(root, tEntry, tExit);
+	}
+
+	@Override
+	public void setMaxBoundary() {
+	} // Already initialized by the geometries
+
+	@Override
+	public void setMinBoundary() {
+	} // Already initialized by the geometries
+}
@@ -2,6 +2,7 @@ package geometries;
 
 import java.util.List;
 import static primitives.Util.*;
+import primitives.MutableVec3;
 import primitives.Point3D;
 import primitives.Ray;
 import primitives.Vector;
@@ -81,15 +82,14 @@ public class Plane extends Geometry {
 		double nv = getNormal().dotProduct(ray.getDir());
 		if (isZero(nv))
 			return null;
-		try {
-			double numer = getNormal().dotProduct(getQ0().subtract(ray.getP0()));
-			double t = alignZero(numer / nv);
-			if (t > 0 && alignZero(t - max) <= 0) {
-				var p1 = ray.getPoint(t);
-				return List.of(new GeoPoint(this, p1));
-			}
-		} catch (Exception e) {
+		// the vector from the head of the ray to the reference point in a scratch
+		MutableVec3 u = new MutableVec3().setSubtract(getQ0(), ray.getP0());
+		if (u.isZero())
 			return null;
+		double t = alignZero(u.dotProduct(getNormal()) / nv);
+		if (t > 0 && alignZero(t - max) <= 0) {
+			var p1 = ray.getPoint(t);
+			return List.of(new GeoPoint(this, p1));
 		}
 		return null;
 	}
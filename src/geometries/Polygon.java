@@ -1,6 +1,5 @@
 package geometries;
 
-import java.util.LinkedList;
 import java.util.List;
 import primitives.*;
 import static primitives.Util.*;
@@ -113,31 +112,31 @@ public class Polygon extends Geometry {
 		var dir = ray.getDir();
 
 		var p0 = ray.getP0();
-		var vectors = new LinkedList<Vector>();
-		for (var vertice : vertices)
-			vectors.add(vertice.subtract(p0));
-
-		var normals = new LinkedList<Vector>();
-		for (int i = 0; i < vectors.size() - 1; i++) {
-			normals.add(vectors.get(i).crossProduct(vectors.get(i + 1)));
-		}
-		normals.add(vectors.getLast().crossProduct(vectors.getFirst()));
-
-		Boolean isPositive = false, isNegative = false;
-		for (var normal : normals) {
-			var result = alignZero(normal.dotProduct(dir));
-			if (result != 0) {
-				if (result > 0) {
-					isPositive = true;
-					if (isNegative == true)
-						return null;
-				} else if (result < 0) {
-					isNegative = true;
-					if (isPositive == true)
-						return null;
-				}
+		// the vectors to the vertices and the normals of the sides in scratches, so no
+		// vectors are created for the test
+		MutableVec3 first = new MutableVec3().setSubtract(vertices.get(0), p0);
+		MutableVec3 previous = new MutableVec3().set(first);
+		MutableVec3 current = new MutableVec3(), normal = new MutableVec3();
+
+		boolean isPositive = false, isNegative = false;
+		int size = vertices.size();
+		for (int i = 1; i <= size; ++i) {
+			if (i < size)
+				current.setSubtract(vertices.get(i), p0);
+			else
+				current.set(first);
+			var result = alignZero(normal.setCrossProduct(previous, current).dotProduct(dir));
+			if (result > 0) {
+				isPositive = true;
+				if (isNegative)
+					return null;
+			} else if (result < 0) {
+				isNegative = true;
+				if (isPositive)
+					return null;
 			} else
 				return null;
+			previous.set(current);
 		}
 
 		return List.of(new GeoPoint(this, myList.get(0).point));
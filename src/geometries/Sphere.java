@@ -3,6 +3,7 @@ package geometries;
 import java.util.LinkedList;
 import java.util.List;
 import primitives.Util;
+import primitives.MutableVec3;
 import primitives.Point3D;
 import primitives.Ray;
 import primitives.Vector;
@@ -26,6 +27,20 @@ public class Sphere extends Geometry {
 		return center;
 	}
 
+	/**
+	 * setter center of sphere - move the sphere (and its boundaries), e.g. for the
+	 * next frame of an animation
+	 * 
+	 * @param center - the new center of sphere
+	 * @return the sphere itself
+	 */
+	public Sphere setCenter(Point3D center) {
+		this.center = center;
+		setMaxBoundary();
+		setMinBoundary();
+		return this;
+	}
+
 	/**
 	 * getter radius of sphere
 	 * 
@@ -63,15 +78,16 @@ public class Sphere extends Geometry {
 		double tm;
 		double d;
 		var p0 = ray.getP0();
-		try {
-			var u = center.subtract(p0);
-			tm = ray.getDir().dotProduct(u);
+		// the vector from the head of the ray to the center in a scratch
+		MutableVec3 u = new MutableVec3().setSubtract(center, p0);
+		if (u.isZero()) {
+			d = 0;
+			tm = 0;
+		} else {
+			tm = u.dotProduct(ray.getDir());
 			d = Math.sqrt(u.lengthSquared() - (tm * tm));
 			if (d >= radius)
 				return null;
-		} catch (Exception e) {
-			d = 0;
-			tm = 0;
 		}
 		double th = Math.sqrt(radius * radius - (d * d));
 		double t1 = Util.alignZero(tm + th);
@@ -2,20 +2,40 @@ package geometries;
 
 import java.util.List;
 
+import primitives.MutableVec3;
 import primitives.Point3D;
 import primitives.Ray;
-import primitives.Util;
+import primitives.Vector;
+import static primitives.Util.*;
 
 /**
  * A class representing a two-dimensional Triangle in a three-dimensional
  * Cartesian system.
  * <p>
  * based on {@link #Polygon}
+ * <p>
+ * The triangle keeps its two edges from the first vertex as numbers, so a ray
+ * is intersected by the Moller-Trumbore test on them - without the list of the
+ * vertices and without any object on a miss. The plane of the polygon is kept
+ * for its normal, which is the normal of the test and of the shading.
  * 
  * @author david and matan
  *
  */
 public class Triangle extends Polygon {
+	/**
+	 * the first vertex (the same point as in the list of the vertices)
+	 */
+	private final Point3D first;
+	/**
+	 * the edge from the first vertex to the second
+	 */
+	private final double e1x, e1y, e1z;
+	/**
+	 * the edge from the first vertex to the third
+	 */
+	private final double e2x, e2y, e2z;
+
 	/**
 	 * Triangle constructor receiving a 3 Point3d values to Triangle
 	 * 
@@ -29,37 +49,60 @@ public class Triangle extends Polygon {
 	 */
 	public Triangle(Point3D point, Point3D point1, Point3D point2) {
 		super(point, point1, point2);
+		first = point;
+		double x0 = point.getX(), y0 = point.getY(), z0 = point.getZ();
+		e1x = point1.getX() - x0;
+		e1y = point1.getY() - y0;
+		e1z = point1.getZ() - z0;
+		e2x = point2.getX() - x0;
+		e2y = point2.getY() - y0;
+		e2z = point2.getZ() - z0;
 	}
 
 	@Override
 	public List<GeoPoint> findGeoIntersections(Ray ray, double max) {
-		// find intersections
-		// if the ray inside the plane - return the cross point
-		// if the ray not inside the plane (not cross) - return null
-		var myList = super.getPlane().findGeoIntersections(ray, max);
-		if (myList == null)
-			return null;
+		double t = intersect(ray, max);
+		return t == Double.POSITIVE_INFINITY ? null : List.of(new GeoPoint(this, ray.getPoint(t)));
+	}
 
-		var P0 = ray.getP0();
-		var dir = ray.getDir();
+	/**
+	 * The Moller-Trumbore test of a ray against the triangle - the distance of the
+	 * hit is calculated like the distance to the plane of the triangle (so the
+	 * points are the points of the plane), and the barycentric coordinates of the
+	 * hit must be inside the triangle: the edges, the vertices and the
+	 * continuations of the edges are not crossed
+	 * 
+	 * @param ray - the ray
+	 * @param max - the maximal distance of the hit
+	 * @return the distance of the hit along the ray, or positive infinity if the
+	 *         ray does not cross the triangle up to the maximal distance
+	 */
+	private double intersect(Ray ray, double max) {
+		Vector dir = ray.getDir(), normal = plane.getNormal();
+		double dx = dir.getX(), dy = dir.getY(), dz = dir.getZ();
+		double nx = normal.getX(), ny = normal.getY(), nz = normal.getZ();
+		double nv = MutableVec3.dot(nx, ny, nz, dx, dy, dz);
+		if (isZero(nv))
+			return Double.POSITIVE_INFINITY;
 
-		// the formula
-		var v1 = vertices.get(0).subtract(P0);
-		var v2 = vertices.get(1).subtract(P0);
-		var v3 = vertices.get(2).subtract(P0);
+		// the head of the ray from the first vertex
+		Point3D p0 = ray.getP0();
+		double sx = p0.getX() - first.getX(), sy = p0.getY() - first.getY(), sz = p0.getZ() - first.getZ();
+		double t = alignZero(MutableVec3.dot(-sx, -sy, -sz, nx, ny, nz) / nv);
+		if (t <= 0 || alignZero(t - max) > 0)
+			return Double.POSITIVE_INFINITY;
 
-		var n1 = v1.crossProduct(v2).normalize();
-		var n2 = v2.crossProduct(v3).normalize();
-		var n3 = v3.crossProduct(v1).normalize();
+		double px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+		double inverse = 1 / MutableVec3.dot(e1x, e1y, e1z, px, py, pz);
+		double u = alignZero(MutableVec3.dot(sx, sy, sz, px, py, pz) * inverse);
+		if (u <= 0 || u >= 1)
+			return Double.POSITIVE_INFINITY;
 
-		// check if n1,n2,n3 have the same sign(+\-)
-		// -- all of them or bigger the zero or smallest then zero --
-		if ((Util.alignZero(n1.dotProduct(dir)) > 0 && Util.alignZero(n2.dotProduct(dir)) > 0
-				&& Util.alignZero(n3.dotProduct(dir)) > 0) == true
-				|| (Util.alignZero(n1.dotProduct(dir)) < 0 && Util.alignZero(n2.dotProduct(dir)) < 0
-						&& Util.alignZero(n3.dotProduct(dir)) < 0) == true)
-			return List.of(new GeoPoint(this, myList.get(0).point));
-		return null;
+		double qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+		double v = alignZero(MutableVec3.dot(dx, dy, dz, qx, qy, qz) * inverse);
+		if (v <= 0 || alignZero(1 - u - v) <= 0)
+			return Double.POSITIVE_INFINITY;
+		return t;
 	}
 
-}
\ No newline at end of file
+}
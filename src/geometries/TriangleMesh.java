@@ -0,0 +1,663 @@
+package geometries;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+import primitives.*;
+import static primitives.Util.*;
+
+/**
+ * Indexed mesh of triangles in a single body. The positions of the vertices are
+ * kept in one buffer of coordinates and the faces in one buffer of indexes into
+ * it, so a vertex that is shared by several faces is kept once, and a face
+ * costs its three indexes and its part of a hierarchy of boxes over the faces
+ * (the faces are ordered by the leaves of the hierarchy, so a leaf is a range
+ * of faces) - instead of a {@link Triangle} object with its list of points, its
+ * plane, its material and its boundaries.
+ * <p>
+ * The faces are intersected by their index with the Moller-Trumbore test on
+ * the positions. The edges belong to the faces (so the faces of the mesh leave
+ * no cracks between them). The points that are found carry the normal of their
+ * face (calculated on the hit like the normal of {@link Triangle}, so it is not
+ * kept), and their geometry is the mesh. Their emission and material are of
+ * the mesh itself (one emission and material for the mesh), or of one of the
+ * {@link Surface}s of the mesh by a surface index of each face.
+ *
+ * @author David and Matan
+ */
+public class TriangleMesh extends Geometry {
+
+	/**
+	 * The emission and the material of a group of faces of a mesh. A surface is
+	 * not a body by itself - the points that are found on its faces are of the
+	 * mesh, and they carry the emission and the material of the surface.
+	 */
+	public static class Surface {
+		private final Color emission;
+		private final Material material;
+
+		/**
+		 * Ctor - a surface of the given emission and material
+		 *
+		 * @param emission - the color of the faces
+		 * @param material - the material of the faces
+		 */
+		public Surface(Color emission, Material material) {
+			this.emission = emission;
+			this.material = material;
+		}
+
+		/**
+		 * getter
+		 *
+		 * @return the color of the faces
+		 */
+		public Color getEmission() {
+			return emission;
+		}
+
+		/**
+		 * getter
+		 *
+		 * @return the material of the faces
+		 */
+		public Material getMaterial() {
+			return material;
+		}
+	}
+
+	/**
+	 * The maximal number of faces in a leaf of the hierarchy
+	 */
+	public static final int LEAF_SIZE = 8;
+
+	/**
+	 * the positions of the vertices - {x,y,z} of each vertex
+	 */
+	private final double[] positions;
+	/**
+	 * the faces - three vertex indexes of each face, in the order of the leaves
+	 * of the hierarchy
+	 */
+	private final int[] faces;
+	/**
+	 * the surface index of each face - null when the mesh is the surface of all
+	 * its faces
+	 */
+	private final int[] faceSurfaces;
+	private final Surface[] surfaces;
+
+	/**
+	 * the boxes of the nodes - {minX,minY,minZ,maxX,maxY,maxZ} of each node,
+	 * rounded outward to floats
+	 */
+	private float[] nodeBounds;
+	/**
+	 * first face of a leaf, or the right child of an inner node (the left child
+	 * follows its parent)
+	 */
+	private int[] nodeOffset;
+	/**
+	 * number of faces of a leaf, 0 for an inner node
+	 */
+	private int[] nodeCount;
+	private int nodesUsed = 0;
+	private int depth = 0;
+	/**
+	 * per thread traversal stack - so the traversal allocates nothing per ray
+	 */
+	private final ThreadLocal<TraversalStack> stacks = ThreadLocal.withInitial(() -> new TraversalStack(depth + 1));
+
+	/**
+	 * stack of nodes to visit with their distance of entry
+	 */
+	private static class TraversalStack {
+		private final int[] nodes;
+		private final double[] distances;
+
+		/**
+		 * Ctor
+		 *
+		 * @param size - maximal number of pending nodes
+		 */
+		private TraversalStack(int size) {
+			nodes = new int[size];
+			distances = new double[size];
+		}
+	}
+
+	/**
+	 * Ctor - a mesh of one emission and material (of the mesh itself)
+	 *
+	 * @param positions - the positions of the vertices, {x,y,z} of each vertex
+	 *                  (the buffer is shared and not copied)
+	 * @param faces     - three vertex indexes of each face
+	 * @throws IllegalArgumentException
+	 *                                  <li>When an index is not of a vertex
+	 *                                  <li>When the vertices of a face are on the
+	 *                                  same straight line
+	 */
+	public TriangleMesh(double[] positions, int[] faces) {
+		this(positions, faces, null);
+	}
+
+	/**
+	 * Ctor - a mesh of several surfaces
+	 *
+	 * @param positions    - the positions of the vertices, {x,y,z} of each vertex
+	 *                     (the buffer is shared and not copied)
+	 * @param faces        - three vertex indexes of each face
+	 * @param faceSurfaces - the index of the surface of each face
+	 * @param surfaces     - the surfaces of the mesh
+	 * @throws IllegalArgumentException
+	 *                                  <li>When an index is not of a vertex or of a
+	 *                                  surface
+	 *                                  <li>When the vertices of a face are on the
+	 *                                  same straight line
+	 */
+	public TriangleMesh(double[] positions, int[] faces, int[] faceSurfaces, Surface... surfaces) {
+		if (positions.length % 3 != 0 || faces.length % 3 != 0)
+			throw new IllegalArgumentException("The buffers of a mesh must be of triples");
+		int count = faces.length / 3, vertices = positions.length / 3;
+		if (faceSurfaces != null && faceSurfaces.length != count)
+			throw new IllegalArgumentException("A mesh must have a surface index for each face");
+		for (int i = 0; i < faces.length; ++i)
+			if (faces[i] < 0 || faces[i] >= vertices)
+				throw new IllegalArgumentException("A face index must be of a vertex of the mesh");
+		if (faceSurfaces != null)
+			for (int surface : faceSurfaces)
+				if (surface < 0 || surface >= surfaces.length)
+					throw new IllegalArgumentException("A surface index must be of a surface of the mesh");
+		this.positions = positions;
+		this.surfaces = faceSurfaces == null ? null : surfaces.clone();
+
+		// the hierarchy orders the faces by its leaves
+		int[] order = build(faces, count);
+		this.faces = new int[faces.length];
+		this.faceSurfaces = faceSurfaces == null ? null : new int[count];
+		for (int i = 0; i < count; ++i) {
+			int face = order[i];
+			System.arraycopy(faces, 3 * face, this.faces, 3 * i, 3);
+			if (faceSurfaces != null)
+				this.faceSurfaces[i] = faceSurfaces[face];
+			normal(i); // throws for the vertices of a face on the same straight line
+		}
+		setMinBoundary();
+		setMaxBoundary();
+	}
+
+	/**
+	 * Ctor - a mesh of the faces of triangles, the points that are shared by the
+	 * triangles (the same point objects) are shared by the faces, and each
+	 * different pair of emission and material of the triangles is a surface (the
+	 * mesh itself when all the triangles have the same pair)
+	 *
+	 * @param triangles - the triangles
+	 */
+	public TriangleMesh(List<Triangle> triangles) {
+		this(Indexing.of(triangles));
+	}
+
+	/**
+	 * Ctor - a mesh of indexed triangles
+	 *
+	 * @param indexing - the buffers of the triangles
+	 */
+	private TriangleMesh(Indexing indexing) {
+		this(indexing.positions, indexing.faces, indexing.faceSurfaces, indexing.surfaces);
+		if (indexing.faceSurfaces == null && indexing.surfaces.length == 1) {
+			setEmission(indexing.surfaces[0].getEmission());
+			setMaterial(indexing.surfaces[0].getMaterial());
+		}
+	}
+
+	/**
+	 * The buffers of a mesh of triangles
+	 */
+	private static class Indexing {
+		private double[] positions;
+		private int[] faces, faceSurfaces;
+		private Surface[] surfaces;
+
+		/**
+		 * index the vertices and the surfaces of triangles
+		 *
+		 * @param triangles - the triangles
+		 * @return the buffers
+		 */
+		private static Indexing of(List<Triangle> triangles) {
+			Indexing indexing = new Indexing();
+			IdentityHashMap<Point3D, Integer> vertices = new IdentityHashMap<>();
+			List<Surface> surfaces = new LinkedList<>();
+			double[] positions = new double[9 * triangles.size()];
+			indexing.faces = new int[3 * triangles.size()];
+			indexing.faceSurfaces = new int[triangles.size()];
+			int face = 0;
+			for (Triangle triangle : triangles) {
+				for (Point3D point : triangle.getVertices()) {
+					Integer vertex = vertices.get(point);
+					if (vertex == null) {
+						vertex = vertices.size();
+						vertices.put(point, vertex);
+						positions[3 * vertex] = point.getX();
+						positions[3 * vertex + 1] = point.getY();
+						positions[3 * vertex + 2] = point.getZ();
+					}
+					indexing.faces[face++] = vertex;
+				}
+				int surface = 0;
+				for (Surface s : surfaces) {
+					if (s.getEmission() == triangle.getEmission() && s.getMaterial() == triangle.getMaterial())
+						break;
+					++surface;
+				}
+				if (surface == surfaces.size())
+					surfaces.add(new Surface(triangle.getEmission(), triangle.getMaterial()));
+				indexing.faceSurfaces[face / 3 - 1] = surface;
+			}
+			indexing.positions = Arrays.copyOf(positions, 3 * vertices.size());
+			indexing.surfaces = surfaces.toArray(new Surface[0]);
+			if (indexing.surfaces.length == 1)
+				indexing.faceSurfaces = null; // the mesh itself is the surface
+			return indexing;
+		}
+	}
+
+	/**
+	 * getter the number of faces
+	 *
+	 * @return the number of faces
+	 */
+	public int getFaceCount() {
+		return faces.length / 3;
+	}
+
+	/**
+	 * getter the number of vertices
+	 *
+	 * @return the number of vertices
+	 */
+	public int getVertexCount() {
+		return positions.length / 3;
+	}
+
+	/**
+	 * the position of a vertex
+	 *
+	 * @param vertex - the vertex index
+	 * @return the position
+	 */
+	private Point3D vertex(int vertex) {
+		return new Point3D(positions[3 * vertex], positions[3 * vertex + 1], positions[3 * vertex + 2]);
+	}
+
+	/**
+	 * the unit normal of a face - the direction of (v1-v0)x(v2-v0) like
+	 * {@link Triangle}
+	 *
+	 * @param face - the face index
+	 * @return the normal
+	 * @throws IllegalArgumentException when the vertices of the face are on the
+	 *                                  same straight line
+	 */
+	private Vector normal(int face) {
+		Point3D v0 = vertex(faces[3 * face]);
+		return vertex(faces[3 * face + 1]).subtract(v0).crossProduct(vertex(faces[3 * face + 2]).subtract(v0))
+				.normalize();
+	}
+
+	/**
+	 * Build the hierarchy over the faces - each node is split at the median of
+	 * the centers of its faces on the longest axis of the centers
+	 *
+	 * @param faces - three vertex indexes of each face (in the given order)
+	 * @param count - the number of faces
+	 * @return the faces in the order of the leaves
+	 */
+	private int[] build(int[] faces, int count) {
+		int[] order = new int[count];
+		double[] centers = new double[3 * count];
+		for (int face = 0; face < count; ++face) {
+			order[face] = face;
+			for (int axis = 0; axis < 3; ++axis)
+				centers[3 * face + axis] = (positions[3 * faces[3 * face] + axis]
+						+ positions[3 * faces[3 * face + 1] + axis] + positions[3 * faces[3 * face + 2] + axis]) / 3;
+		}
+		int capacity = Math.max(1, 2 * count);
+		nodeBounds = new float[6 * capacity];
+		nodeOffset = new int[capacity];
+		nodeCount = new int[capacity];
+		if (count > 0)
+			buildNode(faces, order, centers, 0, count, 1);
+		nodeBounds = Arrays.copyOf(nodeBounds, 6 * nodesUsed);
+		nodeOffset = Arrays.copyOf(nodeOffset, nodesUsed);
+		nodeCount = Arrays.copyOf(nodeCount, nodesUsed);
+		return order;
+	}
+
+	/**
+	 * Build a node over a range of the faces
+	 *
+	 * @param faces   - three vertex indexes of each face
+	 * @param order   - the faces in the order of the leaves
+	 * @param centers - the center of each face
+	 * @param first   - the first place of the range in the order
+	 * @param count   - the number of faces in the range
+	 * @param level   - the depth of the node
+	 * @return the node index
+	 */
+	private int buildNode(int[] faces, int[] order, double[] centers, int first, int count, int level) {
+		int node = nodesUsed++;
+		depth = Math.max(depth, level);
+		double[] bounds = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+				Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		double[] centerBounds = bounds.clone();
+		for (int i = first; i < first + count; ++i) {
+			int face = order[i];
+			for (int axis = 0; axis < 3; ++axis) {
+				for (int corner = 0; corner < 3; ++corner) {
+					double value = positions[3 * faces[3 * face + corner] + axis];
+					bounds[axis] = Math.min(bounds[axis], value);
+					bounds[axis + 3] = Math.max(bounds[axis + 3], value);
+				}
+				centerBounds[axis] = Math.min(centerBounds[axis], centers[3 * face + axis]);
+				centerBounds[axis + 3] = Math.max(centerBounds[axis + 3], centers[3 * face + axis]);
+			}
+		}
+		for (int axis = 0; axis < 3; ++axis) {
+			nodeBounds[6 * node + axis] = down(bounds[axis]);
+			nodeBounds[6 * node + axis + 3] = up(bounds[axis + 3]);
+		}
+
+		int axis = 0;
+		for (int a = 1; a < 3; ++a)
+			if (centerBounds[a + 3] - centerBounds[a] > centerBounds[axis + 3] - centerBounds[axis])
+				axis = a;
+		if (count <= LEAF_SIZE || centerBounds[axis + 3] == centerBounds[axis]) {
+			nodeOffset[node] = first;
+			nodeCount[node] = count;
+			return node;
+		}
+		int middle = first + count / 2;
+		select(order, centers, axis, first, first + count - 1, middle);
+		buildNode(faces, order, centers, first, middle - first, level + 1);
+		nodeOffset[node] = buildNode(faces, order, centers, middle, first + count - middle, level + 1);
+		nodeCount[node] = 0;
+		return node;
+	}
+
+	/**
+	 * Partial sort of a range of the faces, so the face at the given place is the
+	 * face of its rank by the centers on the axis, and the faces before it are
+	 * not above it (quickselect)
+	 *
+	 * @param order   - the faces
+	 * @param centers - the center of each face
+	 * @param axis    - the axis
+	 * @param low     - the first place of the range
+	 * @param high    - the last place of the range
+	 * @param k       - the place to select
+	 */
+	private static void select(int[] order, double[] centers, int axis, int low, int high, int k) {
+		while (low < high) {
+			double pivot = centers[3 * order[(low + high) >>> 1] + axis];
+			int i = low, j = high;
+			while (i <= j) {
+				while (centers[3 * order[i] + axis] < pivot)
+					++i;
+				while (centers[3 * order[j] + axis] > pivot)
+					--j;
+				if (i <= j) {
+					int swap = order[i];
+					order[i++] = order[j];
+					order[j--] = swap;
+				}
+			}
+			if (k <= j)
+				high = j;
+			else if (k >= i)
+				low = i;
+			else
+				return;
+		}
+	}
+
+	/**
+	 * the closest float that isn't above the value
+	 *
+	 * @param value - the value
+	 * @return the float
+	 */
+	private static float down(double value) {
+		float f = (float) value;
+		return f > value ? Math.nextDown(f) : f;
+	}
+
+	/**
+	 * the closest float that isn't below the value
+	 *
+	 * @param value - the value
+	 * @return the float
+	 */
+	private static float up(double value) {
+		float f = (float) value;
+		return f < value ? Math.nextUp(f) : f;
+	}
+
+	/**
+	 * Slab test of the ray against the box of a node
+	 *
+	 * @param node - the node index
+	 * @param ox   - the head of the ray on the x axis
+	 * @param oy   - the head of the ray on the y axis
+	 * @param oz   - the head of the ray on the z axis
+	 * @param idx  - the inverse direction of the ray on the x axis
+	 * @param idy  - the inverse direction of the ray on the y axis
+	 * @param idz  - the inverse direction of the ray on the z axis
+	 * @param max  - maximum distance of intersection
+	 * @return distance of entry to the box, positive infinity when it is missed
+	 */
+	private double hitNode(int node, double ox, double oy, double oz, double idx, double idy, double idz,
+			double max) {
+		int b = 6 * node;
+		double t1 = (nodeBounds[b] - ox) * idx, t2 = (nodeBounds[b + 3] - ox) * idx;
+		double tMin = Math.min(t1, t2), tMax = Math.max(t1, t2);
+		t1 = (nodeBounds[b + 1] - oy) * idy;
+		t2 = (nodeBounds[b + 4] - oy) * idy;
+		tMin = Math.max(tMin, Math.min(t1, t2));
+		tMax = Math.min(tMax, Math.max(t1, t2));
+		t1 = (nodeBounds[b + 2] - oz) * idz;
+		t2 = (nodeBounds[b + 5] - oz) * idz;
+		tMin = Math.max(tMin, Math.min(t1, t2));
+		tMax = Math.min(tMax, Math.max(t1, t2));
+		// a NaN (ray on a slab boundary - 0 * infinity) fails all the comparisons, so
+		// the box is conservatively considered as hit from the head of the ray
+		if (tMax < 0 || tMin > tMax || tMin > max)
+			return Double.POSITIVE_INFINITY;
+		return tMin > 0 ? tMin : 0;
+	}
+
+	/**
+	 * Moller-Trumbore test of the ray against a face
+	 *
+	 * @param face - the face index
+	 * @param ox   - the head of the ray on the x axis
+	 * @param oy   - the head of the ray on the y axis
+	 * @param oz   - the head of the ray on the z axis
+	 * @param dx   - the direction of the ray on the x axis
+	 * @param dy   - the direction of the ray on the y axis
+	 * @param dz   - the direction of the ray on the z axis
+	 * @param max  - maximum distance of intersection
+	 * @return the distance of the intersection, positive infinity when there is
+	 *         no intersection
+	 */
+	private double intersect(int face, double ox, double oy, double oz, double dx, double dy, double dz,
+			double max) {
+		int v0 = 3 * faces[3 * face], v1 = 3 * faces[3 * face + 1], v2 = 3 * faces[3 * face + 2];
+		double x0 = positions[v0], y0 = positions[v0 + 1], z0 = positions[v0 + 2];
+		double e1x = positions[v1] - x0, e1y = positions[v1 + 1] - y0, e1z = positions[v1 + 2] - z0;
+		double e2x = positions[v2] - x0, e2y = positions[v2 + 1] - y0, e2z = positions[v2 + 2] - z0;
+		double px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x;
+		double determinant = e1x * px + e1y * py + e1z * pz;
+		if (isZero(determinant)) // the ray is parallel to the face
+			return Double.POSITIVE_INFINITY;
+		double inverse = 1 / determinant;
+		double sx = ox - x0, sy = oy - y0, sz = oz - z0;
+		double u = (sx * px + sy * py + sz * pz) * inverse;
+		if (u < 0 || u > 1)
+			return Double.POSITIVE_INFINITY;
+		double qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x;
+		double v = (dx * qx + dy * qy + dz * qz) * inverse;
+		if (v < 0 || u + v > 1)
+			return Double.POSITIVE_INFINITY;
+		double t = alignZero((e2x * qx + e2y * qy + e2z * qz) * inverse);
+		return t > 0 && alignZero(t - max) <= 0 ? t : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * the point of a face
+	 *
+	 * @param face  - the face index
+	 * @param point - the point on the face
+	 * @return the point with the normal of the face, and the emission and the
+	 *         material of its surface
+	 */
+	private GeoPoint geoPoint(int face, Point3D point) {
+		if (faceSurfaces == null)
+			return new GeoPoint(this, point, normal(face));
+		Surface surface = surfaces[faceSurfaces[face]];
+		return new GeoPoint(this, point, normal(face), surface.getEmission(), surface.getMaterial());
+	}
+
+	@Override
+	public List<GeoPoint> findGeoIntersections(Ray ray, double max) {
+		if (nodesUsed == 0)
+			return null;
+		Point3D p0 = ray.getP0();
+		Vector dir = ray.getDir();
+		double ox = p0.getX(), oy = p0.getY(), oz = p0.getZ();
+		double dx = dir.getX(), dy = dir.getY(), dz = dir.getZ();
+		double idx = 1 / dx, idy = 1 / dy, idz = 1 / dz;
+
+		List<GeoPoint> points = null;
+		int[] nodes = stacks.get().nodes;
+		int sp = 0;
+		nodes[sp++] = 0;
+		while (sp > 0) {
+			int node = nodes[--sp];
+			if (hitNode(node, ox, oy, oz, idx, idy, idz, max) == Double.POSITIVE_INFINITY)
+				continue;
+			int count = nodeCount[node];
+			if (count == 0) {
+				nodes[sp++] = nodeOffset[node];
+				nodes[sp++] = node + 1;
+				continue;
+			}
+			for (int face = nodeOffset[node]; face < nodeOffset[node] + count; ++face) {
+				double t = intersect(face, ox, oy, oz, dx, dy, dz, max);
+				if (t != Double.POSITIVE_INFINITY) {
+					if (points == null)
+						points = new LinkedList<GeoPoint>();
+					points.add(geoPoint(face, ray.getPoint(t)));
+				}
+			}
+		}
+		return points;
+	}
+
+	@Override
+	public GeoPoint findClosestIntersection(Ray ray, double max) {
+		if (nodesUsed == 0)
+			return null;
+		Point3D p0 = ray.getP0();
+		Vector dir = ray.getDir();
+		double ox = p0.getX(), oy = p0.getY(), oz = p0.getZ();
+		double dx = dir.getX(), dy = dir.getY(), dz = dir.getZ();
+		double idx = 1 / dx, idy = 1 / dy, idz = 1 / dz;
+		double closestDistance = max;
+		int closest = -1;
+		if (hitNode(0, ox, oy, oz, idx, idy, idz, closestDistance) == Double.POSITIVE_INFINITY)
+			return null;
+
+		TraversalStack stack = stacks.get();
+		int[] nodes = stack.nodes;
+		double[] distances = stack.distances;
+		int sp = 0;
+		int node = 0;
+		while (true) {
+			int count = nodeCount[node];
+			if (count > 0) {
+				int first = nodeOffset[node];
+				for (int face = first; face < first + count; ++face) {
+					double t = intersect(face, ox, oy, oz, dx, dy, dz, closestDistance);
+					if (t != Double.POSITIVE_INFINITY && (closest < 0 || t < closestDistance)) {
+						closestDistance = t;
+						closest = face;
+					}
+				}
+			} else {
+				int left = node + 1, right = nodeOffset[node];
+				double tLeft = hitNode(left, ox, oy, oz, idx, idy, idz, closestDistance);
+				double tRight = hitNode(right, ox, oy, oz, idx, idy, idz, closestDistance);
+				if (tLeft != Double.POSITIVE_INFINITY || tRight != Double.POSITIVE_INFINITY) {
+					if (tRight < tLeft) {
+						node = right;
+						if (tLeft != Double.POSITIVE_INFINITY) {
+							nodes[sp] = left;
+							distances[sp++] = tLeft;
+						}
+					} else {
+						node = left;
+						if (tRight != Double.POSITIVE_INFINITY) {
+							nodes[sp] = right;
+							distances[sp++] = tRight;
+						}
+					}
+					continue;
+				}
+			}
+			// pop the next node that still may contain a closer intersection
+			do {
+				if (sp == 0)
+					return closest < 0 ? null : geoPoint(closest, ray.getPoint(closestDistance));
+				node = nodes[--sp];
+			} while (distances[sp] > closestDistance);
+		}
+	}
+
+	/**
+	 * The normal of the face of the point - the faces are searched for the face
+	 * that contains the point, so this is slow. The points that are found on the
+	 * mesh carry the normal of their face.
+	 *
+	 * @throws IllegalArgumentException when the point is not on a face
+	 */
+	@Override
+	public Vector getNormal(Point3D point) {
+		double x = point.getX(), y = point.getY(), z = point.getZ();
+		for (int face = 0; face < getFaceCount(); ++face) {
+			Vector normal = normal(face);
+			double nx = normal.getX(), ny = normal.getY(), nz = normal.getZ();
+			// a ray from above the face back along its normal reaches the point
+			if (Math.abs(intersect(face, x + nx, y + ny, z + nz, -nx, -ny, -nz, 2) - 1) < 1e-6)
+				return normal;
+		}
+		throw new IllegalArgumentException("The point is not on a face of the mesh");
+	}
+
+	@Override
+	public void setMaxBoundary() {
+		if (nodesUsed == 0)
+			return;
+		maxBoundary = new Point3D(nodeBounds[3], nodeBounds[4], nodeBounds[5]);
+	}
+
+	@Override
+	public void setMinBoundary() {
+		if (nodesUsed == 0)
+			return;
+		minBoundary = new Point3D(nodeBounds[0], nodeBounds[1], nodeBounds[2]);
+	}
+}
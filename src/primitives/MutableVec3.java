@@ -0,0 +1,286 @@
+package primitives;
+
+/**
+ * Class MutableVec3 is a scratch triple of coordinates for the hot paths of the
+ * ray tracer - the operations change the triple itself instead of creating new
+ * {@link Vector} and {@link Point3D} objects. A scratch is confined to one
+ * thread (usually a local variable of the calculation, which the JIT keeps in
+ * registers), and it is turned into an immutable vector or point only when the
+ * result is kept.
+ * <p>
+ * Unlike {@link Vector} the coordinates are not aligned to zero and a zero
+ * triple is allowed.
+ *
+ * @author David and Matan
+ */
+public final class MutableVec3 {
+
+	/**
+	 * the coordinates, intentionally "package-friendly" due to performance
+	 * constraints
+	 */
+	double x, y, z;
+
+	/**
+	 * Ctor - the zero triple
+	 */
+	public MutableVec3() {
+	}
+
+	/**
+	 * Ctor - the triple of the given coordinates
+	 *
+	 * @param x - the coordinate along the x-axis
+	 * @param y - the coordinate along the y-axis
+	 * @param z - the coordinate along the z-axis
+	 */
+	public MutableVec3(double x, double y, double z) {
+		set(x, y, z);
+	}
+
+	/**
+	 * getter the coordinate along the x-axis
+	 *
+	 * @return the x coordinate
+	 */
+	public double getX() {
+		return x;
+	}
+
+	/**
+	 * getter the coordinate along the y-axis
+	 *
+	 * @return the y coordinate
+	 */
+	public double getY() {
+		return y;
+	}
+
+	/**
+	 * getter the coordinate along the z-axis
+	 *
+	 * @return the z coordinate
+	 */
+	public double getZ() {
+		return z;
+	}
+
+	/**
+	 * setter the coordinates
+	 *
+	 * @param x - the coordinate along the x-axis
+	 * @param y - the coordinate along the y-axis
+	 * @param z - the coordinate along the z-axis
+	 * @return this
+	 */
+	public MutableVec3 set(double x, double y, double z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		return this;
+	}
+
+	/**
+	 * setter the coordinates of a point
+	 *
+	 * @param point - the point
+	 * @return this
+	 */
+	public MutableVec3 set(Point3D point) {
+		return set(point.x, point.y, point.z);
+	}
+
+	/**
+	 * setter the coordinates of a vector
+	 *
+	 * @param vector - the vector
+	 * @return this
+	 */
+	public MutableVec3 set(Vector vector) {
+		return set(vector.x, vector.y, vector.z);
+	}
+
+	/**
+	 * setter the coordinates of another triple
+	 *
+	 * @param other - the triple
+	 * @return this
+	 */
+	public MutableVec3 set(MutableVec3 other) {
+		return set(other.x, other.y, other.z);
+	}
+
+	/**
+	 * setter the vector between two points
+	 *
+	 * @param to   - the head of the vector
+	 * @param from - the tail of the vector
+	 * @return this (to - from)
+	 */
+	public MutableVec3 setSubtract(Point3D to, Point3D from) {
+		return set(to.x - from.x, to.y - from.y, to.z - from.z);
+	}
+
+	/**
+	 * subtract a point - the vector from the point to this
+	 *
+	 * @param point - the point
+	 * @return this (this - point)
+	 */
+	public MutableVec3 subtract(Point3D point) {
+		return set(x - point.x, y - point.y, z - point.z);
+	}
+
+	/**
+	 * setter the cross product of two triples (either of them may be this)
+	 *
+	 * @param a - the left triple
+	 * @param b - the right triple
+	 * @return this (a x b)
+	 */
+	public MutableVec3 setCrossProduct(MutableVec3 a, MutableVec3 b) {
+		return set(a.y * b.z - a.z * b.y, a.z * b.x - a.x * b.z, a.x * b.y - a.y * b.x);
+	}
+
+	/**
+	 * add a vector multiplied by a scalar - the multiply-add of each coordinate
+	 *
+	 * @param scale  - the scalar
+	 * @param vector - the vector
+	 * @return this (this + scale * vector)
+	 */
+	public MutableVec3 scaleAdd(double scale, Vector vector) {
+		return set(mulAdd(vector.x, scale, x), mulAdd(vector.y, scale, y), mulAdd(vector.z, scale, z));
+	}
+
+	/**
+	 * add a triple multiplied by a scalar - the multiply-add of each coordinate
+	 *
+	 * @param scale - the scalar
+	 * @param other - the triple
+	 * @return this (this + scale * other)
+	 */
+	public MutableVec3 scaleAdd(double scale, MutableVec3 other) {
+		return set(mulAdd(other.x, scale, x), mulAdd(other.y, scale, y), mulAdd(other.z, scale, z));
+	}
+
+	/**
+	 * multiply by a scalar
+	 *
+	 * @param scale - the scalar
+	 * @return this
+	 */
+	public MutableVec3 scale(double scale) {
+		return set(x * scale, y * scale, z * scale);
+	}
+
+	/**
+	 * Calculates dotProduct with a vector
+	 *
+	 * @param vector - the vector
+	 * @return scalar number
+	 */
+	public double dotProduct(Vector vector) {
+		return dot(x, y, z, vector.x, vector.y, vector.z);
+	}
+
+	/**
+	 * Calculates dotProduct with a triple
+	 *
+	 * @param other - the triple
+	 * @return scalar number
+	 */
+	public double dotProduct(MutableVec3 other) {
+		return dot(x, y, z, other.x, other.y, other.z);
+	}
+
+	/**
+	 * Calculates the length squared of the triple
+	 *
+	 * @return real positive number that represents length squared
+	 */
+	public double lengthSquared() {
+		return dot(x, y, z, x, y, z);
+	}
+
+	/**
+	 * Calculates the length of the triple
+	 *
+	 * @return real positive number that represents length
+	 */
+	public double length() {
+		return Math.sqrt(lengthSquared());
+	}
+
+	/**
+	 * Normalizes the triple in place (the coordinates of a zero triple become NaN)
+	 *
+	 * @return this
+	 */
+	public MutableVec3 normalize() {
+		double norma = length();
+		return set(x / norma, y / norma, z / norma);
+	}
+
+	/**
+	 * Checks whether all the coordinates are [almost] zero
+	 *
+	 * @return true if the triple is a zero vector
+	 */
+	public boolean isZero() {
+		return Util.isZero(x) && Util.isZero(y) && Util.isZero(z);
+	}
+
+	/**
+	 * create an immutable vector of the triple
+	 *
+	 * @return new vector
+	 * @throws IllegalArgumentException when the triple is zero
+	 */
+	public Vector toVector() {
+		return new Vector(x, y, z);
+	}
+
+	/**
+	 * create an immutable point of the triple
+	 *
+	 * @return new point
+	 */
+	public Point3D toPoint() {
+		return new Point3D(x, y, z);
+	}
+
+	/**
+	 * Calculates dotProduct of two triples of numbers
+	 *
+	 * @param ax - the x coordinate of the first triple
+	 * @param ay - the y coordinate of the first triple
+	 * @param az - the z coordinate of the first triple
+	 * @param bx - the x coordinate of the second triple
+	 * @param by - the y coordinate of the second triple
+	 * @param bz - the z coordinate of the second triple
+	 * @return scalar number
+	 */
+	public static double dot(double ax, double ay, double az, double bx, double by, double bz) {
+		return ax * bx + ay * by + az * bz;
+	}
+
+	/**
+	 * multiply-add of numbers - not fused: a separate multiply and add, with the
+	 * same rounding as the operations of {@link Vector}, so the scratch and the
+	 * immutable calculations give the same results
+	 *
+	 * @param a - the multiplicand
+	 * @param b - the multiplier
+	 * @param c - the addend
+	 * @return a * b + c
+	 */
+	public static double mulAdd(double a, double b, double c) {
+		return a * b + c;
+	}
+
+	@Override
+	public String toString() {
+		return "MutableVec3 (" + x + ", " + y + ", " + z + ")";
+	}
+}
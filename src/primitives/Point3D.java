@@ -1,5 +1,7 @@
 package primitives;
 
+import static primitives.Util.*;
+
 /**
  * 
  * Class Point3D is the basic class representing a Point3D for Cartesian
@@ -11,28 +13,30 @@ package primitives;
 public class Point3D {
 
 	/**
-	 * x represents the coordinate along the x-axis
+	 * x represents the coordinate along the x-axis, the coordinates are kept as
+	 * plain numbers (and not as {@link Coordinate} objects) so a point is a single
+	 * allocation, intentionally "package-friendly" due to performance constraints
 	 */
-	final Coordinate x;
+	final double x;
 	/**
 	 * y represents the coordinate along the y-axis
 	 */
-	final Coordinate y;
+	final double y;
 	/**
 	 * z represents the coordinate along the z-axis
 	 */
-	final Coordinate z;
+	final double z;
 
 	public double getX() {
-		return x.coord;
+		return x;
 	}
 
 	public double getY() {
-		return y.coord;
+		return y;
 	}
 
 	public double getZ() {
-		return z.coord;
+		return z;
 	}
 
 	/**
@@ -43,9 +47,10 @@ public class Point3D {
 	 * @param z represents the coordinate along the z-axis
 	 */
 	public Point3D(double x, double y, double z) {
-		this.x = new Coordinate(x);
-		this.y = new Coordinate(y);
-		this.z = new Coordinate(z);
+		// if it too close to zero make it zero
+		this.x = alignZero(x);
+		this.y = alignZero(y);
+		this.z = alignZero(z);
 	}
 
 	/**
@@ -62,12 +67,12 @@ public class Point3D {
 		if (!(obj instanceof Point3D))
 			return false;
 		Point3D other = (Point3D) obj;
-		return this.x.equals(other.x) && this.y.equals(other.y) && this.z.equals(other.z);
+		return isZero(x - other.x) && isZero(y - other.y) && isZero(z - other.z);
 	}
 
 	@Override
 	public String toString() {
-		return "(" + x + "," + y + "," + z + ")";
+		return "( " + x + ", " + y + ", " + z + ")";
 	}
 
 	/**
@@ -77,7 +82,7 @@ public class Point3D {
 	 * @return new vector
 	 */
 	public Vector subtract(Point3D other) {
-		return new Vector(this.x.coord - other.x.coord, this.y.coord - other.y.coord, this.z.coord - other.z.coord);
+		return new Vector(x - other.x, y - other.y, z - other.z);
 	}
 
 	/**
@@ -87,8 +92,7 @@ public class Point3D {
 	 * @return new point3D
 	 */
 	public Point3D add(Vector vector) {
-		return new Point3D(this.x.coord + vector.getHead().x.coord, this.y.coord + vector.getHead().y.coord,
-				this.z.coord + vector.getHead().z.coord);
+		return new Point3D(x + vector.x, y + vector.y, z + vector.z);
 	}
 
 	/**
@@ -98,10 +102,10 @@ public class Point3D {
 	 * @return distance squared between two points
 	 */
 	public double distanceSquared(Point3D other) {
-		double a = (this.x.coord - other.x.coord) * (this.x.coord - other.x.coord);
-		double b = (this.y.coord - other.y.coord) * (this.y.coord - other.y.coord);
-		double c = (this.z.coord - other.z.coord) * (this.z.coord - other.z.coord);
-		return a + b + c;
+		double dx = x - other.x;
+		double dy = y - other.y;
+		double dz = z - other.z;
+		return dx * dx + dy * dy + dz * dz;
 	}
 
 	/**
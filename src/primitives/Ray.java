@@ -51,6 +51,20 @@ public class Ray {
 		this.dir = dir.normalized();
 	}
 
+	/**
+	 * Ray constructor receiving a Point3d value and a scratch direction - the
+	 * scratch is normalized in place, so the direction vector is the only object
+	 * that is created for it
+	 * 
+	 * @param p0  - a point of ray
+	 * @param dir - a direction of ray (changed to the normalized direction)
+	 * @throws IllegalArgumentException when the direction is zero
+	 */
+	public Ray(Point3D p0, MutableVec3 dir) {
+		this.p0 = p0;
+		this.dir = dir.normalize().toVector();
+	}
+
 	/**
 	 * this constructor is special its create ray but it also move the head point in
 	 * the normal direction in DELTA or -DELTA (depend on the dotProduct)
@@ -62,8 +76,9 @@ public class Ray {
 	public Ray(Point3D p0, Vector dir, Vector normal) {
 		this.dir = dir;
 		double nv = normal.dotProduct(dir);
-		Vector delta = normal.scale(nv > 0 ? DELTA : -DELTA);
-		this.p0 = p0.add(delta);
+		double delta = nv > 0 ? DELTA : -DELTA;
+		this.p0 = new Point3D(p0.x + Util.alignZero(normal.x * delta), p0.y + Util.alignZero(normal.y * delta),
+				p0.z + Util.alignZero(normal.z * delta));
 	}
 
 	/**
@@ -75,11 +90,10 @@ public class Ray {
 	 * 
 	 */
 	public Point3D getPoint(double t) {
-		try {
-			return p0.add(dir.scale(t));
-		} catch (Exception e) {
+		double x = Util.alignZero(dir.x * t), y = Util.alignZero(dir.y * t), z = Util.alignZero(dir.z * t);
+		if (x == 0 && y == 0 && z == 0)
 			return p0;
-		}
+		return new Point3D(p0.x + x, p0.y + y, p0.z + z);
 	}
 
 	/**
@@ -0,0 +1,220 @@
+package primitives;
+
+/**
+ * Class Transform represents an affine transform of the space - a linear part
+ * (rotation and scale) and a translation, together with its inverse. The
+ * transform is immutable, each operation returns a new transform that applies
+ * the operation after the current one.
+ *
+ * @author David and Matan
+ *
+ */
+public class Transform {
+
+	/**
+	 * the matrix by rows - {m00,m01,m02,tx, m10,m11,m12,ty, m20,m21,m22,tz}
+	 */
+	private final double[] m;
+	/**
+	 * the matrix of the inverse transform by rows
+	 */
+	private final double[] inverse;
+
+	/**
+	 * The transform that doesn't move anything
+	 */
+	public final static Transform IDENTITY = new Transform(new double[] { 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0 });
+
+	/**
+	 * Transform constructor receiving the matrix
+	 *
+	 * @param m - the matrix by rows
+	 * @throws IllegalArgumentException when the matrix is not invertible
+	 */
+	private Transform(double[] m) {
+		this.m = m;
+		double det = m[0] * (m[5] * m[10] - m[6] * m[9]) - m[1] * (m[4] * m[10] - m[6] * m[8])
+				+ m[2] * (m[4] * m[9] - m[5] * m[8]);
+		// the determinant relative to the product of the lengths of the columns (its
+		// maximal size), so a small uniform scale is still invertible
+		double norm = Math.sqrt((m[0] * m[0] + m[4] * m[4] + m[8] * m[8]) * (m[1] * m[1] + m[5] * m[5] + m[9] * m[9])
+				* (m[2] * m[2] + m[6] * m[6] + m[10] * m[10]));
+		if (norm == 0 || Util.isZero(det / norm))
+			throw new IllegalArgumentException("Transform must be invertible");
+		// the inverse of the linear part by the adjugate
+		double[] inv = new double[12];
+		inv[0] = (m[5] * m[10] - m[6] * m[9]) / det;
+		inv[1] = (m[2] * m[9] - m[1] * m[10]) / det;
+		inv[2] = (m[1] * m[6] - m[2] * m[5]) / det;
+		inv[4] = (m[6] * m[8] - m[4] * m[10]) / det;
+		inv[5] = (m[0] * m[10] - m[2] * m[8]) / det;
+		inv[6] = (m[2] * m[4] - m[0] * m[6]) / det;
+		inv[8] = (m[4] * m[9] - m[5] * m[8]) / det;
+		inv[9] = (m[1] * m[8] - m[0] * m[9]) / det;
+		inv[10] = (m[0] * m[5] - m[1] * m[4]) / det;
+		// the inverse translation - minus the inverse linear part of the translation
+		for (int row = 0; row < 3; ++row)
+			inv[4 * row + 3] = -(inv[4 * row] * m[3] + inv[4 * row + 1] * m[7] + inv[4 * row + 2] * m[11]);
+		inverse = inv;
+	}
+
+	/**
+	 * create a transform that applies the given matrix after this transform
+	 *
+	 * @param a - the matrix by rows
+	 * @return the combined transform
+	 */
+	private Transform then(double[] a) {
+		double[] r = new double[12];
+		for (int row = 0; row < 3; ++row) {
+			for (int col = 0; col < 4; ++col)
+				r[4 * row + col] = a[4 * row] * m[col] + a[4 * row + 1] * m[4 + col] + a[4 * row + 2] * m[8 + col];
+			r[4 * row + 3] += a[4 * row + 3];
+		}
+		return new Transform(r);
+	}
+
+	/**
+	 * move after this transform
+	 *
+	 * @param vector - the translation
+	 * @return the combined transform
+	 */
+	public Transform translate(Vector vector) {
+		return translate(vector.x, vector.y, vector.z);
+	}
+
+	/**
+	 * move after this transform
+	 *
+	 * @param x - the translation on the x axis
+	 * @param y - the translation on the y axis
+	 * @param z - the translation on the z axis
+	 * @return the combined transform
+	 */
+	public Transform translate(double x, double y, double z) {
+		return then(new double[] { 1, 0, 0, x, 0, 1, 0, y, 0, 0, 1, z });
+	}
+
+	/**
+	 * scale by each axis after this transform
+	 *
+	 * @param x - the scale on the x axis
+	 * @param y - the scale on the y axis
+	 * @param z - the scale on the z axis
+	 * @return the combined transform
+	 * @throws IllegalArgumentException when one of the scales is zero
+	 */
+	public Transform scale(double x, double y, double z) {
+		return then(new double[] { x, 0, 0, 0, 0, y, 0, 0, 0, 0, z, 0 });
+	}
+
+	/**
+	 * scale uniformly after this transform
+	 *
+	 * @param scale - the scale on all the axes
+	 * @return the combined transform
+	 * @throws IllegalArgumentException when the scale is zero
+	 */
+	public Transform scale(double scale) {
+		return scale(scale, scale, scale);
+	}
+
+	/**
+	 * rotate around an axis through the origin after this transform
+	 *
+	 * @param axis - the axis of the rotation
+	 * @param teta - size of the angle to rotate in radians (counterclockwise when
+	 *             the axis is toward the viewer)
+	 * @return the combined transform
+	 */
+	public Transform rotate(Vector axis, double teta) {
+		Vector u = axis.normalized();
+		double x = u.x, y = u.y, z = u.z;
+		double cosT = Math.cos(teta), sinT = Math.sin(teta), c = 1 - cosT;
+		return then(new double[] { //
+				cosT + x * x * c, x * y * c - z * sinT, x * z * c + y * sinT, 0, //
+				y * x * c + z * sinT, cosT + y * y * c, y * z * c - x * sinT, 0, //
+				z * x * c - y * sinT, z * y * c + x * sinT, cosT + z * z * c, 0 });
+	}
+
+	/**
+	 * transform a point
+	 *
+	 * @param point - the point
+	 * @return the transformed point
+	 */
+	public Point3D transformPoint(Point3D point) {
+		return applyPoint(m, point);
+	}
+
+	/**
+	 * transform a vector (without the translation)
+	 *
+	 * @param vector - the vector
+	 * @return the transformed vector
+	 */
+	public Vector transformVector(Vector vector) {
+		return applyVector(m, vector);
+	}
+
+	/**
+	 * transform a normal vector - by the inverse transposed linear part, so it
+	 * stays orthogonal to the transformed surface
+	 *
+	 * @param normal - the normal of the surface
+	 * @return the transformed normal (normalized)
+	 */
+	public Vector transformNormal(Vector normal) {
+		double x = normal.x, y = normal.y, z = normal.z;
+		return new Vector(inverse[0] * x + inverse[4] * y + inverse[8] * z,
+				inverse[1] * x + inverse[5] * y + inverse[9] * z, inverse[2] * x + inverse[6] * y + inverse[10] * z)
+				.normalize();
+	}
+
+	/**
+	 * transform a point back by the inverse transform
+	 *
+	 * @param point - the transformed point
+	 * @return the original point
+	 */
+	public Point3D inversePoint(Point3D point) {
+		return applyPoint(inverse, point);
+	}
+
+	/**
+	 * transform a vector back by the inverse transform
+	 *
+	 * @param vector - the transformed vector
+	 * @return the original vector
+	 */
+	public Vector inverseVector(Vector vector) {
+		return applyVector(inverse, vector);
+	}
+
+	/**
+	 * apply a matrix on a point
+	 *
+	 * @param a     - the matrix by rows
+	 * @param point - the point
+	 * @return the result point
+	 */
+	private static Point3D applyPoint(double[] a, Point3D point) {
+		double x = point.x, y = point.y, z = point.z;
+		return new Point3D(a[0] * x + a[1] * y + a[2] * z + a[3], a[4] * x + a[5] * y + a[6] * z + a[7],
+				a[8] * x + a[9] * y + a[10] * z + a[11]);
+	}
+
+	/**
+	 * apply the linear part of a matrix on a vector
+	 *
+	 * @param a      - the matrix by rows
+	 * @param vector - the vector
+	 * @return the result vector
+	 */
+	private static Vector applyVector(double[] a, Vector vector) {
+		double x = vector.x, y = vector.y, z = vector.z;
+		return new Vector(a[0] * x + a[1] * y + a[2] * z, a[4] * x + a[5] * y + a[6] * z,
+				a[8] * x + a[9] * y + a[10] * z);
+	}
+}
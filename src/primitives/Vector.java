@@ -1,5 +1,7 @@
 package primitives;
 
+import static primitives.Util.*;
+
 /**
  * Class Vector is the basic class representing a Vector for Cartesian
  * coordinate system.
@@ -8,6 +10,15 @@ package primitives;
  */
 public class Vector {
 
+	/**
+	 * the coordinates of the head of the vector, kept as plain numbers so a vector
+	 * is a single allocation, intentionally "package-friendly" due to performance
+	 * constraints
+	 */
+	double x, y, z;
+	/**
+	 * the head of the vector as a point - created on demand
+	 */
 	private Point3D head;
 
 	/**
@@ -16,9 +27,38 @@ public class Vector {
 	 * @return the head of vector
 	 */
 	public Point3D getHead() {
+		if (head == null)
+			head = new Point3D(x, y, z);
 		return head;
 	}
 
+	/**
+	 * getter the coordinate of the head along the x-axis
+	 * 
+	 * @return the x coordinate
+	 */
+	public double getX() {
+		return x;
+	}
+
+	/**
+	 * getter the coordinate of the head along the y-axis
+	 * 
+	 * @return the y coordinate
+	 */
+	public double getY() {
+		return y;
+	}
+
+	/**
+	 * getter the coordinate of the head along the z-axis
+	 * 
+	 * @return the z coordinate
+	 */
+	public double getZ() {
+		return z;
+	}
+
 	/**
 	 * Vector constructor receiving a Point3D value
 	 * 
@@ -26,8 +66,7 @@ public class Vector {
 	 * @throws IllegalArgumentException when the vector is equal to zero
 	 */
 	public Vector(Point3D head) {
-		if (head.equals(Point3D.ZERO))
-			throw new IllegalArgumentException("The vector can not be zero!");
+		this(head.x, head.y, head.z);
 		this.head = head;
 	}
 
@@ -40,8 +79,11 @@ public class Vector {
 	 * @throws IllegalArgumentException when the vector is equal to zero
 	 */
 	public Vector(double x, double y, double z) {
-		head = new Point3D(x, y, z);
-		if (head.equals(Point3D.ZERO))
+		// if it too close to zero make it zero
+		this.x = alignZero(x);
+		this.y = alignZero(y);
+		this.z = alignZero(z);
+		if (this.x == 0 && this.y == 0 && this.z == 0)
 			throw new IllegalArgumentException("The vector can not be zero!");
 	}
 
@@ -54,12 +96,12 @@ public class Vector {
 		if (!(obj instanceof Vector))
 			return false;
 		Vector other = (Vector) obj;
-		return this.head.equals(other.head);
+		return isZero(x - other.x) && isZero(y - other.y) && isZero(z - other.z);
 	}
 
 	@Override
 	public String toString() {
-		return "Vector [head=" + head + "]";
+		return "Vector [head=" + getHead() + "]";
 	}
 
 	/**
@@ -69,7 +111,7 @@ public class Vector {
 	 * @return new vector
 	 */
 	public Vector add(Vector other) {
-		return new Vector(head.add(other));
+		return new Vector(x + other.x, y + other.y, z + other.z);
 	}
 
 	/**
@@ -79,7 +121,7 @@ public class Vector {
 	 * @return new vector
 	 */
 	public Vector subtract(Vector other) {
-		return head.subtract(other.head);
+		return new Vector(x - other.x, y - other.y, z - other.z);
 	}
 
 	/**
@@ -89,7 +131,7 @@ public class Vector {
 	 * @return new vector that multiply in this scalar
 	 */
 	public Vector scale(double num) {
-		return new Vector(head.x.coord * num, head.y.coord * num, head.z.coord * num);
+		return new Vector(x * num, y * num, z * num);
 	}
 
 	/**
@@ -99,8 +141,7 @@ public class Vector {
 	 * @return scalar number
 	 */
 	public double dotProduct(Vector other) {
-		return head.x.coord * other.head.x.coord + head.y.coord * other.head.y.coord
-				+ head.z.coord * other.head.z.coord;
+		return x * other.x + y * other.y + z * other.z;
 	}
 
 	/**
@@ -110,9 +151,7 @@ public class Vector {
 	 * @return a new orthogonal vector to two other vectors
 	 */
 	public Vector crossProduct(Vector other) {
-		return new Vector(head.y.coord * other.head.z.coord - head.z.coord * other.head.y.coord,
-				head.z.coord * other.head.x.coord - head.x.coord * other.head.z.coord,
-				head.x.coord * other.head.y.coord - head.y.coord * other.head.x.coord);
+		return new Vector(y * other.z - z * other.y, z * other.x - x * other.z, x * other.y - y * other.x);
 	}
 
 	/**
@@ -121,7 +160,7 @@ public class Vector {
 	 * @return real positive number that represents length squared
 	 */
 	public double lengthSquared() {
-		return head.x.coord * head.x.coord + head.y.coord * head.y.coord + head.z.coord * head.z.coord;
+		return x * x + y * y + z * z;
 	}
 
 	/**
@@ -140,7 +179,10 @@ public class Vector {
 	 */
 	public Vector normalize() {
 		double norma = length();
-		head = new Point3D(head.x.coord / norma, head.y.coord / norma, head.z.coord / norma);
+		x = alignZero(x / norma);
+		y = alignZero(y / norma);
+		z = alignZero(z / norma);
+		head = null;
 		return this;
 	}
 
@@ -150,7 +192,7 @@ public class Vector {
 	 * @return new vector normalized
 	 */
 	public Vector normalized() {
-		return new Vector(head).normalize();
+		return new Vector(x, y, z).normalize();
 	}
 
 	/**
@@ -159,9 +201,6 @@ public class Vector {
 	 * @return vector normal to "this" vector
 	 */
 	public Vector createNormal() {
-		var x = head.getX();
-		var y = head.getY();
-		var z = head.getZ();
 		int min = 1;
 		var minCoor = x > 0 ? x : -x;
 		var absy = y > 0 ? y : -y;
@@ -0,0 +1,70 @@
+/**
+ *
+ */
+package renderer;
+
+import geometries.BVH;
+import geometries.Intersectable.GeoPoint;
+import primitives.Ray;
+import scene.Scene;
+
+/**
+ * Ray tracer with Bounding Volume Hierarchy implementation. The class is to
+ * calculate the closest point to the ray from all the intersections and
+ * calculate the color in this point
+ *
+ * @author David and Matan
+ */
+public class RayTracerBVH extends RayTracerBasic {
+
+	private BVH bvh;
+
+	/**
+	 * Ctor - get scene and set it
+	 *
+	 * @param scene - body that build from geometries bodies and color and
+	 *              ambientLight(strong of the color)
+	 */
+	public RayTracerBVH(Scene scene) {
+		super(scene);
+	}
+
+	/**
+	 * build the hierarchy for ray trace over the geometries of the scene
+	 *
+	 * @return this
+	 */
+	public RayTracerBVH setBVH() {
+		return setBVH(BVH.Construction.SAH);
+	}
+
+	/**
+	 * build the hierarchy for ray trace over the geometries of the scene
+	 *
+	 * @param construction - the algorithm for building the hierarchy
+	 * @return this
+	 */
+	public RayTracerBVH setBVH(BVH.Construction construction) {
+		return setBVH(construction, false);
+	}
+
+	/**
+	 * build the hierarchy for ray trace over the geometries of the scene
+	 *
+	 * @param construction - the algorithm for building the hierarchy
+	 * @param wide         - true for traversing the hierarchy with four children
+	 *                     in each node (see {@link BVH#setWide(boolean)})
+	 * @return this
+	 */
+	public RayTracerBVH setBVH(BVH.Construction construction, boolean wide) {
+		bvh = new BVH(scene.geometries, construction).setWide(wide);
+		accelerator = bvh;
+		return this;
+	}
+
+
+	@Override
+	protected GeoPoint[] findClosestIntersections(Ray[] rays) {
+		return bvh.findClosestIntersections(rays);
+	}
+}
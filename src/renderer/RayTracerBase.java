@@ -33,4 +33,19 @@ public abstract class RayTracerBase {
 	 */
 	public abstract Color traceRay(Ray ray);
 
+	/**
+	 * returns the colors of a packet of rays (like the rays of a block of pixels)
+	 * - the same colors as tracing each ray alone, a tracer may trace the packet
+	 * together for sharing the work of the rays
+	 * 
+	 * @param rays - the rays of the packet
+	 * @return the colors of the rays
+	 */
+	public Color[] traceRays(Ray[] rays) {
+		Color[] colors = new Color[rays.length];
+		for (int i = 0; i < rays.length; ++i)
+			colors[i] = traceRay(rays[i]);
+		return colors;
+	}
+
 }
@@ -1,15 +1,19 @@
 package renderer;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import elements.LightSource;
 import primitives.Color;
 import primitives.Material;
+import primitives.MutableVec3;
 import primitives.Point3D;
 import primitives.Ray;
 import primitives.Util;
 import primitives.Vector;
 import static primitives.Util.*;
 import scene.Scene;
+import geometries.Intersectable;
 import geometries.Intersectable.GeoPoint;
 
 /**
@@ -28,6 +32,22 @@ public class RayTracerBasic extends RayTracerBase {
 	protected static final double MIN_CALC_COLOR_K = 0.001;
 	protected static final double INITIAL_K = 1.0;
 	protected int numOfRays = 1;
+	/**
+	 * the structure that the rays are traced against - the geometries of the scene
+	 * or an acceleration structure over them
+	 */
+	protected Intersectable accelerator;
+	/**
+	 * Number of cells on each axis of the grid for sorting the batched rays by
+	 * their heads
+	 */
+	private static final int SORT_CELLS = 16;
+	private boolean batching = false;
+	/**
+	 * the grid for sorting the batched rays - {minX,minY,minZ} and the number of
+	 * cells in a unit on each axis
+	 */
+	private final double[] sortGrid = new double[6];
 
 	/**
 	 * Ctor - get scene and set it
@@ -37,6 +57,7 @@ public class RayTracerBasic extends RayTracerBase {
 	 */
 	public RayTracerBasic(Scene scene) {
 		super(scene);
+		accelerator = scene.geometries;
 	}
 
 	/**
@@ -55,6 +76,33 @@ public class RayTracerBasic extends RayTracerBase {
 	
 	
 
+	/**
+	 * setter batching of the secondary rays of a packet (see
+	 * {@link #traceRays(Ray[])}). The shadow, reflected and refracted rays of all
+	 * the points of the packet are queued level by level, sorted by the cell of
+	 * their head in a grid over the scene (as it is at this call) and by the
+	 * octant of their direction, and traced batch after batch - so rays that
+	 * visit the same parts of the scene are traced one after the other. The
+	 * colors are the same as tracing each ray depth first.
+	 * 
+	 * @param batching - true for batching the secondary rays
+	 * @return RayTracerBasic itself
+	 */
+	public RayTracerBasic setBatching(boolean batching) {
+		this.batching = batching;
+		if (batching) {
+			var bounded = scene.geometries.getBounded();
+			Point3D min = bounded.getMinBoundary(), max = bounded.getMaxBoundary();
+			double[] lo = { min.getX(), min.getY(), min.getZ() }, hi = { max.getX(), max.getY(), max.getZ() };
+			for (int axis = 0; axis < 3; ++axis) {
+				double size = hi[axis] - lo[axis];
+				sortGrid[axis] = Double.isFinite(lo[axis]) ? lo[axis] : 0;
+				sortGrid[axis + 3] = size > 0 && Double.isFinite(size) ? SORT_CELLS / size : 0;
+			}
+		}
+		return this;
+	}
+
 	@Override
 	public Color traceRay(Ray ray) {
 		GeoPoint closestPoint = findClosestIntersection(ray);
@@ -69,10 +117,283 @@ public class RayTracerBasic extends RayTracerBase {
 	 * @return geoPoint of the closest point
 	 */
 	protected GeoPoint findClosestIntersection(Ray ray) {
-		List<GeoPoint> intersections = scene.geometries.findGeoIntersections(ray);
-		if (intersections == null)
-			return null;
-		return ray.findClosestGeoPoint(intersections);
+		return accelerator.findClosestIntersection(ray);
+	}
+
+	@Override
+	public Color[] traceRays(Ray[] rays) {
+		GeoPoint[] closestPoints = findClosestIntersections(rays);
+		Color[] colors = new Color[rays.length];
+		if (!batching) {
+			for (int i = 0; i < rays.length; ++i)
+				colors[i] = closestPoints[i] == null ? scene.background : calcColor(closestPoints[i], rays[i]);
+			return colors;
+		}
+		ShadingPoint[] roots = new ShadingPoint[rays.length];
+		List<ShadingPoint> points = new ArrayList<ShadingPoint>();
+		for (int i = 0; i < rays.length; ++i)
+			if (closestPoints[i] != null) {
+				roots[i] = new ShadingPoint(closestPoints[i], rays[i], MAX_CALC_COLOR_LEVEL, INITIAL_K);
+				points.add(roots[i]);
+			}
+		LightSource[] lights = scene.lights.toArray(new LightSource[0]);
+		while (!points.isEmpty())
+			points = traceLevel(points, lights);
+		for (int i = 0; i < rays.length; ++i)
+			colors[i] = roots[i] == null ? scene.background
+					: calcColor(roots[i]).add(scene.ambientLight.getIntensity());
+		return colors;
+	}
+
+	/**
+	 * A point to shade in the batched mode, with the results of all its secondary
+	 * rays - so its color is summed after the batches in the same order as by the
+	 * depth first tracing
+	 */
+	private static class ShadingPoint {
+		private final GeoPoint point;
+		private final Ray ray;
+		private final int level;
+		private final double k;
+		/**
+		 * the transparency toward each light (where a shadow ray is traced)
+		 */
+		private double[] ktr;
+		private Beam reflected = null, refracted = null;
+
+		/**
+		 * Ctor
+		 * 
+		 * @param point - point on geometry body
+		 * @param ray   - the ray that hit the point
+		 * @param level - level of Recursion
+		 * @param k     - the current attenuation level
+		 */
+		private ShadingPoint(GeoPoint point, Ray ray, int level, double k) {
+			this.point = point;
+			this.ray = ray;
+			this.level = level;
+			this.k = k;
+		}
+	}
+
+	/**
+	 * A reflected or refracted beam of a point in the batched mode with the points
+	 * hit by its rays
+	 */
+	private static class Beam {
+		private final Ray ray;
+		private final double kx;
+		private final ShadingPoint[] hits;
+
+		/**
+		 * Ctor
+		 * 
+		 * @param ray  - the main ray of the beam
+		 * @param kx   - the reflection or transparency factor
+		 * @param size - number of rays in the beam
+		 */
+		private Beam(Ray ray, double kx, int size) {
+			this.ray = ray;
+			this.kx = kx;
+			this.hits = new ShadingPoint[size];
+		}
+	}
+
+	/**
+	 * Trace all the secondary rays of the points of a level in batches - first
+	 * the shadow rays and then the reflected and refracted rays
+	 * 
+	 * @param points - the points of the level
+	 * @param lights - the light sources of the scene
+	 * @return the points hit by the reflected and refracted rays (the next level)
+	 */
+	private List<ShadingPoint> traceLevel(List<ShadingPoint> points, LightSource[] lights) {
+		// the shadow rays - by the same conditions as of calcLocalEffects
+		List<ShadingPoint> owners = new ArrayList<ShadingPoint>();
+		List<Integer> lightIndexes = new ArrayList<Integer>();
+		List<Vector> ls = new ArrayList<Vector>();
+		List<Long> keys = new ArrayList<Long>();
+		for (ShadingPoint sp : points) {
+			Vector n = sp.point.getNormal();
+			double nv = alignZero(n.dotProduct(sp.ray.getDir()));
+			if (nv == 0)
+				continue;
+			sp.ktr = new double[lights.length];
+			for (int i = 0; i < lights.length; ++i) {
+				Vector l = lights[i].getL(sp.point.point);
+				double nl = alignZero(n.dotProduct(l));
+				if (isLit(nl, nv)) {
+					keys.add(sortKey(sp.point.point, l.scale(-1), keys.size()));
+					owners.add(sp);
+					lightIndexes.add(i);
+					ls.add(l);
+				}
+			}
+		}
+		for (int q : sortedOrder(keys)) {
+			ShadingPoint sp = owners.get(q);
+			int i = lightIndexes.get(q);
+			sp.ktr[i] = transparency(lights[i], ls.get(q), sp.point.getNormal(), sp.point);
+		}
+
+		// the reflected and refracted rays - by the same conditions as of
+		// calcGlobalEffects
+		List<Beam> beams = new ArrayList<Beam>();
+		List<Integer> beamIndexes = new ArrayList<Integer>();
+		List<Ray> beamRays = new ArrayList<Ray>();
+		List<ShadingPoint> beamOwners = new ArrayList<ShadingPoint>();
+		keys.clear();
+		for (ShadingPoint sp : points) {
+			if (sp.level == 1)
+				continue;
+			Material material = sp.point.getMaterial();
+			Vector n = sp.point.getNormal();
+			var v = sp.ray.getDir();
+			if (sp.k * material.kR > MIN_CALC_COLOR_K) {
+				double nv = Util.alignZero(n.dotProduct(v));
+				sp.reflected = queueBeam(sp, calcRayReflection(n, v, sp.point.point, nv), n, material.kR,
+						material.kGS, beams, beamIndexes, beamRays, beamOwners, keys);
+			}
+			if (sp.k * material.kT > MIN_CALC_COLOR_K)
+				sp.refracted = queueBeam(sp, clacRayRefraction(n, v, sp.point.point), n, material.kT, material.kDG,
+						beams, beamIndexes, beamRays, beamOwners, keys);
+		}
+		List<ShadingPoint> next = new ArrayList<ShadingPoint>();
+		for (int q : sortedOrder(keys)) {
+			GeoPoint refPoint = findClosestIntersection(beamRays.get(q));
+			if (refPoint != null) {
+				Beam beam = beams.get(q);
+				ShadingPoint owner = beamOwners.get(q);
+				var hit = new ShadingPoint(refPoint, beam.ray, owner.level - 1, owner.k * beam.kx);
+				beam.hits[beamIndexes.get(q)] = hit;
+				next.add(hit);
+			}
+		}
+		return next;
+	}
+
+	/**
+	 * Queue the rays of a reflected or refracted beam of a point
+	 * 
+	 * @param sp          - the point
+	 * @param ray         - the main ray of the beam
+	 * @param n           - normal to the point on geometry
+	 * @param kx          - the reflection or transparency factor
+	 * @param r           - radius of the beam
+	 * @param beams       - the queue of the beams of the rays
+	 * @param beamIndexes - the queue of the indexes of the rays in their beams
+	 * @param beamRays    - the queue of the rays
+	 * @param beamOwners  - the queue of the points of the rays
+	 * @param keys        - the sort keys of the queue
+	 * @return the beam
+	 */
+	private Beam queueBeam(ShadingPoint sp, Ray ray, Vector n, double kx, double r, List<Beam> beams,
+			List<Integer> beamIndexes, List<Ray> beamRays, List<ShadingPoint> beamOwners, List<Long> keys) {
+		List<Ray> rays = ray.createBeam(n, numOfRays, r);
+		Beam beam = new Beam(ray, kx, rays.size());
+		double nv = Util.alignZero(n.dotProduct(ray.getDir()));
+		int index = 0;
+		for (Ray item : rays) {
+			double nl = Util.alignZero(n.dotProduct(item.getDir()));
+			if (nv * nl > 0) {
+				keys.add(sortKey(item.getP0(), item.getDir(), keys.size()));
+				beams.add(beam);
+				beamIndexes.add(index);
+				beamRays.add(item);
+				beamOwners.add(sp);
+			}
+			++index;
+		}
+		return beam;
+	}
+
+	/**
+	 * The sort key of a queued ray - the cell of its head in the sorting grid and
+	 * the octant of its direction, with its place in the queue in the low bits
+	 * 
+	 * @param p0    - the head of the ray
+	 * @param dir   - the direction of the ray
+	 * @param index - the place of the ray in the queue
+	 * @return the sort key
+	 */
+	private long sortKey(Point3D p0, Vector dir, int index) {
+		double[] p = { p0.getX(), p0.getY(), p0.getZ() };
+		long cell = 0;
+		for (int axis = 2; axis >= 0; --axis) {
+			int c = (int) ((p[axis] - sortGrid[axis]) * sortGrid[axis + 3]);
+			cell = cell * SORT_CELLS + (c < 0 ? 0 : c >= SORT_CELLS ? SORT_CELLS - 1 : c);
+		}
+		int octant = (dir.getX() < 0 ? 1 : 0) | (dir.getY() < 0 ? 2 : 0) | (dir.getZ() < 0 ? 4 : 0);
+		return (cell << 3 | octant) << 32 | index;
+	}
+
+	/**
+	 * The order of a queue by the sort keys
+	 * 
+	 * @param keys - the sort keys of the queue
+	 * @return the indexes of the queue sorted by the keys
+	 */
+	private static int[] sortedOrder(List<Long> keys) {
+		long[] sorted = new long[keys.size()];
+		for (int i = 0; i < sorted.length; ++i)
+			sorted[i] = keys.get(i);
+		Arrays.sort(sorted);
+		int[] order = new int[sorted.length];
+		for (int i = 0; i < sorted.length; ++i)
+			order[i] = (int) sorted[i];
+		return order;
+	}
+
+	/**
+	 * Calculates the color of a point of the batched mode after all its secondary
+	 * rays were traced - the same sums as
+	 * {@link #calcColor(GeoPoint, Ray, int, double)}
+	 * 
+	 * @param sp - the point
+	 * @return the color in this point
+	 */
+	private Color calcColor(ShadingPoint sp) {
+		Color color = sp.point.getEmission();
+		color = color.add(calcLocalEffects(sp.point, sp.ray, sp.k, sp.ktr));
+		if (1 == sp.level)
+			return color;
+		Color global = Color.BLACK;
+		if (sp.reflected != null)
+			global = calcBeamColor(global, sp.reflected);
+		if (sp.refracted != null)
+			global = global.add(calcBeamColor(global, sp.refracted));
+		return color.add(global);
+	}
+
+	/**
+	 * Calculates the color of a reflected or refracted beam of the batched mode -
+	 * the same sums as {@link #calcGlobalEffect}
+	 * 
+	 * @param color - the color of the intersection point
+	 * @param beam  - the beam
+	 * @return the color of reflected or refracted point
+	 */
+	private Color calcBeamColor(Color color, Beam beam) {
+		Color addColor = Color.BLACK;
+		for (ShadingPoint hit : beam.hits)
+			if (hit != null)
+				addColor = addColor.add(calcColor(hit).scale(beam.kx));
+		int size = beam.hits.length;
+		return color.add(size > 1 ? addColor.reduce(size) : addColor);
+	}
+
+	/**
+	 * Return the closest intersection points with a packet of rays
+	 * 
+	 * @param rays the rays of the packet
+	 * @return the closest point of each ray (null where there is no intersection)
+	 */
+	protected GeoPoint[] findClosestIntersections(Ray[] rays) {
+		GeoPoint[] closestPoints = new GeoPoint[rays.length];
+		for (int i = 0; i < rays.length; ++i)
+			closestPoints[i] = findClosestIntersection(rays[i]);
+		return closestPoints;
 	}
 
 	/**
@@ -96,8 +417,8 @@ public class RayTracerBasic extends RayTracerBase {
 	 * @return the color in this point
 	 */
 	private Color calcColor(GeoPoint intersection, Ray ray, int level, double k) {
-		Color color = intersection.geometry.getEmission();
-		color = color.add((calcLocalEffects(intersection, ray, k)));
+		Color color = intersection.getEmission();
+		color = color.add((calcLocalEffects(intersection, ray, k, null)));
 		// if is less then 1 we stop the recursion because not effected too much
 		return 1 == level ? color : color.add(calcGlobalEffects(intersection, ray, level, k));
 	}
@@ -109,33 +430,68 @@ public class RayTracerBasic extends RayTracerBase {
 	 * @param intersection - point on geometry body
 	 * @param ray          - ray from the camera
 	 * @param k            - the current attenuation level
+	 * @param ktr          - the transparency toward each light when the shadow
+	 *                     rays were already traced, null for tracing them now
 	 * @return calculated light contribution from all light sources
 	 */
-	private Color calcLocalEffects(GeoPoint intersection, Ray ray, double k) {
+	private Color calcLocalEffects(GeoPoint intersection, Ray ray, double k, double[] ktr) {
 		Vector v = ray.getDir();
-		Vector n = intersection.geometry.getNormal(intersection.point);
+		Vector n = intersection.getNormal();
 		double nv = alignZero(n.dotProduct(v));
 		if (nv == 0)
 			return Color.BLACK;
-		var material = intersection.geometry.getMaterial();
-		int nShininess = material.nShininess;
-		double kd = material.kD, ks = material.kS;
 		Color color = Color.BLACK;
+		int i = 0;
 		for (LightSource lightSource : scene.lights) {
 			Vector l = lightSource.getL(intersection.point);
 			double nl = alignZero(n.dotProduct(l));
-			if (nl * nv > 0) { // sign(nl) == sign(nv)
-				double ktr = transparency(lightSource, l, n, intersection);
-				if (ktr * k > MIN_CALC_COLOR_K) {
-					Color lightIntensity = lightSource.getIntensity(intersection.point).scale(ktr);
-					color = color.add(calcDiffusive(kd, nl, lightIntensity),
-							calcSpecular(ks, n, l, nl, v, nShininess, lightIntensity));
-				}
+			if (isLit(nl, nv)) {
+				double kt = ktr == null ? transparency(lightSource, l, n, intersection) : ktr[i];
+				color = addLight(color, lightSource, intersection, n, l, nl, v, kt, k);
 			}
+			++i;
 		}
 		return color;
 	}
 
+	/**
+	 * check if a light source lights the side of the surface that is seen - the
+	 * light and the view are on the same side of the surface
+	 * 
+	 * @param nl - is equal to n.dotProduct(l)
+	 * @param nv - is equal to n.dotProduct(v)
+	 * @return true if sign(nl) == sign(nv)
+	 */
+	protected static boolean isLit(double nl, double nv) {
+		return nl * nv > 0;
+	}
+
+	/**
+	 * add the diffusive and the specular light of a light source in a point to a
+	 * color
+	 * 
+	 * @param color - the color to add to
+	 * @param light - light source
+	 * @param gp    - point in geometry body
+	 * @param n     - normal of body
+	 * @param l     - vector from light
+	 * @param nl    - is equal to n.dotProduct(l)
+	 * @param v     - camera vector
+	 * @param kt    - the transparency toward the light
+	 * @param k     - the current attenuation level
+	 * @return the color with the light, or the color itself when the light is
+	 *         attenuated below the minimum
+	 */
+	protected Color addLight(Color color, LightSource light, GeoPoint gp, Vector n, Vector l, double nl, Vector v,
+			double kt, double k) {
+		if (kt * k <= MIN_CALC_COLOR_K)
+			return color;
+		Material material = gp.getMaterial();
+		Color lightIntensity = light.getIntensity(gp.point).scale(kt);
+		return color.add(calcDiffusive(material.kD, nl, lightIntensity),
+				calcSpecular(material.kS, n, l, nl, v, material.nShininess, lightIntensity));
+	}
+
 	/**
 	 * calculate the diffusive light according to Phong's model
 	 * 
@@ -144,7 +500,7 @@ public class RayTracerBasic extends RayTracerBase {
 	 * @param lightIntensity - Light intensity
 	 * @return the diffusive light
 	 */
-	private Color calcDiffusive(double kd, double nl, Color lightIntensity) {
+	protected Color calcDiffusive(double kd, double nl, Color lightIntensity) {
 		return lightIntensity.scale((nl >= 0 ? nl : -nl) * (kd));
 	}
 
@@ -160,10 +516,14 @@ public class RayTracerBasic extends RayTracerBase {
 	 * @param lightIntensity - Light intensity
 	 * @return the specular light
 	 */
-	private Color calcSpecular(double ks, Vector n, Vector l, double nl, Vector v, int nShininess,
+	protected Color calcSpecular(double ks, Vector n, Vector l, double nl, Vector v, int nShininess,
 			Color lightIntensity) {
-		Vector r = l.add(n.scale(-2 * nl));
-		double vr = alignZero(v.dotProduct(r));
+		// the reflected light direction r = l - 2nl*n in scalars
+		double scale = -2 * nl;
+		double rx = MutableVec3.mulAdd(n.getX(), scale, l.getX());
+		double ry = MutableVec3.mulAdd(n.getY(), scale, l.getY());
+		double rz = MutableVec3.mulAdd(n.getZ(), scale, l.getZ());
+		double vr = alignZero(MutableVec3.dot(rx, ry, rz, v.getX(), v.getY(), v.getZ()));
 		if (vr >= 0)
 			return Color.BLACK;
 		return lightIntensity.scale(ks * Math.pow(-vr, nShininess));
@@ -181,8 +541,8 @@ public class RayTracerBasic extends RayTracerBase {
 	 */
 	private Color calcGlobalEffects(GeoPoint geopoint, Ray ray, int level, double k) {
 		Color color = Color.BLACK;
-		Material material = geopoint.geometry.getMaterial();
-		Vector n = geopoint.geometry.getNormal(geopoint.point);
+		Material material = geopoint.getMaterial();
+		Vector n = geopoint.getNormal();
 		double kr = material.kR, kkr = k * kr, kgs = material.kGS;
 		var v = ray.getDir();
 		// if is too small stop the recursive
@@ -240,9 +600,14 @@ public class RayTracerBasic extends RayTracerBase {
 	 * @param nv - equal to n.dotProduct(v)
 	 * @return reflected ray
 	 */
-	private Ray calcRayReflection(Vector n, Vector v, Point3D p, double nv) {
-		Vector r = v.add(n.scale(-2 * nv)).normalized();
-		return new Ray(p, r, n);
+	protected Ray calcRayReflection(Vector n, Vector v, Point3D p, double nv) {
+		// r = v - 2nv*n in scalars, normalized
+		double scale = -2 * nv;
+		double rx = MutableVec3.mulAdd(n.getX(), scale, v.getX());
+		double ry = MutableVec3.mulAdd(n.getY(), scale, v.getY());
+		double rz = MutableVec3.mulAdd(n.getZ(), scale, v.getZ());
+		double length = Math.sqrt(MutableVec3.dot(rx, ry, rz, rx, ry, rz));
+		return new Ray(p, new Vector(rx / length, ry / length, rz / length), n);
 	}
 
 	/**
@@ -253,7 +618,7 @@ public class RayTracerBasic extends RayTracerBase {
 	 * @param p - point on geometry body
 	 * @return refracted ray
 	 */
-	private Ray clacRayRefraction(Vector n, Vector v, Point3D p) {
+	protected Ray clacRayRefraction(Vector n, Vector v, Point3D p) {
 		return new Ray(p, v, n);
 	}
 
@@ -268,19 +633,20 @@ public class RayTracerBasic extends RayTracerBase {
 	 * @return amount of shadow
 	 */
 	protected double transparency(LightSource light, Vector l, Vector n, GeoPoint gp) {
-		Vector lightDirection = l.scale(-1); // from point to light source
-		Ray lightRay = new Ray(gp.point, lightDirection, n);
-		double lightDistance = light.getDistance(gp.point);
-		var intersections = scene.geometries.findGeoIntersections(lightRay, lightDistance);
-		if (intersections == null)
-			return 1.0;
-		double ktr = 1.0;
-		for (GeoPoint geopoint : intersections) {
-			ktr *= geopoint.geometry.getMaterial().kT;
-			if (ktr < MIN_CALC_COLOR_K)
-				return 0.0;
-		}
-		return ktr;
+		return accelerator.occlusion(calcLightRay(l, n, gp), light.getDistance(gp.point), MIN_CALC_COLOR_K);
+	}
+
+	/**
+	 * calculates the shadow ray from a point toward a light source, moved off the
+	 * surface by the normal
+	 * 
+	 * @param l  - vector from light
+	 * @param n  - normal of body
+	 * @param gp - point in geometry body
+	 * @return the ray from the point to the light source
+	 */
+	protected Ray calcLightRay(Vector l, Vector n, GeoPoint gp) {
+		return new Ray(gp.point, l.scale(-1), n);
 	}
 
 	/**
@@ -295,9 +661,7 @@ public class RayTracerBasic extends RayTracerBase {
 	 *         <li>false - if shaded
 	 */
 	private boolean unshaded(LightSource light, Vector l, Vector n, GeoPoint gp) {
-		Vector lightDirection = l.scale(-1); // from point to light source
-		Ray lightRay = new Ray(gp.point, lightDirection, n);
-		var intersections = scene.geometries.findGeoIntersections(lightRay, light.getDistance(gp.point));
+		var intersections = scene.geometries.findGeoIntersections(calcLightRay(l, n, gp), light.getDistance(gp.point));
 		return intersections == null;
 	}
 }
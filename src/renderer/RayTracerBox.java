@@ -3,12 +3,7 @@
  */
 package renderer;
 
-import java.util.List;
-
-import elements.LightSource;
-import geometries.Intersectable.GeoPoint;
-import primitives.Ray;
-import primitives.Vector;
+import elements.Camera;
 import scene.Box;
 import scene.Scene;
 
@@ -23,6 +18,13 @@ import scene.Scene;
 public class RayTracerBox extends RayTracerBasic {
 
 	private Box box;
+	private int boxDensity;
+	private int buildThreads = 1;
+	private double pilotCost = 0;
+	/**
+	 * Number of pixels on each axis of the pilot image for choosing the density
+	 */
+	private static final int PILOT_SIZE = 24;
 
 	/**
 	 * Ctor - get scene and set it
@@ -43,30 +45,163 @@ public class RayTracerBox extends RayTracerBasic {
 	public RayTracerBox setBox(int k) {
 		if (k < 0)
 			throw new IllegalArgumentException("Box Density can't be a nagitve number\n");
-		box = new Box(k, scene.geometries);
+		useBox(build(k));
+		boxDensity = k;
+		pilotCost = 0;
 		return this;
 	}
 
-	@Override
-	protected GeoPoint findClosestIntersection(Ray ray) {
-		List<GeoPoint> closestPoints = box.findIntersectionsInTheBox(ray, false, Double.POSITIVE_INFINITY);
-		return ray.findClosestGeoPoint(closestPoints);
+	/**
+	 * set the box for ray trace and build it with several threads (see
+	 * {@link #setBuildThreads(int)})
+	 * 
+	 * @param k       - Value for set optimize density of the box
+	 * @param threads - number of threads for building the box
+	 * @return this
+	 */
+	public RayTracerBox setBox(int k, int threads) {
+		return setBuildThreads(threads).setBox(k);
 	}
 
-	@Override
-	protected double transparency(LightSource light, Vector l, Vector n, GeoPoint gp) {
-		Vector lightDirection = l.scale(-1); // from point to light source
-		Ray lightRay = new Ray(gp.point, lightDirection, n);
-		double lightDistance = light.getDistance(gp.point);
-		List<GeoPoint> intersections = box.findIntersectionsInTheBox(lightRay, true, lightDistance);
-		if (intersections == null)
-			return 1.0;
-		double ktr = 1.0;
-		for (GeoPoint geopoint : intersections) {
-			ktr *= geopoint.geometry.getMaterial().kT;
-			if (ktr < MIN_CALC_COLOR_K)
-				return 0.0;
+	/**
+	 * set the number of threads for building the boxes - the box of
+	 * {@link #setBox(int)} and the pilot boxes of
+	 * {@link #setAutoBox(Camera, int, int)} <br>
+	 * - if the number of threads is 0 - number of cores less 2 is taken (like
+	 * {@link Render#setMultithreading(int)})
+	 * 
+	 * @param threads - number of threads for building the boxes
+	 * @return this
+	 */
+	public RayTracerBox setBuildThreads(int threads) {
+		if (threads < 0)
+			throw new IllegalArgumentException("Multithreading parameter must be 0 or higher");
+		if (threads == 0) {
+			int cores = Runtime.getRuntime().availableProcessors() - 2;
+			threads = cores <= 2 ? 1 : cores;
 		}
-		return ktr;
+		buildThreads = threads;
+		return this;
+	}
+
+	/**
+	 * build a box of the scene with the threads for building the boxes
+	 * 
+	 * @param k - Value for set optimize density of the box
+	 * @return the box
+	 */
+	private Box build(int k) {
+		return new Box(k, scene.geometries, Box.DEFAULT_MEMORY_BUDGET, buildThreads);
+	}
+
+	/**
+	 * trace the rays against the given box
+	 * 
+	 * @param box - the box of the scene
+	 */
+	private void useBox(Box box) {
+		this.box = box;
+		accelerator = box;
+	}
+
+	/**
+	 * set the box for ray trace with a density chosen by the statistics of the
+	 * scene (see {@link Box#suggestDensity(geometries.Geometries)})
+	 * 
+	 * @return this
+	 */
+	public RayTracerBox setAutoBox() {
+		return setBox(Box.suggestDensity(scene.geometries));
+	}
+
+	/**
+	 * set the box for ray trace with the fastest density for the view of the
+	 * camera. Densities around the one suggested by the statistics of the scene
+	 * are tried on a small pilot image of sparse pixels across the view, and the
+	 * density with the least estimated time of building the box and rendering the
+	 * whole image is kept. The pilot boxes are built with the threads for building
+	 * the boxes (see {@link #setBuildThreads(int)}), each density once, and the box
+	 * of the chosen density is the box of its pilot.
+	 * 
+	 * @param camera - the camera of the render
+	 * @param nX     - number of pixels on the width of the image
+	 * @param nY     - number of pixels on the height of the image
+	 * @return this
+	 */
+	public RayTracerBox setAutoBox(Camera camera, int nX, int nY) {
+		int suggested = Box.suggestDensity(scene.geometries);
+		Box suggestedBox = build(suggested);
+		useBox(suggestedBox);
+		pilot(camera, nX, nY); // warm up the tracer before the measures
+		Box bestBox = box;
+		int bestDensity = suggested;
+		double bestCost = Double.POSITIVE_INFINITY, bestPilot = 0;
+		double pixelsPerPilot = (double) nX * nY / (PILOT_SIZE * PILOT_SIZE);
+		int last = 0;
+		for (int k : new int[] { suggested / 4, suggested / 2, suggested, suggested * 2, suggested * 4 }) {
+			k = Math.min(k, Box.MAX_SUGGESTED_DENSITY);
+			if (k < 1 || k == last)
+				continue;
+			last = k;
+			// the box of the suggested density is already built for the warm up
+			useBox(k == suggested ? suggestedBox : build(k));
+			double pilot = pilot(camera, nX, nY);
+			double cost = box.getBuildTime() + pilot * pixelsPerPilot;
+			if (cost < bestCost) {
+				bestCost = cost;
+				bestBox = box;
+				bestDensity = k;
+				bestPilot = pilot;
+			}
+		}
+		useBox(bestBox);
+		boxDensity = bestDensity;
+		pilotCost = bestPilot;
+		return this;
+	}
+
+	/**
+	 * trace the pilot image - sparse pixels spread evenly across the view
+	 * 
+	 * @param camera - the camera of the render
+	 * @param nX     - number of pixels on the width of the image
+	 * @param nY     - number of pixels on the height of the image
+	 * @return the time of tracing the pilot in milliseconds
+	 */
+	private double pilot(Camera camera, int nX, int nY) {
+		long start = System.nanoTime();
+		for (int i = 0; i < PILOT_SIZE; ++i)
+			for (int j = 0; j < PILOT_SIZE; ++j)
+				traceRay(camera.constructRayThroughPixel(nX, nY, (int) ((j + 0.5) * nX / PILOT_SIZE),
+						(int) ((i + 0.5) * nY / PILOT_SIZE)));
+		return (System.nanoTime() - start) / 1e6;
+	}
+
+	/**
+	 * Getter
+	 * 
+	 * @return the density factor of the box (given or chosen automatically)
+	 */
+	public int getBoxDensity() {
+		return boxDensity;
+	}
+
+	/**
+	 * Getter
+	 * 
+	 * @return the time in milliseconds of tracing the pilot image with the chosen
+	 *         density, 0 when the density wasn't chosen by a pilot
+	 */
+	public double getPilotCost() {
+		return pilotCost;
+	}
+
+	/**
+	 * Getter
+	 * 
+	 * @return the time of building the box in milliseconds
+	 */
+	public double getBoxBuildTime() {
+		return box.getBuildTime();
 	}
 }
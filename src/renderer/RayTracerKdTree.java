@@ -0,0 +1,37 @@
+/**
+ *
+ */
+package renderer;
+
+import geometries.KdTree;
+import scene.Scene;
+
+/**
+ * Ray tracer with kd-tree implementation. The class is to calculate the closest
+ * point to the ray from all the intersections and calculate the color in this
+ * point
+ *
+ * @author David and Matan
+ */
+public class RayTracerKdTree extends RayTracerBasic {
+
+	/**
+	 * Ctor - get scene and set it
+	 *
+	 * @param scene - body that build from geometries bodies and color and
+	 *              ambientLight(strong of the color)
+	 */
+	public RayTracerKdTree(Scene scene) {
+		super(scene);
+	}
+
+	/**
+	 * build the kd-tree for ray trace over the geometries of the scene
+	 *
+	 * @return this
+	 */
+	public RayTracerKdTree setKdTree() {
+		accelerator = new KdTree(scene.geometries);
+		return this;
+	}
+}
@@ -0,0 +1,38 @@
+/**
+ *
+ */
+package renderer;
+
+import geometries.Octree;
+import scene.Scene;
+
+/**
+ * Ray tracer with octree implementation. The class is to calculate the closest
+ * point to the ray from all the intersections and calculate the color in this
+ * point
+ *
+ * @author David and Matan
+ */
+public class RayTracerOctree extends RayTracerBasic {
+
+	/**
+	 * Ctor - get scene and set it
+	 *
+	 * @param scene - body that build from geometries bodies and color and
+	 *              ambientLight(strong of the color)
+	 */
+	public RayTracerOctree(Scene scene) {
+		super(scene);
+	}
+
+	/**
+	 * build the octree for ray trace over the geometries of the scene
+	 *
+	 * @param threshold - a node with more bodies than this is divided
+	 * @return this
+	 */
+	public RayTracerOctree setOctree(int threshold) {
+		accelerator = new Octree(scene.geometries, threshold);
+		return this;
+	}
+}
@@ -0,0 +1,498 @@
+package renderer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+import elements.LightSource;
+import geometries.Intersectable;
+import geometries.Intersectable.GeoPoint;
+import primitives.*;
+import static primitives.Util.*;
+import scene.Scene;
+
+/**
+ * Wavefront ray tracer. The rays of a packet (see
+ * {@link Render#setPacketSize(int)}) are traced stage by stage instead of ray
+ * by ray: the camera rays are loaded into a queue, the closest hits of the
+ * whole queue are found, the hits are shaded and emit their shadow rays, the
+ * shadow rays are resolved, and the continuation (reflected and refracted)
+ * rays are emitted into the queue of the next bounce. The queues keep the rays
+ * in arrays by their fields, and each stage (beside loading the camera rays) is
+ * a kernel over the indexes of its queue that writes only to the slots of its
+ * rays - so a kernel may run on the threads of a pool shared by all the
+ * kernels, and the time of each stage is measured. The colors of the slots are
+ * added to the pixels after the kernel in the order of the rays, so the image
+ * doesn't depend on the number of threads. The stages fill up with the rays of
+ * several packets together when the render traces them in batches (see
+ * {@link Render#setPacketBatch(int)}).
+ * <p>
+ * The shading model is the one of {@link RayTracerBasic}: the color of each hit
+ * is added to its pixel scaled by the factors of the path that reached it,
+ * instead of being summed up the recursion.
+ *
+ * @author David and Matan
+ */
+public class RayTracerWavefront extends RayTracerBasic {
+
+	/**
+	 * The stages of the pipeline
+	 */
+	public enum Stage {
+		/**
+		 * load the camera rays into the queue
+		 */
+		GENERATE,
+		/**
+		 * find the closest hit of each ray
+		 */
+		EXTEND,
+		/**
+		 * add the emission of the hits and emit their shadow rays
+		 */
+		SHADE,
+		/**
+		 * find the transparency along each shadow ray
+		 */
+		SHADOW,
+		/**
+		 * add the light of the hits and emit the reflected and refracted rays
+		 */
+		CONTINUE
+	}
+
+	/**
+	 * Kernels over less rays than this run in the calling thread
+	 */
+	private static final int PARALLEL_CHUNK = 32;
+
+	private int kernelThreads = 1;
+	/**
+	 * the pool of the kernels of all the packets and the bounces - null when the
+	 * kernels run in the calling thread
+	 */
+	private ForkJoinPool kernelPool = null;
+	private final LongAdder[] stageTimes = new LongAdder[Stage.values().length];
+
+	/**
+	 * Queue of rays of a bounce - the fields of each ray by its index
+	 */
+	private static class RayQueue {
+		private int size = 0;
+		/**
+		 * the rays as they were emitted - the kernels pass them to the accelerator as
+		 * they are
+		 */
+		private Ray[] rays;
+		/**
+		 * the direction of the main ray of the beam of each ray - the view direction
+		 * of the shading
+		 */
+		private double[] vx, vy, vz;
+		/**
+		 * the factor of the color of the hit in its pixel
+		 */
+		private double[] weight;
+		/**
+		 * the attenuation level
+		 */
+		private double[] k;
+		private int[] pixel;
+		private int[] level;
+		private GeoPoint[] hits;
+
+		/**
+		 * Ctor
+		 *
+		 * @param capacity - initial capacity of the queue
+		 */
+		private RayQueue(int capacity) {
+			capacity = Math.max(capacity, 1);
+			rays = new Ray[capacity];
+			vx = new double[capacity];
+			vy = new double[capacity];
+			vz = new double[capacity];
+			weight = new double[capacity];
+			k = new double[capacity];
+			pixel = new int[capacity];
+			level = new int[capacity];
+		}
+
+		/**
+		 * Add a ray to the queue
+		 *
+		 * @param ray    - the ray
+		 * @param v      - the direction of the main ray of its beam
+		 * @param weight - the factor of the color of its hit in the pixel
+		 * @param k      - the attenuation level
+		 * @param pixel  - the index of the pixel of the ray in the packet
+		 * @param level  - level of Recursion
+		 */
+		private void add(Ray ray, Vector v, double weight, double k, int pixel, int level) {
+			if (size == rays.length) {
+				int capacity = 2 * size;
+				rays = Arrays.copyOf(rays, capacity);
+				vx = Arrays.copyOf(vx, capacity);
+				vy = Arrays.copyOf(vy, capacity);
+				vz = Arrays.copyOf(vz, capacity);
+				this.weight = Arrays.copyOf(this.weight, capacity);
+				this.k = Arrays.copyOf(this.k, capacity);
+				this.pixel = Arrays.copyOf(this.pixel, capacity);
+				this.level = Arrays.copyOf(this.level, capacity);
+			}
+			rays[size] = ray;
+			vx[size] = v.getX();
+			vy[size] = v.getY();
+			vz[size] = v.getZ();
+			this.weight[size] = weight;
+			this.k[size] = k;
+			this.pixel[size] = pixel;
+			this.level[size++] = level;
+		}
+	}
+
+	/**
+	 * Queue of shadow rays - a slot for each ray of the bounce and each light, so
+	 * the kernels of the shading write their rays without locks
+	 */
+	private static class ShadowQueue {
+		private final int size;
+		/**
+		 * the rays toward the lights (null - the light doesn't light the hit)
+		 */
+		private final Ray[] rays;
+		/**
+		 * the distance to the light
+		 */
+		private final double[] distance;
+		/**
+		 * the transparency along the ray (the result of the shadow stage)
+		 */
+		private final double[] ktr;
+
+		/**
+		 * Ctor
+		 *
+		 * @param size - number of the slots
+		 */
+		private ShadowQueue(int size) {
+			this.size = size;
+			rays = new Ray[size];
+			distance = new double[size];
+			ktr = new double[size];
+		}
+	}
+
+	/**
+	 * Ctor - get scene and set it, the rays are traced against the geometries of
+	 * the scene
+	 *
+	 * @param scene - body that build from geometries bodies and color and
+	 *              ambientLight(strong of the color)
+	 */
+	public RayTracerWavefront(Scene scene) {
+		super(scene);
+		for (int i = 0; i < stageTimes.length; ++i)
+			stageTimes[i] = new LongAdder();
+	}
+
+	/**
+	 * setter the acceleration structure over the geometries of the scene (like
+	 * {@link geometries.BVH})
+	 *
+	 * @param accelerator - the structure for finding the hits of the rays
+	 * @return this
+	 */
+	public RayTracerWavefront setAccelerator(Intersectable accelerator) {
+		this.accelerator = accelerator;
+		return this;
+	}
+
+	/**
+	 * setter number of threads of the kernels of the stages (1 - the kernels run
+	 * in the calling thread). The kernels of all the packets
+	 * and the bounces (and of all the rendering threads) share one pool of the
+	 * threads, and the calling thread works on its kernel too.
+	 *
+	 * @param threads - number of threads
+	 * @return this
+	 */
+	public RayTracerWavefront setKernelThreads(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("Number of threads must be positive");
+		if (kernelPool != null)
+			kernelPool.shutdown();
+		kernelThreads = threads;
+		kernelPool = threads == 1 ? null : new ForkJoinPool(threads - 1);
+		return this;
+	}
+
+	/**
+	 * Getter
+	 *
+	 * @param stage - the stage
+	 * @return the time of the stage in milliseconds summed over all the packets
+	 *         (and the threads) so far
+	 */
+	public double getStageTime(Stage stage) {
+		return stageTimes[stage.ordinal()].sum() / 1e6;
+	}
+
+	@Override
+	public Color traceRay(Ray ray) {
+		return traceRays(new Ray[] { ray })[0];
+	}
+
+	@Override
+	public Color[] traceRays(Ray[] rays) {
+		int count = rays.length;
+		Color[] radiance = new Color[count];
+		boolean[] hit = new boolean[count];
+		long start = System.nanoTime();
+		RayQueue queue = new RayQueue(count);
+		for (int i = 0; i < count; ++i)
+			queue.add(rays[i], rays[i].getDir(), 1, INITIAL_K, i, MAX_CALC_COLOR_LEVEL);
+		Arrays.fill(radiance, Color.BLACK);
+		start = stage(Stage.GENERATE, start);
+
+		LightSource[] lights = scene.lights.toArray(new LightSource[0]);
+		while (queue.size > 0) {
+			// extend - the closest hit of each ray
+			RayQueue bounce = queue;
+			bounce.hits = new GeoPoint[bounce.size];
+			runParallel(bounce.size, i -> bounce.hits[i] = accelerator.findClosestIntersection(bounce.rays[i]));
+			start = stage(Stage.EXTEND, start);
+
+			// shade - the emission of the hits and their shadow rays by the same
+			// conditions as of calcLocalEffects, in the slots of the rays
+			Color[] emission = new Color[bounce.size];
+			ShadowQueue shadows = new ShadowQueue(bounce.size * lights.length);
+			runParallel(bounce.size, i -> {
+				GeoPoint gp = bounce.hits[i];
+				if (gp == null)
+					return;
+				emission[i] = gp.getEmission().scale(bounce.weight[i]);
+				Vector n = gp.getNormal();
+				double nv = alignZero(
+						MutableVec3.dot(n.getX(), n.getY(), n.getZ(), bounce.vx[i], bounce.vy[i], bounce.vz[i]));
+				if (nv == 0)
+					return;
+				for (int j = 0; j < lights.length; ++j) {
+					Vector l = lights[j].getL(gp.point);
+					if (isLit(alignZero(n.dotProduct(l)), nv)) {
+						int s = i * lights.length + j;
+						shadows.rays[s] = calcLightRay(l, n, gp);
+						shadows.distance[s] = lights[j].getDistance(gp.point);
+					}
+				}
+			});
+			for (int i = 0; i < bounce.size; ++i)
+				if (emission[i] != null) {
+					int p = bounce.pixel[i];
+					if (bounce.level[i] == MAX_CALC_COLOR_LEVEL)
+						hit[p] = true;
+					radiance[p] = radiance[p].add(emission[i]);
+				}
+			start = stage(Stage.SHADE, start);
+
+			// shadow - the transparency along each shadow ray
+			runParallel(shadows.size, s -> {
+				if (shadows.rays[s] != null)
+					shadows.ktr[s] = accelerator.occlusion(shadows.rays[s], shadows.distance[s], MIN_CALC_COLOR_K);
+			});
+			start = stage(Stage.SHADOW, start);
+
+			// continue - the light of the hits and the beams of their reflected and
+			// refracted rays in the slots of the rays, then the rays of the next bounce
+			// in the order of the hits
+			Color[] light = new Color[bounce.size];
+			List<List<Ray>> beams = new ArrayList<List<Ray>>(Collections.nCopies(2 * bounce.size, null));
+			runParallel(bounce.size, i -> {
+				GeoPoint gp = bounce.hits[i];
+				if (gp == null)
+					return;
+				Vector v = new Vector(bounce.vx[i], bounce.vy[i], bounce.vz[i]);
+				light[i] = calcLocalEffects(gp, v, bounce.k[i], lights, i, shadows).scale(bounce.weight[i]);
+				if (bounce.level[i] > 1)
+					createBeams(bounce, i, v, beams);
+			});
+			RayQueue next = new RayQueue(bounce.size);
+			for (int i = 0; i < bounce.size; ++i)
+				if (light[i] != null) {
+					int p = bounce.pixel[i];
+					radiance[p] = radiance[p].add(light[i]);
+					if (bounce.level[i] > 1)
+						emitBeams(bounce, i, beams, next);
+				}
+			queue = next;
+			start = stage(Stage.CONTINUE, start);
+		}
+
+		Color[] colors = new Color[count];
+		for (int i = 0; i < count; ++i)
+			colors[i] = hit[i] ? radiance[i].add(scene.ambientLight.getIntensity()) : scene.background;
+		return colors;
+	}
+
+	/**
+	 * The light contribution from all the light sources in a hit by the resolved
+	 * shadow rays - the same sums as of the local effects of
+	 * {@link RayTracerBasic}
+	 *
+	 * @param gp      - the hit
+	 * @param v       - the view direction
+	 * @param k       - the current attenuation level
+	 * @param lights  - the light sources
+	 * @param i       - the index of the ray of the hit
+	 * @param shadows - the resolved shadow rays of the bounce
+	 * @return calculated light contribution from all light sources
+	 */
+	private Color calcLocalEffects(GeoPoint gp, Vector v, double k, LightSource[] lights, int i,
+			ShadowQueue shadows) {
+		Vector n = gp.getNormal();
+		Color color = Color.BLACK;
+		for (int j = 0; j < lights.length; ++j) {
+			int s = i * lights.length + j;
+			if (shadows.rays[s] == null)
+				continue;
+			Vector l = lights[j].getL(gp.point);
+			color = addLight(color, lights[j], gp, n, l, alignZero(n.dotProduct(l)), v, shadows.ktr[s], k);
+		}
+		return color;
+	}
+
+	/**
+	 * Create the beams of the reflected and refracted rays of a hit in its slots
+	 * (2i - the reflected beam, 2i+1 - the refracted beam), by the same
+	 * conditions as of the global effects of {@link RayTracerBasic}
+	 *
+	 * @param queue - the queue of the hit
+	 * @param i     - the index of the ray of the hit
+	 * @param v     - the view direction
+	 * @param beams - the beams of the hits of the bounce
+	 */
+	private void createBeams(RayQueue queue, int i, Vector v, List<List<Ray>> beams) {
+		GeoPoint gp = queue.hits[i];
+		Material material = gp.getMaterial();
+		Vector n = gp.getNormal();
+		double k = queue.k[i];
+		if (k * material.kR > MIN_CALC_COLOR_K) {
+			double nv = alignZero(n.dotProduct(v));
+			beams.set(2 * i, calcRayReflection(n, v, gp.point, nv).createBeam(n, numOfRays, material.kGS));
+		}
+		if (k * material.kT > MIN_CALC_COLOR_K)
+			beams.set(2 * i + 1, clacRayRefraction(n, v, gp.point).createBeam(n, numOfRays, material.kDG));
+	}
+
+	/**
+	 * Emit the reflected and refracted rays of a hit into the queue of the next
+	 * bounce, by the same factors as of the global effects of
+	 * {@link RayTracerBasic} (where the reflection is added again when a refracted
+	 * ray is traced)
+	 *
+	 * @param queue - the queue of the hit
+	 * @param i     - the index of the ray of the hit
+	 * @param beams - the beams of the hits of the bounce
+	 * @param next  - the queue of the next bounce
+	 */
+	private void emitBeams(RayQueue queue, int i, List<List<Ray>> beams, RayQueue next) {
+		GeoPoint gp = queue.hits[i];
+		Material material = gp.getMaterial();
+		Vector n = gp.getNormal();
+		List<Ray> reflected = beams.get(2 * i), refracted = beams.get(2 * i + 1);
+		double weight = queue.weight[i];
+		if (reflected != null)
+			emitBeam(reflected, n, material.kR, refracted != null ? 2 * weight : weight, queue.k[i], queue.pixel[i],
+					queue.level[i], next);
+		if (refracted != null)
+			emitBeam(refracted, n, material.kT, weight, queue.k[i], queue.pixel[i], queue.level[i], next);
+	}
+
+	/**
+	 * Emit the rays of a reflected or refracted beam into the queue of the next
+	 * bounce
+	 *
+	 * @param beam   - the rays of the beam, the main ray first
+	 * @param n      - normal to the point on geometry
+	 * @param kx     - the reflection or transparency factor
+	 * @param weight - the factor of the color of the hit in its pixel
+	 * @param k      - the current attenuation level
+	 * @param pixel  - the pixel of the ray
+	 * @param level  - level of Recursion of the hit
+	 * @param next   - the queue of the next bounce
+	 */
+	private void emitBeam(List<Ray> beam, Vector n, double kx, double weight, double k, int pixel, int level,
+			RayQueue next) {
+		Vector dir = beam.get(0).getDir();
+		double nv = alignZero(n.dotProduct(dir));
+		double beamWeight = beam.size() > 1 ? weight * kx / beam.size() : weight * kx;
+		for (Ray item : beam) {
+			double nl = alignZero(n.dotProduct(item.getDir()));
+			if (nv * nl > 0)
+				next.add(item, dir, beamWeight, k * kx, pixel, level - 1);
+		}
+	}
+
+	/**
+	 * Add the time since the start to a stage
+	 *
+	 * @param stage - the stage
+	 * @param start - the start time of the stage in nanoseconds
+	 * @return the end time of the stage (the start of the next one)
+	 */
+	private long stage(Stage stage, long start) {
+		long end = System.nanoTime();
+		stageTimes[stage.ordinal()].add(end - start);
+		return end;
+	}
+
+	/**
+	 * Run a kernel on the indexes [0, size) in chunks with the kernel pool. The
+	 * calling thread takes chunks too and waits for the chunks (not for the tasks
+	 * of the pool), so the kernel ends even when the threads of the pool are busy
+	 * with the kernels of other packets.
+	 *
+	 * @param size   - number of indexes
+	 * @param kernel - the kernel on an index
+	 */
+	private void runParallel(int size, IntConsumer kernel) {
+		int chunks = (size + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK;
+		ForkJoinPool pool = kernelPool;
+		if (pool == null || chunks <= 1) {
+			for (int i = 0; i < size; ++i)
+				kernel.accept(i);
+			return;
+		}
+		AtomicInteger next = new AtomicInteger();
+		CountDownLatch done = new CountDownLatch(chunks);
+		AtomicReference<RuntimeException> failure = new AtomicReference<>();
+		Runnable worker = () -> {
+			for (int chunk = next.getAndIncrement(); chunk < chunks; chunk = next.getAndIncrement())
+				try {
+					for (int i = chunk * PARALLEL_CHUNK; i < Math.min(size, (chunk + 1) * PARALLEL_CHUNK); ++i)
+						kernel.accept(i);
+				} catch (RuntimeException e) {
+					failure.compareAndSet(null, e);
+				} finally {
+					done.countDown();
+				}
+		};
+		for (int i = Math.min(kernelThreads, chunks) - 1; i > 0; --i)
+			pool.execute(worker);
+		worker.run();
+		try {
+			done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (failure.get() != null)
+			throw failure.get();
+	}
+}
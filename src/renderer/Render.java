@@ -3,7 +3,12 @@ package renderer;
 import primitives.*;
 import elements.*;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.MissingResourceException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Renderer class is responsible for generating pixel color map from a graphic
@@ -25,6 +30,9 @@ public class Render {
 	private int threadsCount = 0;
 	private static final int SPARE_THREADS = 2; // Spare threads if trying to use all the cores
 	private boolean print = false; // printing progress percentage
+	private ExecutorService executor = null; // shared pool for the rendering threads
+	private int packetSize = 1; // pixels on each side of a block traced together
+	private int packetBatch = 1; // blocks traced together in one call of the tracer
 
 	/**
 	 * Set multi-threading <br>
@@ -45,6 +53,51 @@ public class Render {
 		return this;
 	}
 
+	/**
+	 * Set a thread pool for the rendering instead of creating new threads. The pool
+	 * may be shared by several renders running at the same time, each of them
+	 * submits tasks by its multi-threading setting (at least one).
+	 * 
+	 * @param executor the thread pool
+	 * @return the Render object itself
+	 */
+	public Render setExecutor(ExecutorService executor) {
+		this.executor = executor;
+		return this;
+	}
+
+	/**
+	 * Set packet tracing - the rays of each block of size x size pixels are traced
+	 * together (see {@link RayTracerBase#traceRays(Ray[])}) <br>
+	 * - if the parameter is 1 - each pixel is traced alone (the default)
+	 * 
+	 * @param size number of pixels on each side of a block (like 4 or 8)
+	 * @return the Render object itself
+	 */
+	public Render setPacketSize(int size) {
+		if (size < 1)
+			throw new IllegalArgumentException("Packet size must be positive");
+		this.packetSize = size;
+		return this;
+	}
+
+	/**
+	 * Set batches of packets - the rays of several blocks of pixels (see
+	 * {@link #setPacketSize(int)}) are traced together in one call of the tracer,
+	 * so a tracer that works stage by stage (like {@link RayTracerWavefront}) has
+	 * enough rays in each stage <br>
+	 * - if the parameter is 1 - each block is traced alone (the default)
+	 * 
+	 * @param packets number of blocks in a batch
+	 * @return the Render object itself
+	 */
+	public Render setPacketBatch(int packets) {
+		if (packets < 1)
+			throw new IllegalArgumentException("Packet batch must be positive");
+		this.packetBatch = packets;
+		return this;
+	}
+
 	/**
 	 * Set debug printing on
 	 * 
@@ -70,7 +123,7 @@ public class Render {
 		public volatile int col = -1;
 		private long counter = 0;
 		private int percents = 0;
-		private long nextCounter = 0;
+		private boolean failed = false;
 
 		/**
 		 * The constructor for initializing the main follow up Pixel object
@@ -82,7 +135,6 @@ public class Render {
 			this.maxRows = maxRows;
 			this.maxCols = maxCols;
 			this.pixels = (long) maxRows * maxCols;
-			this.nextCounter = this.pixels / 100;
 			if (Render.this.print)
 				System.out.printf("\r %02d%%", this.percents);
 		}
@@ -106,33 +158,42 @@ public class Render {
 		 *         percentage (only when it changes)
 		 */
 		private synchronized int nextP(Pixel target) {
+			if (failed)
+				return -1;
 			++col;
 			++this.counter;
 			if (col < this.maxCols) {
 				target.row = this.row;
 				target.col = this.col;
-				if (Render.this.print && this.counter == this.nextCounter) {
-					++this.percents;
-					this.nextCounter = this.pixels * (this.percents + 1) / 100;
-					return this.percents;
-				}
-				return 0;
+				return progress();
 			}
 			++row;
 			if (row < this.maxRows) {
 				col = 0;
 				target.row = this.row;
 				target.col = this.col;
-				if (Render.this.print && this.counter == this.nextCounter) {
-					++this.percents;
-					this.nextCounter = this.pixels * (this.percents + 1) / 100;
-					return this.percents;
-				}
-				return 0;
+				return progress();
 			}
 			return -1;
 		}
 
+		/**
+		 * Internal function for the progress of the counter - the percents are
+		 * calculated from the counter itself, so an image of less than 100 pixels (or
+		 * blocks of pixels) also reaches 100%
+		 * 
+		 * @return the progress percentage when it changes, 0 otherwise
+		 */
+		private int progress() {
+			if (!Render.this.print)
+				return 0;
+			int percent = (int) (this.counter * 100 / this.pixels);
+			if (percent <= this.percents)
+				return 0;
+			this.percents = percent;
+			return this.percents;
+		}
+
 		/**
 		 * Public function for getting next pixel number into secondary Pixel object.
 		 * The function prints also progress percentage in the console window.
@@ -156,20 +217,33 @@ public class Render {
 			return false;
 		}
 
+		/**
+		 * Mark the rendering as failed - no more pixels are given and the debug print
+		 * stops waiting for the progress
+		 */
+		public synchronized void fail() {
+			failed = true;
+			notifyAll();
+		}
+
 		/**
 		 * Debug print of progress percentage - must be run from the main thread
 		 */
 		public void print() {
 			if (Render.this.print)
-				while (this.percents < 100)
-					try {
-						synchronized (this) {
+				// the percents are checked under the lock, so the last notification is not
+				// missed between the check and the wait
+				synchronized (this) {
+					while (this.percents < 100 && !this.failed)
+						try {
 							wait();
+							System.out.printf("\r %02d%%", this.percents);
+							System.out.flush();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							return;
 						}
-						System.out.printf("\r %02d%%", this.percents);
-						System.out.flush();
-					} catch (Exception e) {
-					}
+				}
 		}
 	}
 
@@ -229,6 +303,85 @@ public class Render {
 		imageWriter.writePixel(col, row, color);
 	}
 
+	/**
+	 * Cast the rays of a batch of blocks of pixels together in order to color them
+	 * @param nX resolution on X axis (number of pixels in row)
+	 * @param nY resolution on Y axis (number of pixels in column)
+	 * @param blockCols blocks' column numbers (block index in row)
+	 * @param blockRows blocks' row numbers (block index in column)
+	 * @param count number of blocks in the batch
+	 */
+	private void castPackets(int nX, int nY, int[] blockCols, int[] blockRows, int count) {
+		int size = 0;
+		for (int b = 0; b < count; ++b)
+			size += Math.min(packetSize, nX - blockCols[b] * packetSize)
+					* Math.min(packetSize, nY - blockRows[b] * packetSize);
+		Ray[] rays = new Ray[size];
+		int index = 0;
+		for (int b = 0; b < count; ++b) {
+			int fromCol = blockCols[b] * packetSize, fromRow = blockRows[b] * packetSize;
+			int cols = Math.min(packetSize, nX - fromCol), rows = Math.min(packetSize, nY - fromRow);
+			for (int i = 0; i < rows; ++i)
+				for (int j = 0; j < cols; ++j)
+					rays[index++] = camera.constructRayThroughPixel(nX, nY, fromCol + j, fromRow + i);
+		}
+		Color[] colors = tracer.traceRays(rays);
+		index = 0;
+		for (int b = 0; b < count; ++b) {
+			int fromCol = blockCols[b] * packetSize, fromRow = blockRows[b] * packetSize;
+			int cols = Math.min(packetSize, nX - fromCol), rows = Math.min(packetSize, nY - fromRow);
+			for (int i = 0; i < rows; ++i)
+				for (int j = 0; j < cols; ++j)
+					imageWriter.writePixel(fromCol + j, fromRow + i, colors[index++]);
+		}
+	}
+
+	/**
+	 * Cast a batch of pixels or of blocks of pixels by the packet size
+	 * @param nX resolution on X axis (number of pixels in row)
+	 * @param nY resolution on Y axis (number of pixels in column)
+	 * @param cols pixels' (or blocks') column numbers
+	 * @param rows pixels' (or blocks') row numbers
+	 * @param count number of pixels (or blocks) in the batch
+	 */
+	private void cast(int nX, int nY, int[] cols, int[] rows, int count) {
+		if (packetSize == 1)
+			for (int i = 0; i < count; ++i)
+				castRay(nX, nY, cols[i], rows[i]);
+		else
+			castPackets(nX, nY, cols, rows, count);
+	}
+
+	/**
+	 * Cast the pixels (or the blocks of pixels) of the main follow up Pixel object
+	 * until it is done - in batches by the packet batch. A failure marks the main
+	 * Pixel object as failed, so the other threads and the debug print stop.
+	 * @param nX resolution on X axis (number of pixels in row)
+	 * @param nY resolution on Y axis (number of pixels in column)
+	 * @param thePixel the main follow up Pixel object
+	 */
+	private void castPixels(int nX, int nY, Pixel thePixel) {
+		Pixel pixel = new Pixel();
+		int batch = packetSize == 1 ? 1 : packetBatch;
+		int[] cols = new int[batch], rows = new int[batch];
+		int count = 0;
+		try {
+			while (thePixel.nextPixel(pixel)) {
+				cols[count] = pixel.col;
+				rows[count++] = pixel.row;
+				if (count == batch) {
+					cast(nX, nY, cols, rows, count);
+					count = 0;
+				}
+			}
+			if (count > 0)
+				cast(nX, nY, cols, rows, count);
+		} catch (RuntimeException | Error e) {
+			thePixel.fail();
+			throw e;
+		}
+	}
+
 	/**
 	 * This function renders image's pixel color map from the scene included with
 	 * the Renderer object - with multi-threading
@@ -236,15 +389,15 @@ public class Render {
 	private void renderImageThreaded() {
 		final int nX = imageWriter.getNx();
 		final int nY = imageWriter.getNy();
-		final Pixel thePixel = new Pixel(nY, nX);
+		final Pixel thePixel = new Pixel((nY + packetSize - 1) / packetSize, (nX + packetSize - 1) / packetSize);
+		if (executor != null) {
+			renderImageInPool(nX, nY, thePixel);
+			return;
+		}
 		// Generate threads
 		Thread[] threads = new Thread[threadsCount];
 		for (int i = threadsCount - 1; i >= 0; --i) {
-			threads[i] = new Thread(() -> {
-				Pixel pixel = new Pixel();
-				while (thePixel.nextPixel(pixel))
-					castRay(nX, nY, pixel.col, pixel.row);
-			});
+			threads[i] = new Thread(() -> castPixels(nX, nY, thePixel));
 		}
 		// Start threads
 		for (Thread thread : threads)
@@ -264,6 +417,40 @@ public class Render {
 			System.out.print("\r100%");
 	}
 
+	/**
+	 * This function renders image's pixel color map with tasks in the thread pool
+	 * 
+	 * @param nX       resolution on X axis (number of pixels in row)
+	 * @param nY       resolution on Y axis (number of pixels in column)
+	 * @param thePixel the main follow up Pixel object
+	 */
+	private void renderImageInPool(int nX, int nY, Pixel thePixel) {
+		int tasksCount = Math.max(1, threadsCount);
+		List<Future<?>> tasks = new ArrayList<>(tasksCount);
+		for (int i = 0; i < tasksCount; ++i)
+			tasks.add(executor.submit(() -> {
+				castPixels(nX, nY, thePixel);
+				return null;
+			}));
+
+		// Print percents on the console
+		thePixel.print();
+
+		// Ensure all tasks have finished
+		for (Future<?> task : tasks)
+			try {
+				task.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Rendering task failed", e.getCause());
+			}
+
+		if (print)
+			System.out.print("\r100%");
+	}
+
 	/**
 	 * This function renders image's pixel color map from the scene included with
 	 * the Renderer object
@@ -278,11 +465,22 @@ public class Render {
 
 		final int nX = imageWriter.getNx();
 		final int nY = imageWriter.getNy();
-		if (threadsCount == 0)
-			for (int i = 0; i < nY; ++i)
-				for (int j = 0; j < nX; ++j)
-					castRay(nX, nY, j, i);
-		else
+		if (threadsCount == 0 && executor == null) {
+			int batch = packetSize == 1 ? 1 : packetBatch;
+			int[] cols = new int[batch], rows = new int[batch];
+			int count = 0;
+			for (int i = 0; i < (nY + packetSize - 1) / packetSize; ++i)
+				for (int j = 0; j < (nX + packetSize - 1) / packetSize; ++j) {
+					cols[count] = j;
+					rows[count++] = i;
+					if (count == batch) {
+						cast(nX, nY, cols, rows, count);
+						count = 0;
+					}
+				}
+			if (count > 0)
+				cast(nX, nY, cols, rows, count);
+		} else
 			renderImageThreaded();
 	}
 
@@ -1,12 +1,12 @@
 package scene;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
 import geometries.*;
 import geometries.Intersectable.GeoPoint;
 import primitives.*;
@@ -15,18 +15,95 @@ import static primitives.Util.*;
 /**
  * This Class represent a AABB(Axis Aligned Bounding Box) this Box contain the
  * whole scene and we divide this box into grid . each grid cell is a Voxel and
- * each voxel contains the geometries that should be in this cell we map all
- * geometries into hashmap <Voxel,Geoemetries>
+ * each voxel contains the geometries that should be in this cell.
+ * <p>
+ * The voxels are stored in compressed rows (CSR): the geometries of all the
+ * voxels are in one array of indexes, and the voxel x + y*n + z*n*n (n voxels
+ * on each axis) has the range [voxelStart[v], voxelStart[v+1]) of it. When the
+ * offsets of the whole grid don't fit in the memory budget, only the non empty
+ * voxels get offsets and they are found by an open addressing hash table.
+ * <p>
+ * A voxel that is overloaded with geometries (like the voxels around the spout
+ * of the teapot) gets its own nested grid, with resolution by its number of
+ * geometries, and the traversal descends into it with the same 3D-DDA stepping
+ * instead of testing all the geometries of the voxel.
+ * <p>
+ * Unbounded geometries (like planes and tubes) can't be mapped into voxels, so
+ * the grid is built over the bounded geometries only, and the unbounded ones
+ * are tested by every ray beside the grid.
+ * <p>
+ * The box is traced like any other body, so a tracer can use it as its
+ * acceleration structure.
  * 
  * @author David and Matan
  *
  */
-public class Box {
+public class Box extends Intersectable {
 	private int boxDensity;
-	private static double minX, minY, minZ;
-	private static double maxX, maxY, maxZ;
-	private static double voxelSizeX, voxelSizeY, voxelSizeZ;
-	private Map<Voxel, Geometries> map;
+	private double minX, minY, minZ;
+	private double maxX, maxY, maxZ;
+	private double voxelSizeX, voxelSizeY, voxelSizeZ;
+	private Intersectable[] bodies;
+	/**
+	 * the geometries with infinite boundaries
+	 */
+	private Geometries unbounded;
+	/**
+	 * Number of voxels on each axis (the indexes are 0..boxDensity)
+	 */
+	private int gridSize;
+	private boolean dense;
+	/**
+	 * Offsets into voxelBodies by the slot of the voxel (in dense layout the slot
+	 * is the voxel index)
+	 */
+	private int[] voxelStart;
+	private int[] voxelBodies;
+	private int voxelCount;
+	/**
+	 * Sparse layout - the voxel index of each slot and open addressing table of
+	 * the slots (-1 - an empty entry)
+	 */
+	private long[] sparseVoxels;
+	private int[] sparseTable;
+	/**
+	 * The slots of the voxels with a nested grid (sorted) and their grids
+	 */
+	private int[] subGridSlots;
+	private SubGrid[] subGrids;
+	/**
+	 * A voxel with more geometries than this gets a nested grid
+	 */
+	private static final int MAX_VOXEL_GEOMETRIES = 8;
+	/**
+	 * Maximal density of a nested grid on each axis
+	 */
+	private static final int MAX_SUB_GRID_DENSITY = 8;
+	/**
+	 * Maximal density factor suggested by the statistics of the scene
+	 */
+	public static final int MAX_SUGGESTED_DENSITY = 64;
+	/**
+	 * Default memory budget (in bytes) of the dense voxels offsets
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+	/**
+	 * Number of geometries (or voxels) in a chunk of the parallel build
+	 */
+	private static final int BUILD_CHUNK = 1 << 10;
+	/**
+	 * Maximal length of an array of the grid
+	 */
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+	/**
+	 * Atomic access to the counters of the voxels in the parallel build
+	 */
+	private static final VarHandle INT_ARRAY = MethodHandles.arrayElementVarHandle(int[].class);
+	private double buildTime;
+	/**
+	 * per thread mailboxes - the id of the last ray that tested each geometry
+	 */
+	private final ThreadLocal<int[]> mailboxes = ThreadLocal.withInitial(() -> new int[bodies.length + 1]);
 
 	/**
 	 * Constructor takes the geometries in the scene set minimum value and maximum
@@ -35,11 +112,45 @@ public class Box {
 	 * @param geometries - The geometries in the scene
 	 */
 	public Box(int k, Geometries geometries) {
+		this(k, geometries, DEFAULT_MEMORY_BUDGET);
+	}
+
+	/**
+	 * Constructor takes the geometries in the scene set minimum value and maximum
+	 * 
+	 * @param k            - Value for set optimize density of the box
+	 * @param geometries   - The geometries in the scene
+	 * @param memoryBudget - maximal size in bytes of the dense voxels offsets,
+	 *                     above it the sparse layout is used
+	 */
+	public Box(int k, Geometries geometries, long memoryBudget) {
+		this(k, geometries, memoryBudget, 1);
+	}
+
+	/**
+	 * Constructor takes the geometries in the scene set minimum value and maximum
+	 * 
+	 * @param k            - Value for set optimize density of the box
+	 * @param geometries   - The geometries in the scene
+	 * @param memoryBudget - maximal size in bytes of the dense voxels offsets,
+	 *                     above it the sparse layout is used
+	 * @param threads      - number of threads for building the grid
+	 */
+	public Box(int k, Geometries geometries, long memoryBudget, int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("Number of threads must be positive");
+		long start = System.nanoTime();
+		minBoundary = geometries.getMinBoundary();
+		maxBoundary = geometries.getMaxBoundary();
+		unbounded = geometries.getUnbounded();
+		geometries = geometries.getBounded();
 		setMinBox(geometries.getMinBoundary());
 		setMaxBox(geometries.getMaxBoundary());
 		setDensity(geometries.getBudies().size(), k);
 		setVoxelSize();
-		SetMap(geometries);
+		SetMap(geometries, memoryBudget, threads);
+		setSubGrids(k, threads);
+		buildTime = (System.nanoTime() - start) / 1e6;
 	}
 
 	/**
@@ -49,9 +160,54 @@ public class Box {
 	 * @param k             - Value for set optimize density of the box
 	 */
 	private void setDensity(int numGeometries, int k) {
-		double boxVolume = (maxX - minX) * (maxY - minY) * (maxZ - minZ);
-		double averageDimensionSize = ((maxX - minX) + (maxY - minY) + (maxZ - minZ)) / 3;
-		boxDensity = (int) (averageDimensionSize * Math.pow((k * numGeometries) / boxVolume, 1 / 3.0));
+		boxDensity = densityOf(maxX - minX, maxY - minY, maxZ - minZ, numGeometries, k);
+	}
+
+	/**
+	 * The density formula of a grid
+	 * 
+	 * @param sizeX         - size of the grid on the x axis
+	 * @param sizeY         - size of the grid on the y axis
+	 * @param sizeZ         - size of the grid on the z axis
+	 * @param numGeometries - number of geometries in the grid
+	 * @param k             - Value for set optimize density of the grid
+	 * @return the number of cells on each axis
+	 */
+	private static int densityOf(double sizeX, double sizeY, double sizeZ, int numGeometries, int k) {
+		double volume = sizeX * sizeY * sizeZ;
+		double averageDimensionSize = (sizeX + sizeY + sizeZ) / 3;
+		return (int) (averageDimensionSize * Math.pow((k * numGeometries) / volume, 1 / 3.0));
+	}
+
+	/**
+	 * Suggest the density factor k of a grid from statistics of the scene - the
+	 * number of the bounded bodies, the boundaries of the scene and the average
+	 * extent of a body. The factor is chosen such that a voxel is about the size
+	 * of an average body, so a body is referenced by a few voxels and a voxel
+	 * holds a few bodies. An axis of the scene thinner than a body (like a flat
+	 * scene) is counted as the extent of a body, so the aspect ratio of the scene
+	 * doesn't blow up the grid.
+	 * 
+	 * @param geometries - the geometries in the scene
+	 * @return the density factor (at least 1)
+	 */
+	public static int suggestDensity(Geometries geometries) {
+		var bodies = geometries.getBounded().getBudies();
+		if (bodies.isEmpty())
+			return 1;
+		double extent = 0;
+		for (Intersectable body : bodies) {
+			Point3D min = body.getMinBoundary(), max = body.getMaxBoundary();
+			extent += (max.getX() - min.getX() + max.getY() - min.getY() + max.getZ() - min.getZ()) / 3;
+		}
+		extent /= bodies.size();
+		if (extent <= 0)
+			return 1; // only points - nothing to learn from the sizes
+		Point3D min = geometries.getBounded().getMinBoundary(), max = geometries.getBounded().getMaxBoundary();
+		double volume = Math.max(max.getX() - min.getX(), extent) * Math.max(max.getY() - min.getY(), extent)
+				* Math.max(max.getZ() - min.getZ(), extent);
+		double k = volume / (bodies.size() * extent * extent * extent);
+		return (int) Math.max(1, Math.min(Math.round(k), MAX_SUGGESTED_DENSITY));
 	}
 
 	/**
@@ -87,44 +243,324 @@ public class Box {
 	}
 
 	/**
-	 * This function mapping the geometries into the correct Voxels
+	 * This function mapping the geometries into the correct Voxels. The geometries
+	 * are counted for each voxel, the counts are summed into the offsets and then
+	 * the geometries are filled in reverse order (so each voxel keeps the order of
+	 * the scene).
 	 * 
-	 * @param geometries all geometries in the Scene
+	 * @param geometries   all geometries in the Scene
+	 * @param memoryBudget - maximal size in bytes of the dense voxels offsets
+	 * @param threads      - number of threads for building the grid
 	 */
-	private void SetMap(Geometries geometries) {
-		map = new HashMap<Voxel, Geometries>();
-		int[] minIndexs = new int[3], maxIndexs = new int[3];
-		Voxel voxel;
-		for (Intersectable geometry : geometries.getBudies()) {
-			var min = geometry.getMinBoundary();
-			minIndexs[0] = (int) ((min.getX() - minX) / voxelSizeX);
-			minIndexs[1] = (int) ((min.getY() - minY) / voxelSizeY);
-			minIndexs[2] = (int) ((min.getZ() - minZ) / voxelSizeZ);
-			var max = geometry.getMaxBoundary();
-			maxIndexs[0] = (int) ((max.getX() - minX) / voxelSizeX);
-			maxIndexs[1] = (int) ((max.getY() - minY) / voxelSizeY);
-			maxIndexs[2] = (int) ((max.getZ() - minZ) / voxelSizeZ);
-			for (int x = minIndexs[0]; x <= maxIndexs[0]; x++)
-				for (int y = minIndexs[1]; y <= maxIndexs[1]; y++)
-					for (int z = minIndexs[2]; z <= maxIndexs[2]; z++) {
-						voxel = new Voxel(x, y, z);
-						if (map.containsKey(voxel))
-							map.get(voxel).add(geometry);
-						else {
-							Geometries g = new Geometries(geometry);
-							map.put(voxel, g);
-						}
-					}
+	private void SetMap(Geometries geometries, long memoryBudget, int threads) {
+		bodies = geometries.getBudies().toArray(new Intersectable[0]);
+		gridSize = boxDensity + 1;
+		long voxels = (long) gridSize * gridSize * gridSize;
+		dense = (voxels + 1) * Integer.BYTES <= memoryBudget;
+		int[] range = new int[6];
+		long references = 0;
+		for (Intersectable geometry : bodies) {
+			voxelRange(geometry, range);
+			references += (long) (range[3] - range[0] + 1) * (range[4] - range[1] + 1) * (range[5] - range[2] + 1);
+		}
+		int referenceCount = arraySize(references + 1) - 1;
+		if (dense && threads > 1) {
+			setMapParallel(referenceCount, threads);
+			return;
+		}
+		if (dense) {
+			voxelStart = new int[(int) voxels + 1];
+			for (Intersectable geometry : bodies) {
+				voxelRange(geometry, range);
+				for (int x = range[0]; x <= range[3]; x++)
+					for (int y = range[1]; y <= range[4]; y++)
+						for (int z = range[2]; z <= range[5]; z++)
+							++voxelStart[x + y * gridSize + z * gridSize * gridSize];
+			}
+			for (int i = 0; i < voxels; ++i)
+				if (voxelStart[i] > 0)
+					++voxelCount;
+		} else {
+			sparseTable = new int[arraySize(Long.highestOneBit(Math.max(2, references) * 4))];
+			Arrays.fill(sparseTable, -1);
+			sparseVoxels = new long[referenceCount];
+			voxelStart = new int[referenceCount + 1];
+			for (Intersectable geometry : bodies) {
+				voxelRange(geometry, range);
+				for (int x = range[0]; x <= range[3]; x++)
+					for (int y = range[1]; y <= range[4]; y++)
+						for (int z = range[2]; z <= range[5]; z++)
+							++voxelStart[insertSlot(x + (long) y * gridSize + (long) z * gridSize * gridSize)];
+			}
+			sparseVoxels = Arrays.copyOf(sparseVoxels, voxelCount);
+		}
+		int slots = dense ? (int) voxels : voxelCount;
+		for (int i = 1; i < slots; ++i) // each offset is the end of its voxel
+			voxelStart[i] += voxelStart[i - 1];
+		voxelStart[slots] = referenceCount;
+		voxelBodies = new int[referenceCount];
+		for (int i = bodies.length - 1; i >= 0; --i) {
+			voxelRange(bodies[i], range);
+			for (int x = range[0]; x <= range[3]; x++)
+				for (int y = range[1]; y <= range[4]; y++)
+					for (int z = range[2]; z <= range[5]; z++)
+						voxelBodies[--voxelStart[slotOf(x, y, z, true)]] = i;
 		}
+		if (!dense)
+			voxelStart = Arrays.copyOf(voxelStart, voxelCount + 1);
+	}
+
+	/**
+	 * This function checks that an array of the grid can be allocated
+	 * 
+	 * @param size - the length of the array
+	 * @return the length as an int
+	 * @throws IllegalStateException when the length is too big for an array
+	 */
+	private static int arraySize(long size) {
+		if (size > MAX_ARRAY_SIZE)
+			throw new IllegalStateException("The grid is too big - an array of " + size
+					+ " entries is needed, reduce the density of the box");
+		return (int) size;
+	}
+
+	/**
+	 * This function mapping the geometries into the dense layout in parallel. The
+	 * threads count the voxels of chunks of the geometries into the shared offsets
+	 * with atomic increments, and then fill the geometries with atomic decrements.
+	 * The fill doesn't keep the order of the scene so each voxel is sorted at the
+	 * end (the traversal result doesn't depend on the threads).
+	 * 
+	 * @param references - the number of references from the voxels to geometries
+	 * @param threads    - number of threads for building the grid
+	 */
+	private void setMapParallel(int references, int threads) {
+		int voxels = gridSize * gridSize * gridSize;
+		int bodiesChunks = (bodies.length + BUILD_CHUNK - 1) / BUILD_CHUNK;
+		int voxelsChunks = (voxels + BUILD_CHUNK - 1) / BUILD_CHUNK;
+		voxelStart = new int[voxels + 1];
+		runParallel(threads, bodiesChunks, chunk -> {
+			int[] range = new int[6];
+			for (int i = chunk * BUILD_CHUNK; i < Math.min(bodies.length, (chunk + 1) * BUILD_CHUNK); ++i) {
+				voxelRange(bodies[i], range);
+				for (int x = range[0]; x <= range[3]; x++)
+					for (int y = range[1]; y <= range[4]; y++)
+						for (int z = range[2]; z <= range[5]; z++)
+							INT_ARRAY.getAndAdd(voxelStart, x + y * gridSize + z * gridSize * gridSize, 1);
+			}
+		});
+		for (int i = 0; i < voxels; ++i) {
+			if (voxelStart[i] > 0)
+				++voxelCount;
+			if (i > 0) // each offset is the end of its voxel
+				voxelStart[i] += voxelStart[i - 1];
+		}
+		voxelStart[voxels] = references;
+		voxelBodies = new int[references];
+		runParallel(threads, bodiesChunks, chunk -> {
+			int[] range = new int[6];
+			for (int i = chunk * BUILD_CHUNK; i < Math.min(bodies.length, (chunk + 1) * BUILD_CHUNK); ++i) {
+				voxelRange(bodies[i], range);
+				for (int x = range[0]; x <= range[3]; x++)
+					for (int y = range[1]; y <= range[4]; y++)
+						for (int z = range[2]; z <= range[5]; z++)
+							voxelBodies[(int) INT_ARRAY.getAndAdd(voxelStart, x + y * gridSize + z * gridSize * gridSize,
+									-1) - 1] = i;
+			}
+		});
+		runParallel(threads, voxelsChunks, chunk -> {
+			for (int i = chunk * BUILD_CHUNK; i < Math.min(voxels, (chunk + 1) * BUILD_CHUNK); ++i)
+				if (voxelStart[i + 1] - voxelStart[i] > 1)
+					Arrays.sort(voxelBodies, voxelStart[i], voxelStart[i + 1]);
+		});
+	}
+
+	/**
+	 * Run an action on the chunks [0, chunks) with several threads (the calling
+	 * thread is one of them)
+	 * 
+	 * @param threads - number of threads
+	 * @param chunks  - number of chunks
+	 * @param action  - the action on a chunk
+	 */
+	private static void runParallel(int threads, int chunks, IntConsumer action) {
+		AtomicInteger next = new AtomicInteger();
+		Runnable worker = () -> {
+			for (int chunk = next.getAndIncrement(); chunk < chunks; chunk = next.getAndIncrement())
+				action.accept(chunk);
+		};
+		Thread[] workers = new Thread[Math.max(0, Math.min(threads, chunks) - 1)];
+		for (int i = 0; i < workers.length; ++i) {
+			workers[i] = new Thread(worker);
+			workers[i].start();
+		}
+		worker.run();
+		for (Thread thread : workers)
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+	}
+
+	/**
+	 * Function to find the range of voxels that the geometry is in them
+	 * 
+	 * @param geometry - the geometry
+	 * @param range    - array for the minimum x y z and the maximum x y z indexes
+	 */
+	private void voxelRange(Intersectable geometry, int[] range) {
+		var min = geometry.getMinBoundary();
+		range[0] = (int) ((min.getX() - minX) / voxelSizeX);
+		range[1] = (int) ((min.getY() - minY) / voxelSizeY);
+		range[2] = (int) ((min.getZ() - minZ) / voxelSizeZ);
+		var max = geometry.getMaxBoundary();
+		range[3] = (int) ((max.getX() - minX) / voxelSizeX);
+		range[4] = (int) ((max.getY() - minY) / voxelSizeY);
+		range[5] = (int) ((max.getZ() - minZ) / voxelSizeZ);
+	}
+
+	/**
+	 * Hash of a voxel index for the sparse table
+	 * 
+	 * @param voxel - the voxel index
+	 * @return the hash
+	 */
+	private static int hash(long voxel) {
+		long h = voxel * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * Find the slot of a voxel in the sparse table and add it if it is missing
+	 * 
+	 * @param voxel - the voxel index
+	 * @return the slot of the voxel
+	 */
+	private int insertSlot(long voxel) {
+		int mask = sparseTable.length - 1;
+		for (int i = hash(voxel) & mask;; i = (i + 1) & mask) {
+			int slot = sparseTable[i];
+			if (slot == -1) {
+				sparseVoxels[voxelCount] = voxel;
+				return sparseTable[i] = voxelCount++;
+			}
+			if (sparseVoxels[slot] == voxel)
+				return slot;
+		}
+	}
+
+	/**
+	 * Function to find the slot of a voxel in the offsets
+	 * 
+	 * @param x     - x index of the voxel
+	 * @param y     - y index of the voxel
+	 * @param z     - z index of the voxel
+	 * @param empty - whether to return the slot of an empty voxel in the dense
+	 *              layout
+	 * @return the slot or -1 if the voxel is empty or out of the grid
+	 */
+	private int slotOf(int x, int y, int z, boolean empty) {
+		if (x < 0 || y < 0 || z < 0 || x >= gridSize || y >= gridSize || z >= gridSize)
+			return -1;
+		if (dense) {
+			int voxel = x + y * gridSize + z * gridSize * gridSize;
+			return empty || voxelStart[voxel] != voxelStart[voxel + 1] ? voxel : -1;
+		}
+		long voxel = x + (long) y * gridSize + (long) z * gridSize * gridSize;
+		int mask = sparseTable.length - 1;
+		for (int i = hash(voxel) & mask;; i = (i + 1) & mask) {
+			int slot = sparseTable[i];
+			if (slot == -1)
+				return -1;
+			if (sparseVoxels[slot] == voxel)
+				return slot;
+		}
+	}
+
+	/**
+	 * This function build nested grids in the overloaded voxels
+	 * 
+	 * @param k       - Value for set optimize density of the nested grids
+	 * @param threads - number of threads for building the grids
+	 */
+	private void setSubGrids(int k, int threads) {
+		int slots = dense ? gridSize * gridSize * gridSize : voxelCount;
+		int count = 0;
+		subGridSlots = new int[0];
+		int[] densities = new int[0];
+		for (int slot = 0; slot < slots; ++slot) {
+			int size = voxelStart[slot + 1] - voxelStart[slot];
+			if (size <= MAX_VOXEL_GEOMETRIES)
+				continue;
+			int density = densityOf(voxelSizeX, voxelSizeY, voxelSizeZ, size, k);
+			if (density <= 1)
+				continue;
+			if (count == subGridSlots.length) {
+				subGridSlots = Arrays.copyOf(subGridSlots, Math.max(8, 2 * count));
+				densities = Arrays.copyOf(densities, subGridSlots.length);
+			}
+			subGridSlots[count] = slot;
+			densities[count++] = Math.min(density, MAX_SUB_GRID_DENSITY);
+		}
+		subGridSlots = Arrays.copyOf(subGridSlots, count); // the slots are added in order - sorted
+		subGrids = new SubGrid[count];
+		final int[] subGridDensities = densities;
+		runParallel(threads, count, i -> {
+			int slot = subGridSlots[i];
+			long voxel = dense ? slot : sparseVoxels[slot];
+			double x = minX + voxel % gridSize * voxelSizeX;
+			double y = minY + voxel / gridSize % gridSize * voxelSizeY;
+			double z = minZ + voxel / gridSize / gridSize * voxelSizeZ;
+			subGrids[i] = new SubGrid(x, y, z, voxelSizeX, voxelSizeY, voxelSizeZ, subGridDensities[i], bodies,
+					voxelBodies, voxelStart[slot], voxelStart[slot + 1]);
+		});
+	}
+
+	/**
+	 * Getter
+	 * 
+	 * @return the time of building the box in milliseconds
+	 */
+	public double getBuildTime() {
+		return buildTime;
 	}
 
 	/**
-	 * Getter of map
+	 * Getter
+	 * 
+	 * @return the number of non empty voxels
+	 */
+	public int getVoxelCount() {
+		return voxelCount;
+	}
+
+	/**
+	 * Getter
 	 * 
-	 * @return Map
+	 * @return the number of references from the voxels to geometries
 	 */
-	public Map<Voxel, Geometries> getMap() {
-		return map;
+	public int getReferenceCount() {
+		return voxelBodies.length;
+	}
+
+	/**
+	 * Getter
+	 * 
+	 * @return true if the offsets are stored for all the voxels, false if only for
+	 *         the non empty voxels (sparse layout)
+	 */
+	public boolean isDense() {
+		return dense;
+	}
+
+	/**
+	 * Getter
+	 * 
+	 * @return the number of voxels with a nested grid
+	 */
+	public int getSubGridCount() {
+		return subGrids.length;
 	}
 
 	/**
@@ -148,11 +584,10 @@ public class Box {
 		double minTX = 0, minTY = 0, minTZ = 0;
 		double maxTX = Double.POSITIVE_INFINITY, maxTY = maxTX, maxTZ = maxTX;
 		Vector v = ray.getDir();
-		Point3D headV = v.getHead();
 		Point3D p0Ray = ray.getP0();
-		double rayX = alignZero(headV.getX());
-		double rayY = alignZero(headV.getY());
-		double rayZ = alignZero(headV.getZ());
+		double rayX = alignZero(v.getX());
+		double rayY = alignZero(v.getY());
+		double rayZ = alignZero(v.getZ());
 		double rayPX = alignZero(p0Ray.getX());
 		double rayPY = alignZero(p0Ray.getY());
 		double rayPZ = alignZero(p0Ray.getZ());
@@ -236,7 +671,8 @@ public class Box {
 
 	/**
 	 * This function return the geoPoints of intersection on the way of the ray if
-	 * ray doesn't intersect the box it returns null
+	 * ray doesn't intersect the box it returns only the intersections with the
+	 * unbounded geometries (or null)
 	 * 
 	 * @param ray            - the Ray the traverse on the box
 	 * @param shadowRaysCase - boolean
@@ -244,15 +680,110 @@ public class Box {
 	 * @return list of intersections
 	 */
 	public List<GeoPoint> findIntersectionsInTheBox(Ray ray, boolean shadowRaysCase, double dis) {
+		// the unbounded geometries are tested with the original ray
+		List<GeoPoint> unboundedPoints = unbounded.findGeoIntersections(ray, dis);
+		Point3D p0 = ray.getP0();
 		if (!this.isRayStartInTheBox(ray)) {
 			ray = this.checkIntersection(ray);
 		}
 		if (ray == null)// there is no intersect with the box
-			return null;
+			return unboundedPoints;
+		// the distance is measured from the entry point of the moved ray
+		dis -= ray.getP0().distance(p0);
+		if (alignZero(dis) <= 0) // the box is farther than the distance
+			return unboundedPoints;
 		// else: check for intersection point with the geometries at the box
-		return traverseTheBox(ray, shadowRaysCase, dis);
+		List<GeoPoint> geoPoints = traverseTheBox(ray, shadowRaysCase, dis);
+		if (geoPoints == null)
+			return unboundedPoints;
+		if (unboundedPoints != null)
+			geoPoints.addAll(unboundedPoints);
+		return geoPoints;
+	}
+
+	/**
+	 * This function return the closest intersection point on the way of the ray.
+	 * The distance of the closest point found so far is the maximum distance for
+	 * the next geometries, and no list of intersection points is built.
+	 * 
+	 * @param ray      - the Ray the traverse on the box
+	 * @param distance - maximum distance of intersection
+	 * @return the closest intersection point, or null if there is no intersection
+	 */
+	public GeoPoint findClosestIntersectionInTheBox(Ray ray, double distance) {
+		// the unbounded geometries first - their closest point limits the traversal
+		GeoPoint closest = unbounded.findClosestIntersection(ray, distance);
+		Point3D p0 = ray.getP0();
+		double closestDistance = closest == null ? distance : closest.point.distance(p0);
+		if (!this.isRayStartInTheBox(ray)) {
+			ray = this.checkIntersection(ray);
+		}
+		if (ray == null)// there is no intersect with the box
+			return closest;
+		// the distance is measured from the entry point of the moved ray
+		double entry = ray.getP0().distance(p0);
+		if (alignZero(closestDistance - entry) <= 0) // the box is farther than the distance
+			return closest;
+		Trace trace = new Trace(ray, false, true, false, closestDistance - entry, 0);
+		traverse(trace);
+		GeoPoint gp = trace.closestPoint;
+		return gp != null && (closest == null || gp.point.distance(p0) < closestDistance) ? gp : closest;
 	}
 
+	/**
+	 * This function return how much light passes along the ray through the
+	 * geometries in the box - the product of the transparency factors of all the
+	 * intersections. The traversal stops as soon as the product falls below the
+	 * threshold (e.g. at the first opaque geometry), without collecting the
+	 * intersection points.
+	 * 
+	 * @param ray       - the shadow ray
+	 * @param distance  - the distance from light source
+	 * @param threshold - transmittance below this is considered as full shadow
+	 * @return the transmittance, or 0 when it falls below the threshold
+	 */
+	public double occlusionInTheBox(Ray ray, double distance, double threshold) {
+		double ktr = unbounded.occlusion(ray, distance, threshold);
+		if (ktr == 0.0)
+			return 0.0;
+		Point3D p0 = ray.getP0();
+		if (!this.isRayStartInTheBox(ray)) {
+			ray = this.checkIntersection(ray);
+		}
+		if (ray == null)// there is no intersect with the box
+			return ktr;
+		// the distance is measured from the entry point of the moved ray
+		distance -= ray.getP0().distance(p0);
+		if (alignZero(distance) <= 0) // the box is farther than the light
+			return ktr;
+		Trace trace = new Trace(ray, true, false, true, distance, threshold / ktr);
+		traverse(trace);
+		return trace.ktr * ktr;
+	}
+
+	@Override
+	public List<GeoPoint> findGeoIntersections(Ray ray, double max) {
+		return findIntersectionsInTheBox(ray, true, max);
+	}
+
+	@Override
+	public GeoPoint findClosestIntersection(Ray ray, double max) {
+		return findClosestIntersectionInTheBox(ray, max);
+	}
+
+	@Override
+	public double occlusion(Ray ray, double max, double threshold) {
+		return occlusionInTheBox(ray, max, threshold);
+	}
+
+	@Override
+	public void setMaxBoundary() {
+	} // Already initialized by the geometries
+
+	@Override
+	public void setMinBoundary() {
+	} // Already initialized by the geometries
+
 	/**
 	 * this function traverse over the voxel in ray direction and check for
 	 * intersection if intersection found in current voxel we return the current
@@ -260,6 +791,8 @@ public class Box {
 	 * 3D-DDA algorithm.
 	 * <li>case of shadow rays we need to traverse all the voxels even if we find
 	 * intersection in current voxel
+	 * <li>each geometry is tested once by the ray even if it is in several voxels
+	 * (the ray id is stamped in a mailbox of the thread)
 	 * 
 	 * @param ray            - the Ray the traverse on the box (ray p0 always be in
 	 *                       the box)
@@ -268,189 +801,380 @@ public class Box {
 	 * @return the relevant intersection points
 	 */
 	public List<GeoPoint> traverseTheBox(Ray ray, boolean shadowRaysCase, double distance) {
-		double[] daltes = calculateDaltes(ray);
-		double deltaX = daltes[0], deltaY = daltes[1], deltaZ = daltes[2];
-		double tX = daltes[3], tY = daltes[4], tZ = daltes[5];
+		Trace trace = new Trace(ray, shadowRaysCase, false, false, distance, 0);
+		traverse(trace);
+		return trace.geoPoints;
+	}
+
+	/**
+	 * The 3D-DDA traversal of the voxels by a ray (the ray p0 is in the box)
+	 * 
+	 * @param trace - the state of the ray
+	 */
+	private void traverse(Trace trace) {
+		Ray ray = trace.ray;
+		Point3D p0 = ray.getP0();
+		Vector dir = ray.getDir();
+		// the distance from the min corner of the grid to the P0 of the ray (it is
+		// always in the grid) on each axis
+		double offsetX = alignZero(p0.getX() - minX);
+		double offsetY = alignZero(p0.getY() - minY);
+		double offsetZ = alignZero(p0.getZ() - minZ);
+		double deltaX = delta(voxelSizeX, dir.getX());
+		double deltaY = delta(voxelSizeY, dir.getY());
+		double deltaZ = delta(voxelSizeZ, dir.getZ());
+		double tX = firstCrossing(offsetX, voxelSizeX, dir.getX());
+		double tY = firstCrossing(offsetY, voxelSizeY, dir.getY());
+		double tZ = firstCrossing(offsetZ, voxelSizeZ, dir.getZ());
 		// Getting the first voxel of the ray
-		Voxel currentvoxel = Voxel.convertPointToVoxel(ray.getP0());
-		int[] voxelIndex = new int[] { currentvoxel.x, currentvoxel.y, currentvoxel.z };
-		List<GeoPoint> geoPoints = null;
-		boolean foundInretsectInVoxelRange = false;
-		Set<Intersectable> alreadyTested = new HashSet<Intersectable>();
-		Geometries voxelGeometris;
-		Geometries currentGeometris;
-		double rayX = alignZero(ray.getDir().getHead().getX());
-		double rayY = alignZero(ray.getDir().getHead().getY());
-		double rayZ = alignZero(ray.getDir().getHead().getZ());
+		int indexX = (int) ((p0.getX() - minX) / voxelSizeX);
+		int indexY = (int) ((p0.getY() - minY) / voxelSizeY);
+		int indexZ = (int) ((p0.getZ() - minZ) / voxelSizeZ);
+		double rayX = alignZero(ray.getDir().getX());
+		double rayY = alignZero(ray.getDir().getY());
+		double rayZ = alignZero(ray.getDir().getZ());
+		double t = 0; // the distance where the ray enters the current voxel
 		while (true) {
-			Voxel currentVoxel = new Voxel(voxelIndex[0], voxelIndex[1], voxelIndex[2]);
-			if (map.containsKey(currentVoxel)) {
-				voxelGeometris = map.get(currentVoxel);
-				if (!shadowRaysCase)
-					currentGeometris = voxelGeometris;
-				else {
-					currentGeometris = new Geometries();
-					for (Intersectable geometry : voxelGeometris.getBudies()) {
-						if (!alreadyTested.contains(geometry)) {
-							currentGeometris.add(geometry);
-							alreadyTested.add(geometry);
-						}
-					}
-				}
-				List<GeoPoint> gPoints = currentGeometris.findGeoIntersections(ray, distance);
-				if (gPoints != null) {
-					if (geoPoints == null)
-						geoPoints = new LinkedList<GeoPoint>();
-					if (!shadowRaysCase && !foundInretsectInVoxelRange)
-						if (currentVoxel.isIntersectInVoxelRange(gPoints))
-							foundInretsectInVoxelRange = true;
-					geoPoints.addAll(gPoints);
-				}
-			}
-			if (foundInretsectInVoxelRange)
-				return geoPoints;
+			double tOut = Math.min(tX, Math.min(tY, tZ)); // the distance where the ray leaves the voxel
+			int slot = slotOf(indexX, indexY, indexZ, false);
+			int subGrid = slot < 0 || voxelStart[slot + 1] - voxelStart[slot] <= MAX_VOXEL_GEOMETRIES ? -1
+					: Arrays.binarySearch(subGridSlots, slot);
+			if (subGrid >= 0) {
+				// descend into the nested grid in the range of the ray inside the voxel
+				subGrids[subGrid].traverse(trace, t, tOut);
+			} else if (slot >= 0)
+				for (int i = voxelStart[slot]; i < voxelStart[slot + 1]; ++i)
+					if (trace.test(voxelBodies[i]))
+						return; // the ray is blocked
+			// an intersection before the voxel exit is closer than all the next voxels
+			if (trace.closest <= tOut || trace.ktr == 0.0)
+				return;
+			t = tOut;
 			// Check how is the next voxel in the ray way
 			if (tX < tY)
 				if (tX < tZ) {
 					tX += deltaX; // increment, next crossing along x
-					voxelIndex[0] += rayX < 0 ? -1 : +1;
+					indexX += rayX < 0 ? -1 : +1;
 				} else {
 					tZ += deltaZ; // increment, next crossing along z
-					voxelIndex[2] += rayZ < 0 ? -1 : +1;
+					indexZ += rayZ < 0 ? -1 : +1;
 				}
 			else if (tY < tZ) {
 				tY += deltaY; // increment, next crossing along y
-				voxelIndex[1] += rayY < 0 ? -1 : +1;
+				indexY += rayY < 0 ? -1 : +1;
 			} else {
 				tZ += deltaZ; // increment, next crossing along z
-				voxelIndex[2] += rayZ < 0 ? -1 : +1;
+				indexZ += rayZ < 0 ? -1 : +1;
 			}
 			// if some condition is met break from the loop
-			if (voxelIndex[0] < 0 || voxelIndex[1] < 0 || voxelIndex[2] < 0 || voxelIndex[0] > boxDensity
-					|| voxelIndex[1] > boxDensity || voxelIndex[2] > boxDensity)
-				return geoPoints;
+			if (indexX < 0 || indexY < 0 || indexZ < 0 || indexX > boxDensity || indexY > boxDensity
+					|| indexZ > boxDensity)
+				return;
 		}
 	}
 
 	/**
-	 * This function calculate the deltas for traversing in the grid
+	 * Function to get a new id for a ray in the mailbox of the thread
 	 * 
-	 * @param ray - Ray the intersect the box
-	 * @return array of essential values for 3ddda
+	 * @param mailbox - the mailbox of the thread (the last cell holds the last id)
+	 * @return the id of the ray
 	 */
-	private double[] calculateDaltes(Ray ray) {
-		Vector rayDirection = ray.getDir();
-		Point3D rayHead = rayDirection.getHead();
-		double headX = rayHead.getX();
-		double headY = rayHead.getY();
-		double headZ = rayHead.getZ();
-
-		// P0 of the ray it always in the grid
-		Point3D rayP0 = ray.getP0();
-
-		// vector from the min corner of the grid to the P0 of the ray to get the
-		// distance between them for each axis
-		Vector p0SubMin = rayP0.subtract(new Point3D(minX, minY, minZ));
-		double p0SubMinX = p0SubMin.getHead().getX();
-		double p0SubMinY = p0SubMin.getHead().getY();
-		double p0SubMinZ = p0SubMin.getHead().getZ();
-		double deltaX, deltaY, deltaZ, tX, tY, tZ;
-		if (headX < 0) { // Negative direction on the x axis
-			deltaX = -voxelSizeX / headX;
-			tX = (Math.floor(p0SubMinX / voxelSizeX) * voxelSizeX - p0SubMinX) / headX;
-		} else { // Positive direction on the x axis
-			deltaX = voxelSizeX / headX;
-			tX = (Math.floor(p0SubMinX / voxelSizeX + 1) * voxelSizeX - p0SubMinX) / headX;
-
-		}
-		if (headY < 0) { // Negative direction on the y axis
-			deltaY = -voxelSizeY / headY;
-			tY = (Math.floor(p0SubMinY / voxelSizeY) * voxelSizeY - p0SubMinY) / headY;
-		} else { // Positive direction on the y axis
-			deltaY = voxelSizeY / headY;
-			tY = (Math.floor(p0SubMinY / voxelSizeY + 1) * voxelSizeY - p0SubMinY) / headY;
-
+	private int nextRayId(int[] mailbox) {
+		int rayId = ++mailbox[bodies.length];
+		if (rayId == Integer.MAX_VALUE) { // the ids wrapped around - reset the mailbox
+			Arrays.fill(mailbox, 0);
+			rayId = mailbox[bodies.length] = 1;
 		}
-		if (headZ < 0) { // Negative direction on the z axis
-			deltaZ = -voxelSizeZ / headZ;
-			tZ = (Math.floor(p0SubMinZ / voxelSizeZ) * voxelSizeZ - p0SubMinZ) / headZ;
-		} else { // Positive direction on the z axis
-			deltaZ = voxelSizeZ / headZ;
-			tZ = (Math.floor(p0SubMinZ / voxelSizeZ + 1) * voxelSizeZ - p0SubMinZ) / headZ;
-		}
-		return new double[] { deltaX, deltaY, deltaZ, tX, tY, tZ };
+		return rayId;
 	}
 
 	/**
-	 * inner class that implement voxel (piece of the volume)
+	 * inner class that holds the state of a ray that traverses the grid - it
+	 * collects the intersection points, keeps only the closest one, or only
+	 * multiplies the transparency of the geometries for a shadow ray
 	 */
-	private static class Voxel {
-		private int x;
-		private int y;
-		private int z;
+	private class Trace {
+		private final Ray ray;
+		private final Point3D p0;
+		private final boolean shadowRaysCase;
+		private final boolean closestOnly;
+		/**
+		 * only multiply the transparency of the geometries (without collecting the
+		 * intersection points)
+		 */
+		private final boolean occlusion;
+		private final double distance;
+		/**
+		 * transmittance below this blocks the ray in the occlusion mode (0 - only an
+		 * opaque geometry blocks it)
+		 */
+		private final double threshold;
+		private final int[] mailbox;
+		private final int rayId;
+		private List<GeoPoint> geoPoints = null;
+		private GeoPoint closestPoint = null;
+		private double closest = Double.POSITIVE_INFINITY; // distance of the closest intersection
+		private double ktr = 1.0;
 
 		/**
-		 * Constructor of Voxel initialize the indexes of the Voxel
+		 * Constructor of Trace - get a new id for the ray in the mailbox of the thread
 		 * 
-		 * @param indexX - x
-		 * @param indexY - y
-		 * @param indexZ - z
+		 * @param ray            - the Ray the traverse on the box
+		 * @param shadowRaysCase - boolean
+		 * @param closestOnly    - keep only the closest intersection point
+		 * @param occlusion      - only multiply the transparency of the geometries
+		 * @param distance       - the distance from light source
+		 * @param threshold      - transmittance below this blocks the ray in the
+		 *                       occlusion mode
 		 */
-		public Voxel(int indexX, int indexY, int indexZ) {
-			x = indexX;
-			y = indexY;
-			z = indexZ;
+		private Trace(Ray ray, boolean shadowRaysCase, boolean closestOnly, boolean occlusion, double distance,
+				double threshold) {
+			this.ray = ray;
+			this.shadowRaysCase = shadowRaysCase;
+			this.closestOnly = closestOnly;
+			this.occlusion = occlusion;
+			this.distance = distance;
+			this.threshold = threshold;
+			p0 = ray.getP0();
+			mailbox = mailboxes.get();
+			rayId = nextRayId(mailbox);
 		}
 
 		/**
-		 * This function get voxel and list of intersection points if at least one
-		 * intersection point inside voxel range we return true else return false
+		 * This function test a geometry with the ray once, even if it is in several
+		 * voxels (the ray id is stamped in the mailbox of the thread)
 		 * 
-		 * @param voxel         - current Voxel
-		 * @param intersections list of intersection points
-		 * @return True /false
+		 * @param body - index of the geometry
+		 * @return true if the ray is blocked and the traversal can stop
 		 */
-		private boolean isIntersectInVoxelRange(List<GeoPoint> intersections) {
-			for (GeoPoint geoPoint : intersections) {
-				if (convertPointToVoxel(geoPoint.point).equals(this))
+		private boolean test(int body) {
+			if (mailbox[body] == rayId)
+				return false; // already tested by the ray
+			mailbox[body] = rayId;
+			if (occlusion) {
+				ktr *= bodies[body].occlusion(ray, distance, threshold / ktr);
+				if (ktr == 0.0 || ktr < threshold) {
+					ktr = 0.0; // no need to look for more geometries
 					return true;
+				}
+				return false;
+			}
+			if (closestOnly) {
+				// only a closer point than the closest so far is relevant
+				GeoPoint gp = bodies[body].findClosestIntersection(ray, Math.min(distance, closest));
+				if (gp != null) {
+					double d = gp.point.distance(p0);
+					if (d < closest) {
+						closest = d;
+						closestPoint = gp;
+					}
+				}
+				return false;
+			}
+			List<GeoPoint> gPoints = bodies[body].findGeoIntersections(ray, distance);
+			if (gPoints != null) {
+				if (geoPoints == null)
+					geoPoints = new LinkedList<GeoPoint>();
+				geoPoints.addAll(gPoints);
+				if (!shadowRaysCase)
+					for (GeoPoint geoPoint : gPoints)
+						closest = Math.min(closest, geoPoint.point.distance(p0));
 			}
 			return false;
 		}
+	}
+
+	/**
+	 * This function calculate the distance along the ray between two crossings of
+	 * the voxels on an axis
+	 * 
+	 * @param voxelSize - size of a voxel on the axis
+	 * @param head      - the direction of the ray on the axis
+	 * @return the distance between the crossings
+	 */
+	private static double delta(double voxelSize, double head) {
+		return head < 0 ? -voxelSize / head : voxelSize / head;
+	}
+
+	/**
+	 * This function calculate the distance along the ray to its first crossing of
+	 * the voxels on an axis
+	 * 
+	 * @param offset    - the distance from the min corner of the grid to the P0 of
+	 *                  the ray on the axis
+	 * @param voxelSize - size of a voxel on the axis
+	 * @param head      - the direction of the ray on the axis
+	 * @return the distance to the first crossing
+	 */
+	private static double firstCrossing(double offset, double voxelSize, double head) {
+		return head < 0 ? (Math.floor(offset / voxelSize) * voxelSize - offset) / head // Negative direction
+				: (Math.floor(offset / voxelSize + 1) * voxelSize - offset) / head; // Positive direction
+	}
+
+	/**
+	 * inner class that implement a nested grid inside an overloaded voxel
+	 */
+	private static class SubGrid {
+		private final double minX, minY, minZ;
+		private final double sizeX, sizeY, sizeZ;
+		private final int density;
+		private final Intersectable[] bodies;
+		/**
+		 * offsets of the cells by the index x + y*density + z*density^2 into the
+		 * geometries of the cells
+		 */
+		private final int[] cellStart;
+		private final int[] cellBodies;
+
+		/**
+		 * Constructor of SubGrid map the geometries of the voxel into the cells
+		 * 
+		 * @param minX        - x of the minimum corner of the voxel
+		 * @param minY        - y of the minimum corner of the voxel
+		 * @param minZ        - z of the minimum corner of the voxel
+		 * @param voxelX      - size of the voxel on the x axis
+		 * @param voxelY      - size of the voxel on the y axis
+		 * @param voxelZ      - size of the voxel on the z axis
+		 * @param density     - number of cells on each axis
+		 * @param bodies      - all the geometries in the Scene
+		 * @param voxelBodies - the indexes of the geometries of the voxels
+		 * @param from        - the first geometry of the voxel in voxelBodies
+		 * @param to          - one after the last geometry of the voxel
+		 */
+		private SubGrid(double minX, double minY, double minZ, double voxelX, double voxelY, double voxelZ,
+				int density, Intersectable[] bodies, int[] voxelBodies, int from, int to) {
+			this.minX = minX;
+			this.minY = minY;
+			this.minZ = minZ;
+			this.density = density;
+			this.bodies = bodies;
+			sizeX = voxelX / density;
+			sizeY = voxelY / density;
+			sizeZ = voxelZ / density;
+			int cells = density * density * density;
+			cellStart = new int[cells + 1];
+			int[] range = new int[6];
+			int references = 0;
+			for (int i = from; i < to; ++i) {
+				cellRange(bodies[voxelBodies[i]], range);
+				for (int x = range[0]; x <= range[3]; x++)
+					for (int y = range[1]; y <= range[4]; y++)
+						for (int z = range[2]; z <= range[5]; z++) {
+							++cellStart[x + y * density + z * density * density];
+							++references;
+						}
+			}
+			for (int i = 1; i < cells; ++i) // each offset is the end of its cell
+				cellStart[i] += cellStart[i - 1];
+			cellStart[cells] = references;
+			cellBodies = new int[references];
+			for (int i = to - 1; i >= from; --i) {
+				cellRange(bodies[voxelBodies[i]], range);
+				for (int x = range[0]; x <= range[3]; x++)
+					for (int y = range[1]; y <= range[4]; y++)
+						for (int z = range[2]; z <= range[5]; z++)
+							cellBodies[--cellStart[x + y * density + z * density * density]] = voxelBodies[i];
+			}
+		}
 
 		/**
-		 * Function to find for the sent point the appropriate Voxel
+		 * Function to find the range of cells that the geometry is in them
 		 * 
-		 * @param point - The point on the geometry
-		 * @return Returns the voxel that the point inside it
+		 * @param geometry - the geometry
+		 * @param range    - array for the minimum x y z and the maximum x y z indexes
 		 */
-		private static Voxel convertPointToVoxel(Point3D point) {
-			int x = (int) ((point.getX() - minX) / voxelSizeX);
-			int y = (int) ((point.getY() - minY) / voxelSizeY);
-			int z = (int) ((point.getZ() - minZ) / voxelSizeZ);
-			return new Voxel(x, y, z);
+		private void cellRange(Intersectable geometry, int[] range) {
+			var min = geometry.getMinBoundary();
+			var max = geometry.getMaxBoundary();
+			range[0] = cellIndex(min.getX(), minX, sizeX);
+			range[1] = cellIndex(min.getY(), minY, sizeY);
+			range[2] = cellIndex(min.getZ(), minZ, sizeZ);
+			range[3] = cellIndex(max.getX(), minX, sizeX);
+			range[4] = cellIndex(max.getY(), minY, sizeY);
+			range[5] = cellIndex(max.getZ(), minZ, sizeZ);
 		}
 
-		@Override
-		public String toString() {
-			return "Voxel{" + x + "," + y + "," + z + '}' + "\n";
+		/**
+		 * Function to find the cell of a coordinate on an axis (clamped into the grid)
+		 * 
+		 * @param coordinate - the coordinate
+		 * @param min        - the minimum of the grid on the axis
+		 * @param size       - size of a cell on the axis
+		 * @return the index of the cell
+		 */
+		private int cellIndex(double coordinate, double min, double size) {
+			int index = (int) Math.floor((coordinate - min) / size);
+			return index < 0 ? 0 : index >= density ? density - 1 : index;
 		}
 
-		@Override
-		public int hashCode() {
-			return Objects.hash(x, y, z);
+		/**
+		 * This function traverse over the cells in ray direction with 3D-DDA in the
+		 * range of the ray inside the voxel, and stops at the first cell that the
+		 * closest intersection found so far is inside it (not in shadow rays case)
+		 * 
+		 * @param trace - the state of the ray
+		 * @param tIn   - the distance where the ray enters the voxel
+		 * @param tOut  - the distance where the ray leaves the voxel
+		 */
+		private void traverse(Trace trace, double tIn, double tOut) {
+			Point3D p0 = trace.p0;
+			Vector head = trace.ray.getDir();
+			double dX = head.getX(), dY = head.getY(), dZ = head.getZ();
+			int indexX = cellIndex(p0.getX() + dX * tIn, minX, sizeX);
+			int indexY = cellIndex(p0.getY() + dY * tIn, minY, sizeY);
+			int indexZ = cellIndex(p0.getZ() + dZ * tIn, minZ, sizeZ);
+			int stepX = dX > 0 ? 1 : -1, stepY = dY > 0 ? 1 : -1, stepZ = dZ > 0 ? 1 : -1;
+			double deltaX = Math.abs(sizeX / dX), deltaY = Math.abs(sizeY / dY), deltaZ = Math.abs(sizeZ / dZ);
+			double tX = nextCrossing(p0.getX(), dX, minX, sizeX, indexX);
+			double tY = nextCrossing(p0.getY(), dY, minY, sizeY, indexY);
+			double tZ = nextCrossing(p0.getZ(), dZ, minZ, sizeZ, indexZ);
+			while (true) {
+				int cell = indexX + indexY * density + indexZ * density * density;
+				for (int i = cellStart[cell]; i < cellStart[cell + 1]; ++i)
+					if (trace.test(cellBodies[i]))
+						return; // the ray is blocked
+				int axis = tX < tY ? (tX < tZ ? 0 : 2) : (tY < tZ ? 1 : 2);
+				double tNext = axis == 0 ? tX : axis == 1 ? tY : tZ;
+				// an intersection before the cell exit is closer than all the next cells
+				if (trace.closest <= Math.min(tNext, tOut) || tNext >= tOut)
+					return;
+				if (axis == 0) {
+					indexX += stepX;
+					if (indexX < 0 || indexX >= density)
+						return;
+					tX += deltaX;
+				} else if (axis == 1) {
+					indexY += stepY;
+					if (indexY < 0 || indexY >= density)
+						return;
+					tY += deltaY;
+				} else {
+					indexZ += stepZ;
+					if (indexZ < 0 || indexZ >= density)
+						return;
+					tZ += deltaZ;
+				}
+			}
 		}
 
-		@Override
-		public boolean equals(Object obj) {
-			if (this == obj)
-				return true;
-			if (obj == null)
-				return false;
-			if (!(obj instanceof Voxel))
-				return false;
-			Voxel other = (Voxel) obj;
-			return x == other.x && y == other.y && z == other.z;
+		/**
+		 * Function to find the distance along the ray where it leaves its cell on an
+		 * axis
+		 * 
+		 * @param origin - the coordinate of the P0 of the ray
+		 * @param head   - the direction of the ray on the axis
+		 * @param min    - the minimum of the grid on the axis
+		 * @param size   - size of a cell on the axis
+		 * @param index  - the index of the cell of the ray
+		 * @return the distance of the crossing (infinity when the ray is parallel to
+		 *         the axis)
+		 */
+		private static double nextCrossing(double origin, double head, double min, double size, int index) {
+			if (head > 0)
+				return (min + (index + 1) * size - origin) / head;
+			if (head < 0)
+				return (min + index * size - origin) / head;
+			return Double.POSITIVE_INFINITY;
 		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,227 @@
+package unittests;
+
+import static org.junit.Assert.*;
+import static unittests.RenderFixture.*;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import elements.PointLight;
+import geometries.BVH;
+import geometries.Plane;
+import geometries.Sphere;
+import primitives.*;
+import renderer.RayTracerBVH;
+import renderer.RayTracerBox;
+import renderer.RayTracerWavefront;
+import renderer.Render;
+import scene.Scene;
+
+/**
+ * Testing the rendering of packets of rays - each packet must render the same
+ * image as the rays one by one
+ *
+ * @author David and Matan
+ */
+public class PacketTests {
+
+	/**
+	 * add a plane under the spheres of the scene
+	 *
+	 * @param scene    - the scene
+	 * @param material - the material of the plane
+	 */
+	private void addPlane(Scene scene, Material material) {
+		scene.geometries.add(new Plane(new Point3D(0, 0, -110), new Vector(0.1, 0.1, 1)) //
+				.setEmission(new Color(java.awt.Color.GRAY)) //
+				.setMaterial(material));
+	}
+
+	/**
+	 * Test method for {@link renderer.Render#setPacketSize(int)}.
+	 */
+	@Test
+	public void testPackets() {
+		Scene scene = buildScene(5);
+		addPlane(scene, new Material().setKd(0.5).setKs(0.5).setShininess(30));
+		var tracer = new RayTracerBVH(scene).setBVH();
+		int[] expected = render(scene, tracer);
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Blocks of 4x4 and 8x8 pixels traced together
+		assertArrayEquals("Wrong image with packets", expected, render(scene, tracer, null, 4));
+		assertArrayEquals("Wrong image with packets", expected, render(scene, tracer, null, 8));
+
+		// TC02: Packets on several threads
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			assertArrayEquals("Wrong image with packets", expected, render(scene, tracer, pool, 8));
+		} finally {
+			pool.shutdown();
+		}
+
+		// TC03: Packets with a tracer that traces ray by ray
+		assertArrayEquals("Wrong image with packets", expected,
+				render(scene, new RayTracerBox(scene).setBox(3), null, 8));
+
+		// =============== Boundary Values Tests ==================
+
+		// TC04: Blocks cut by the edges of the image
+		assertArrayEquals("Wrong image with packets", expected, render(scene, tracer, null, 7));
+	}
+
+	/**
+	 * Test method for {@link renderer.Render#setPacketBatch(int)}.
+	 */
+	@Test
+	public void testPacketBatch() {
+		Scene scene = buildScene(5);
+		addPlane(scene, new Material().setKd(0.5).setKs(0.5).setShininess(30));
+		var tracer = new RayTracerBVH(scene).setBVH();
+		int[] expected = render(scene, tracer);
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Batches of 4 blocks of 8x8 pixels traced together
+		assertArrayEquals("Wrong image with batches", expected, render(scene, tracer, null, 8, 4));
+
+		// TC02: Batches on several threads
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			assertArrayEquals("Wrong image with batches", expected, render(scene, tracer, pool, 8, 4));
+		} finally {
+			pool.shutdown();
+		}
+
+		// =============== Boundary Values Tests ==================
+
+		// TC03: The last batch has less blocks (225 blocks cut by the edges of the
+		// image in batches of 10)
+		assertArrayEquals("Wrong image with batches", expected, render(scene, tracer, null, 7, 10));
+
+		// TC04: Batches without packets - each pixel is traced alone
+		assertArrayEquals("Wrong image with batches", expected, render(scene, tracer, null, 1, 4));
+	}
+
+	/**
+	 * Test method for {@link renderer.Render#setDebugPrint()} with packets - the
+	 * progress of an image of less than 100 blocks must reach 100%.
+	 */
+	@Test(timeout = 10000)
+	public void testPacketsProgress() {
+		Scene scene = buildScene(8);
+		var writer = new PixelsWriter(10, 10);
+		var render = new Render() //
+				.setCamera(buildCamera(scene)) //
+				.setImageWriter(writer) //
+				.setRayTracer(new RayTracerBVH(scene).setBVH()) //
+				.setPacketSize(4) //
+				.setMultithreading(2) //
+				.setDebugPrint();
+
+		// =============== Boundary Values Tests ==================
+
+		// TC01: 3x3 blocks on several threads with the debug print
+		render.renderImage();
+		assertNotEquals("The image is not rendered", 0, writer.getPixels()[0]);
+	}
+
+	/**
+	 * Test method for {@link renderer.RayTracerBasic#setBatching(boolean)}.
+	 */
+	@Test
+	public void testBatching() {
+		Scene scene = buildScene(6);
+		var random = new Random(6);
+		for (var body : scene.geometries.getBudies())
+			((Sphere) body).setMaterial(new Material().setKd(0.4).setKs(0.4).setShininess(30)
+					.setKr(random.nextDouble() * 0.5).setKt(random.nextDouble() * 0.5));
+		addPlane(scene, new Material().setKd(0.5).setKs(0.5).setShininess(30).setKr(0.5));
+		scene.lights.add(new PointLight(new Color(300, 300, 300), new Point3D(100, 0, 50)));
+		int[] expected = render(scene, new RayTracerBVH(scene).setBVH());
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Secondary rays of the packets traced in sorted batches
+		var tracer = new RayTracerBVH(scene).setBVH();
+		tracer.setBatching(true);
+		assertArrayEquals("Wrong image with batches", expected, render(scene, tracer, null, 8));
+
+		// TC02: Batches with another tracer on several threads
+		var box = new RayTracerBox(scene).setBox(3);
+		int[] expectedBox = render(scene, box);
+		box.setBatching(true);
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			assertArrayEquals("Wrong image with batches", expectedBox, render(scene, box, pool, 4));
+		} finally {
+			pool.shutdown();
+		}
+
+		// =============== Boundary Values Tests ==================
+
+		// TC03: Batching without packets - each pixel is traced alone
+		assertArrayEquals("Wrong image with batches", expected, render(scene, tracer));
+	}
+
+	/**
+	 * Test method for {@link renderer.RayTracerWavefront#traceRays(Ray[])}.
+	 */
+	@Test
+	public void testWavefront() {
+		Scene scene = buildScene(7);
+		var random = new Random(7);
+		for (var body : scene.geometries.getBudies())
+			((Sphere) body).setMaterial(new Material().setKd(0.4).setKs(0.4).setShininess(30)
+					.setKr(random.nextDouble() * 0.5).setKt(random.nextDouble() * 0.5));
+		addPlane(scene, new Material().setKd(0.5).setKs(0.5).setShininess(30).setKr(0.5));
+		scene.lights.add(new PointLight(new Color(300, 300, 300), new Point3D(100, 0, 50)));
+		var bvh = new BVH(scene.geometries);
+		int[] expected = render(scene, new RayTracerBVH(scene).setBVH());
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Stages over packets of 8x8 pixels give the same image (up to the
+		// rounding of the colors summed in another order)
+		var wavefront = new RayTracerWavefront(scene).setAccelerator(bvh);
+		assertSameImage(expected, render(scene, wavefront, null, 8));
+		for (var stage : RayTracerWavefront.Stage.values())
+			assertTrue("Stage time is not measured", wavefront.getStageTime(stage) > 0);
+
+		// TC02: Kernels on several threads
+		assertSameImage(expected, render(scene, new RayTracerWavefront(scene).setAccelerator(bvh).setKernelThreads(3),
+				null, 32));
+
+		// TC03: Batches of packets on several rendering threads share the threads of
+		// the kernels
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			assertSameImage(expected, render(scene,
+					new RayTracerWavefront(scene).setAccelerator(bvh).setKernelThreads(3), pool, 8, 16));
+		} finally {
+			pool.shutdown();
+		}
+
+		// =============== Boundary Values Tests ==================
+
+		// TC04: Single rays without an accelerator
+		assertSameImage(expected, render(scene, new RayTracerWavefront(scene)));
+	}
+
+	/**
+	 * compare images up to the rounding of the colors
+	 *
+	 * @param expected - the expected pixels
+	 * @param pixels   - the pixels
+	 */
+	private void assertSameImage(int[] expected, int[] pixels) {
+		assertEquals("Wrong image size", expected.length, pixels.length);
+		for (int i = 0; i < expected.length; ++i)
+			for (int shift = 0; shift < 24; shift += 8)
+				assertEquals("Wrong pixel " + i, expected[i] >> shift & 0xFF, pixels[i] >> shift & 0xFF, 1);
+	}
+}
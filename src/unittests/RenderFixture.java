@@ -0,0 +1,166 @@
+package unittests;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import elements.AmbientLight;
+import elements.Camera;
+import elements.PointLight;
+import geometries.Sphere;
+import primitives.*;
+import renderer.ImageWriter;
+import renderer.RayTracerBase;
+import renderer.Render;
+import scene.Scene;
+
+/**
+ * The scenes and the renders in memory of the tests that compare the images of
+ * several ray tracers and renders
+ *
+ * @author David and Matan
+ */
+public final class RenderFixture {
+
+	/**
+	 * Image writer that keeps the pixels in memory for comparing renders
+	 */
+	public static class PixelsWriter extends ImageWriter {
+		private final int[] pixels;
+
+		/**
+		 * Ctor
+		 *
+		 * @param nX - amount of pixels by Width
+		 * @param nY - amount of pixels by height
+		 */
+		public PixelsWriter(int nX, int nY) {
+			super("renderFixture", nX, nY);
+			pixels = new int[nX * nY];
+		}
+
+		@Override
+		public void writePixel(int xIndex, int yIndex, Color color) {
+			pixels[xIndex + yIndex * getNx()] = color.getColor().getRGB();
+		}
+
+		/**
+		 * Getter
+		 *
+		 * @return the pixels by rows
+		 */
+		public int[] getPixels() {
+			return pixels;
+		}
+	}
+
+	/**
+	 * Empty private ctor to hide the public one
+	 */
+	private RenderFixture() {
+	}
+
+	/**
+	 * build a scene of random spheres in a cube of 100 from the origin
+	 *
+	 * @param seed - random seed of the spheres
+	 * @return the scene
+	 */
+	public static Scene buildScene(long seed) {
+		return buildScene(seed, 0, 100);
+	}
+
+	/**
+	 * build a scene of random spheres
+	 *
+	 * @param seed   - random seed of the spheres
+	 * @param offset - position of the spheres cube
+	 * @param size   - size of the spheres cube
+	 * @return the scene
+	 */
+	public static Scene buildScene(long seed, double offset, double size) {
+		var random = new Random(seed);
+		var scene = new Scene("Render scene " + seed);
+		scene.setAmbientLight(new AmbientLight(new Color(java.awt.Color.WHITE), 0.1));
+		for (int i = 0; i < 200; ++i)
+			scene.geometries.add(new Sphere(new Point3D(offset + random.nextDouble() * size,
+					offset + random.nextDouble() * size, -offset - random.nextDouble() * size), size / 30) //
+					.setEmission(new Color(random.nextInt(200), random.nextInt(200), random.nextInt(200))) //
+					.setMaterial(new Material().setKd(0.5).setKs(0.5).setShininess(30)));
+		scene.lights.add(new PointLight(new Color(500, 500, 500), new Point3D(offset, offset, 0)));
+		return scene;
+	}
+
+	/**
+	 * build a camera above the middle of the scene
+	 *
+	 * @param scene - the scene
+	 * @return the camera
+	 */
+	public static Camera buildCamera(Scene scene) {
+		var min = scene.geometries.getBounded().getMinBoundary();
+		var max = scene.geometries.getBounded().getMaxBoundary();
+		return new Camera(new Point3D((min.getX() + max.getX()) / 2, (min.getY() + max.getY()) / 2, 1000),
+				new Vector(0, 0, -1), new Vector(0, 1, 0)).setViewPlaneDistance(1000).setViewPlaneSize(200, 200);
+	}
+
+	/**
+	 * render a scene ray by ray
+	 *
+	 * @param scene  - the scene
+	 * @param tracer - the ray tracer of the scene
+	 * @return the pixels
+	 */
+	public static int[] render(Scene scene, RayTracerBase tracer) {
+		return render(scene, tracer, null);
+	}
+
+	/**
+	 * render a scene ray by ray
+	 *
+	 * @param scene    - the scene
+	 * @param tracer   - the ray tracer of the scene
+	 * @param executor - shared pool or null for rendering in the calling thread
+	 * @return the pixels
+	 */
+	public static int[] render(Scene scene, RayTracerBase tracer, ExecutorService executor) {
+		return render(scene, tracer, executor, 1);
+	}
+
+	/**
+	 * render a scene with packets of rays
+	 *
+	 * @param scene      - the scene
+	 * @param tracer     - the ray tracer of the scene
+	 * @param executor   - shared pool or null for rendering in the calling thread
+	 * @param packetSize - pixels on each side of a block traced together
+	 * @return the pixels
+	 */
+	public static int[] render(Scene scene, RayTracerBase tracer, ExecutorService executor, int packetSize) {
+		return render(scene, tracer, executor, packetSize, 1);
+	}
+
+	/**
+	 * render a scene with batches of packets of rays
+	 *
+	 * @param scene       - the scene
+	 * @param tracer      - the ray tracer of the scene
+	 * @param executor    - shared pool or null for rendering in the calling thread
+	 * @param packetSize  - pixels on each side of a block traced together
+	 * @param packetBatch - blocks traced together in one call of the tracer
+	 * @return the pixels
+	 */
+	public static int[] render(Scene scene, RayTracerBase tracer, ExecutorService executor, int packetSize,
+			int packetBatch) {
+		var writer = new PixelsWriter(100, 100);
+		var render = new Render() //
+				.setCamera(buildCamera(scene)) //
+				.setImageWriter(writer) //
+				.setRayTracer(tracer) //
+				.setPacketSize(packetSize) //
+				.setPacketBatch(packetBatch);
+		if (executor != null)
+			render.setExecutor(executor).setMultithreading(2);
+		render.renderImage();
+		return writer.getPixels();
+	}
+}
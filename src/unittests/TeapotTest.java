@@ -1572,6 +1572,89 @@ public class TeapotTest {
 		render.writeToImage();
 	}
 	
+	/**
+	 * Produce the same scene with the box grid built on 3 threads, for comparing
+	 * with the box built on a single thread
+	 */
+	@Test
+	public void teapotWithParallelBoxAndMT() {
+		ImageWriter imageWriter = new ImageWriter("teapotWithParallelBoxAndMT", 800, 800);
+		Render render = new Render() //
+				.setCamera(camera) //
+				.setImageWriter(imageWriter) //
+				.setRayTracer(new RayTracerBox(scene).setBox(4, 3)) //
+				.setMultithreading(3).setDebugPrint();
+		render.renderImage();
+		render.printGrid(50, new Color(java.awt.Color.YELLOW));
+		render.writeToImage();
+	}
+
+	/**
+	 * Produce the same scene with the bounding volume hierarchy for comparing with
+	 * the box
+	 */
+	@Test
+	public void teapotWithBVHAndMT() {
+		ImageWriter imageWriter = new ImageWriter("teapotWithBVHAndMT", 800, 800);
+		Render render = new Render() //
+				.setCamera(camera) //
+				.setImageWriter(imageWriter) //
+				.setRayTracer(new RayTracerBVH(scene).setBVH()) //
+				.setMultithreading(3).setDebugPrint();
+		render.renderImage();
+		render.printGrid(50, new Color(java.awt.Color.YELLOW));
+		render.writeToImage();
+	}
+
+	/**
+	 * Produce the same scene with the bounding volume hierarchy tracing blocks of
+	 * 8x8 pixels together, for comparing with tracing each pixel alone
+	 */
+	@Test
+	public void teapotWithBVHPacketsAndMT() {
+		ImageWriter imageWriter = new ImageWriter("teapotWithBVHPacketsAndMT", 800, 800);
+		Render render = new Render() //
+				.setCamera(camera) //
+				.setImageWriter(imageWriter) //
+				.setRayTracer(new RayTracerBVH(scene).setBVH()) //
+				.setMultithreading(3).setPacketSize(8).setDebugPrint();
+		render.renderImage();
+		render.printGrid(50, new Color(java.awt.Color.YELLOW));
+		render.writeToImage();
+	}
+
+	/**
+	 * Produce the same scene with the kd-tree for comparing with the box
+	 */
+	@Test
+	public void teapotWithKdTreeAndMT() {
+		ImageWriter imageWriter = new ImageWriter("teapotWithKdTreeAndMT", 800, 800);
+		Render render = new Render() //
+				.setCamera(camera) //
+				.setImageWriter(imageWriter) //
+				.setRayTracer(new RayTracerKdTree(scene).setKdTree()) //
+				.setMultithreading(3).setDebugPrint();
+		render.renderImage();
+		render.printGrid(50, new Color(java.awt.Color.YELLOW));
+		render.writeToImage();
+	}
+
+	/**
+	 * Produce the same scene with the sparse octree for comparing with the box
+	 */
+	@Test
+	public void teapotWithOctreeAndMT() {
+		ImageWriter imageWriter = new ImageWriter("teapotWithOctreeAndMT", 800, 800);
+		Render render = new Render() //
+				.setCamera(camera) //
+				.setImageWriter(imageWriter) //
+				.setRayTracer(new RayTracerOctree(scene).setOctree(8)) //
+				.setMultithreading(3).setDebugPrint();
+		render.renderImage();
+		render.printGrid(50, new Color(java.awt.Color.YELLOW));
+		render.writeToImage();
+	}
+
 	@Test
 	public void teapotWithoutBox() {
 		ImageWriter imageWriter = new ImageWriter("teapotWithoutBox", 800, 800);
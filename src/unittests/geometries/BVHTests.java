@@ -0,0 +1,307 @@
+package unittests.geometries;
+
+import static org.junit.Assert.*;
+import java.util.Random;
+import org.junit.Test;
+import geometries.BVH;
+import geometries.Geometries;
+import geometries.Sphere;
+import geometries.Triangle;
+import primitives.Material;
+import primitives.Point3D;
+import primitives.Ray;
+import primitives.Vector;
+
+/**
+ * Testing BVH
+ *
+ * @author David and Matan
+ */
+public class BVHTests {
+
+	/**
+	 * build a row of small spheres along the x axis with a triangle behind them
+	 *
+	 * @return the geometries
+	 */
+	private Geometries buildGeometries() {
+		var geometries = new Geometries();
+		for (int i = 0; i < 20; ++i)
+			geometries.add(new Sphere(new Point3D(i * 3, 0, 0), 1));
+		geometries.add(new Triangle(new Point3D(-5, -5, -10), new Point3D(70, -5, -10), new Point3D(-5, 5, -10)));
+		return geometries;
+	}
+
+	/**
+	 * Test method for {@link geometries.BVH#findClosestIntersection(Ray)}.
+	 */
+	@Test
+	public void testFindClosestIntersection() {
+		var geometries = buildGeometries();
+		var bvh = new BVH(geometries);
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Ray through one of the spheres - the same as without the hierarchy
+		Ray ray = new Ray(new Point3D(30, 0, 10), new Vector(0, 0, -1));
+		assertEquals("Wrong closest point", ray.findClosestGeoPoint(geometries.findGeoIntersections(ray)).point,
+				bvh.findClosestIntersection(ray).point);
+		assertEquals("Wrong closest point", new Point3D(30, 0, 1), bvh.findClosestIntersection(ray).point);
+
+		// TC02: Ray between the spheres hits only the triangle
+		ray = new Ray(new Point3D(1.5, 0, 10), new Vector(0, 0, -1));
+		assertEquals("Wrong closest point", new Point3D(1.5, 0, -10), bvh.findClosestIntersection(ray).point);
+
+		// TC03: Ray misses everything
+		ray = new Ray(new Point3D(100, 100, 10), new Vector(0, 0, -1));
+		assertNull("There is no intersection", bvh.findClosestIntersection(ray));
+
+		// TC04: Ray along the row of spheres from outside
+		ray = new Ray(new Point3D(-10, 0, 0), new Vector(1, 0, 0));
+		assertEquals("Wrong closest point", new Point3D(-1, 0, 0), bvh.findClosestIntersection(ray).point);
+	}
+
+	/**
+	 * Test method for {@link geometries.BVH#findGeoIntersections(Ray, double)}.
+	 */
+	@Test
+	public void testFindGeoIntersections() {
+		var geometries = buildGeometries();
+		var bvh = new BVH(geometries);
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Ray along the row of spheres finds all their points
+		Ray ray = new Ray(new Point3D(-10, 0, 0), new Vector(1, 0, 0));
+		assertEquals("Wrong number of points", 40, bvh.findGeoIntersections(ray).size());
+
+		// TC02: Limited distance finds only the first spheres
+		assertEquals("Wrong number of points", 3, bvh.findGeoIntersections(ray, 13).size());
+
+		// =============== Boundary Values Tests ==================
+
+		// TC03: Empty hierarchy
+		assertNull("Empty hierarchy", new BVH(new Geometries()).findGeoIntersections(ray));
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.BVH#BVH(Geometries, geometries.BVH.Construction)}.
+	 */
+	@Test
+	public void testMortonConstruction() {
+		var random = new Random(7);
+		var geometries = new Geometries();
+		for (int i = 0; i < 2000; ++i)
+			geometries.add(new Sphere(
+					new Point3D(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 100), 0.5));
+		var sah = new BVH(geometries);
+		var morton = new BVH(geometries, BVH.Construction.MORTON);
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Both hierarchies find the same closest points and the same number of
+		// points as the bodies themselves
+		for (int i = 0; i < 200; ++i) {
+			Ray ray = new Ray(new Point3D(-10, random.nextDouble() * 100, random.nextDouble() * 100),
+					new Vector(1, random.nextDouble() - 0.5, random.nextDouble() - 0.5));
+			var expected = ray.findClosestGeoPoint(geometries.findGeoIntersections(ray));
+			var found = morton.findClosestIntersection(ray);
+			assertEquals("Wrong closest point", expected == null ? null : expected.point,
+					found == null ? null : found.point);
+			found = sah.findClosestIntersection(ray);
+			assertEquals("Wrong closest point", expected == null ? null : expected.point,
+					found == null ? null : found.point);
+			var all = geometries.findGeoIntersections(ray);
+			var mortonAll = morton.findGeoIntersections(ray);
+			assertEquals("Wrong number of points", all == null ? 0 : all.size(),
+					mortonAll == null ? 0 : mortonAll.size());
+		}
+	}
+
+	/**
+	 * Test method for {@link geometries.BVH#occlusion(Ray, double, double)}.
+	 */
+	@Test
+	public void testOcclusion() {
+		var geometries = buildGeometries();
+		for (var body : geometries.getBudies())
+			if (body instanceof Sphere)
+				((Sphere) body).setMaterial(new Material().setKt(0.9));
+		var bVH = new BVH(geometries);
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Ray along the row of transparent spheres
+		Ray ray = new Ray(new Point3D(-10, 0, 0), new Vector(1, 0, 0));
+		assertEquals("Wrong transmittance", Math.pow(0.9, 40), bVH.occlusion(ray, 100, 0.001), 1e-10);
+
+		// TC02: Limited distance passes only the first spheres
+		assertEquals("Wrong transmittance", Math.pow(0.9, 3), bVH.occlusion(ray, 13, 0.001), 1e-10);
+
+		// TC03: Ray through a sphere is blocked by the opaque triangle
+		ray = new Ray(new Point3D(30, 0, 10), new Vector(0, 0, -1));
+		assertEquals("Ray must be blocked", 0.0, bVH.occlusion(ray, 100, 0.001), 0);
+
+		// =============== Boundary Values Tests ==================
+
+		// TC04: Transmittance falls below the threshold
+		ray = new Ray(new Point3D(-10, 0, 0), new Vector(1, 0, 0));
+		assertEquals("Ray must be blocked", 0.0, bVH.occlusion(ray, 100, 0.1), 0);
+
+		// TC05: Ray misses everything
+		ray = new Ray(new Point3D(100, 100, 10), new Vector(0, 0, -1));
+		assertEquals("There is no intersection", 1.0, bVH.occlusion(ray, 100, 0.001), 0);
+	}
+
+	/**
+	 * Test method for {@link geometries.BVH#refit()}.
+	 */
+	@Test
+	public void testRefit() {
+		var geometries = buildGeometries();
+		var bvh = new BVH(geometries);
+		assertEquals("Wrong degradation at the build", 1, bvh.degradation(), 1e-10);
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: A moved sphere is found at its new place
+		var first = (Sphere) geometries.getBudies().get(0);
+		first.setCenter(new Point3D(0, 10, 0));
+		bvh.refit();
+		Ray ray = new Ray(new Point3D(0, 10, 10), new Vector(0, 0, -1));
+		assertEquals("Wrong closest point", new Point3D(0, 10, 1), bvh.findClosestIntersection(ray).point);
+		assertEquals("Wrong boundary", new Point3D(-5, -5, -10), bvh.getMinBoundary());
+		assertEquals("Wrong boundary", new Point3D(70, 11, 1), bvh.getMaxBoundary());
+
+		// TC02: Random moves - the same closest points as without the hierarchy
+		var random = new Random(15);
+		for (var body : geometries.getBudies())
+			if (body instanceof Sphere)
+				((Sphere) body).setCenter(new Point3D(random.nextDouble() * 60, random.nextDouble() * 60 - 30, 0));
+		bvh.refit();
+		for (int i = 0; i < 200; ++i) {
+			ray = new Ray(new Point3D(random.nextDouble() * 60, random.nextDouble() * 60 - 30, 10),
+					new Vector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, -1));
+			var expected = geometries.findClosestIntersection(ray);
+			var found = bvh.findClosestIntersection(ray);
+			assertEquals("Wrong closest point", expected == null ? null : expected.point,
+					found == null ? null : found.point);
+		}
+
+		// TC03: Scattered bodies degrade the tree
+		assertTrue("Refitted tree must be worse than a new build", bvh.degradation() > 1);
+		assertTrue("A rebuild must be cheaper", new BVH(geometries).sahCost() < bvh.sahCost());
+
+		// =============== Boundary Values Tests ==================
+
+		// TC04: Refit of an empty hierarchy
+		var empty = new BVH(new Geometries());
+		assertSame("Wrong refit", empty, empty.refit());
+		assertEquals("Wrong cost", 0, empty.sahCost(), 0);
+	}
+
+	/**
+	 * Test method for {@link geometries.BVH#setWide(boolean)}.
+	 */
+	@Test
+	public void testWide() {
+		var random = new Random(17);
+		var geometries = new Geometries();
+		for (int i = 0; i < 500; ++i)
+			geometries.add(new Sphere(
+					new Point3D(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 100), 1)
+					.setMaterial(new Material().setKt(0.9)));
+		for (var construction : BVH.Construction.values()) {
+			var binary = new BVH(geometries, construction);
+			var wide = new BVH(geometries, construction).setWide(true);
+
+			// ============ Equivalence Partitions Tests ==============
+
+			// TC01: Random rays find the same points in both layouts
+			for (int i = 0; i < 300; ++i) {
+				Ray ray = new Ray(new Point3D(-10, random.nextDouble() * 100, random.nextDouble() * 100),
+						new Vector(1, random.nextDouble() - 0.5, random.nextDouble() - 0.5));
+				var expected = binary.findClosestIntersection(ray);
+				var found = wide.findClosestIntersection(ray);
+				assertEquals("Wrong closest point", expected == null ? null : expected.point,
+						found == null ? null : found.point);
+				var all = binary.findGeoIntersections(ray);
+				var wideAll = wide.findGeoIntersections(ray);
+				assertEquals("Wrong number of points", all == null ? 0 : all.size(),
+						wideAll == null ? 0 : wideAll.size());
+				assertEquals("Wrong transmittance", binary.occlusion(ray, 50, 0.001), wide.occlusion(ray, 50, 0.001),
+						1e-10);
+			}
+		}
+
+		// =============== Boundary Values Tests ==================
+
+		// TC02: Single body in the hierarchy
+		var single = new BVH(new Geometries(new Sphere(new Point3D(0, 0, 0), 1))).setWide(true);
+		Ray ray = new Ray(new Point3D(0, 0, 10), new Vector(0, 0, -1));
+		assertEquals("Wrong closest point", new Point3D(0, 0, 1), single.findClosestIntersection(ray).point);
+
+		// TC03: The wide layout follows a refit
+		var moved = buildGeometries();
+		var refitted = new BVH(moved).setWide(true);
+		((Sphere) moved.getBudies().get(0)).setCenter(new Point3D(0, 10, 0));
+		refitted.refit();
+		ray = new Ray(new Point3D(0, 10, 10), new Vector(0, 0, -1));
+		assertEquals("Wrong closest point", new Point3D(0, 10, 1), refitted.findClosestIntersection(ray).point);
+	}
+
+	/**
+	 * Test method for {@link geometries.BVH#findClosestIntersections(Ray[])}.
+	 */
+	@Test
+	public void testFindClosestIntersections() {
+		var random = new Random(19);
+		var geometries = new Geometries();
+		for (int i = 0; i < 500; ++i)
+			geometries.add(new Sphere(
+					new Point3D(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 100), 2));
+		var bvh = new BVH(geometries);
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Packets of rays from a common head find the same points as each ray
+		// alone
+		Point3D head = new Point3D(50, 50, 200);
+		for (int packet = 0; packet < 50; ++packet) {
+			double x = random.nextDouble() * 100 - 50, y = random.nextDouble() * 100 - 50;
+			Ray[] rays = new Ray[16];
+			for (int i = 0; i < 16; ++i)
+				rays[i] = new Ray(head, new Vector(x + i % 4, y + i / 4, -200));
+			var found = bvh.findClosestIntersections(rays);
+			for (int i = 0; i < 16; ++i) {
+				var expected = bvh.findClosestIntersection(rays[i]);
+				assertEquals("Wrong closest point", expected == null ? null : expected.point,
+						found[i] == null ? null : found[i].point);
+			}
+		}
+
+		// TC02: Packet of rays from different heads toward both sides
+		Ray[] rays = { new Ray(new Point3D(-10, 50, 50), new Vector(1, 0, 0)),
+				new Ray(new Point3D(110, 50, 50), new Vector(-1, 0, 0)),
+				new Ray(new Point3D(500, 500, 500), new Vector(0, 0, 1)) };
+		var found = bvh.findClosestIntersections(rays);
+		for (int i = 0; i < rays.length; ++i) {
+			var expected = bvh.findClosestIntersection(rays[i]);
+			assertEquals("Wrong closest point", expected == null ? null : expected.point,
+					found[i] == null ? null : found[i].point);
+		}
+
+		// =============== Boundary Values Tests ==================
+
+		// TC03: Packet of rays along an axis (zero direction components)
+		rays = new Ray[] { new Ray(head, new Vector(0, 0, -1)), new Ray(head, new Vector(0, 0, -1)) };
+		found = bvh.findClosestIntersections(rays);
+		var expected = bvh.findClosestIntersection(rays[0]);
+		assertEquals("Wrong closest point", expected == null ? null : expected.point,
+				found[0] == null ? null : found[0].point);
+
+		// TC04: Empty packet
+		assertEquals("Wrong number of points", 0, bvh.findClosestIntersections(new Ray[0]).length);
+	}
+}
@@ -0,0 +1,187 @@
+package unittests.geometries;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import geometries.BVH;
+import geometries.FloatTriangle;
+import geometries.Geometries;
+import geometries.Geometry;
+import geometries.Intersectable;
+import geometries.Intersectable.GeoPoint;
+import geometries.Triangle;
+import primitives.Material;
+import primitives.Point3D;
+import primitives.Ray;
+import primitives.Vector;
+
+/**
+ * Testing FloatTriangle
+ *
+ * @author David and Matan
+ */
+public class FloatTriangleTests {
+
+	/**
+	 * Test method for
+	 * {@link geometries.FloatTriangle#FloatTriangle(primitives.Point3D, primitives.Point3D, primitives.Point3D)}.
+	 */
+	@Test
+	public void testFloatTriangle() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the vertices on the same straight line
+		assertThrows("FloatTriangle() - not compliant with geometry Triangle", IllegalArgumentException.class,
+				() -> new FloatTriangle(new Point3D(1, 1, 1), new Point3D(2, 2, 2), new Point3D(3, 3, 3)));
+
+		// =============== Boundary Values Tests ==================
+		// TC11: two vertices at the same point
+		assertThrows("FloatTriangle() - you have same points", IllegalArgumentException.class,
+				() -> new FloatTriangle(new Point3D(3, 4, 0), new Point3D(3, 4, 0), new Point3D(3, 3, 3)));
+		// TC12: different vertices that are the same point in floats
+		assertThrows("FloatTriangle() - you have same points in floats", IllegalArgumentException.class,
+				() -> new FloatTriangle(new Point3D(1e6, 4, 0), new Point3D(1e6 + 0.01, 4, 0), new Point3D(3, 3, 3)));
+	}
+
+	/**
+	 * Test method for {@link geometries.FloatTriangle#getNormal(primitives.Point3D)}.
+	 */
+	@Test
+	public void testGetNormal() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the normal of the triangle in the direction of the normal of Triangle
+		Point3D p0 = new Point3D(0, 0, 1), p1 = new Point3D(1, 0, 0), p2 = new Point3D(0, 1, 0);
+		Vector normal = new FloatTriangle(p0, p1, p2).getNormal(p0);
+		assertEquals("Bad normal to triangle", 1, normal.dotProduct(new Triangle(p0, p1, p2).getNormal(p0)), 1e-6);
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.FloatTriangle#findGeoIntersections(primitives.Ray, double)}.
+	 */
+	@Test
+	public void testFindGeoIntersections() {
+		FloatTriangle triangle = new FloatTriangle(new Point3D(0, 0, 3), new Point3D(3, 0, 0), Point3D.ZERO);
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: Inside triangle
+		var result = triangle.findGeoIntersections(new Ray(new Point3D(1, -1, 1), new Vector(0, 1, 0)));
+		assertEquals("Wrong number of points", 1, result.size());
+		assertEquals("Wrong point", 0, result.get(0).point.distance(new Point3D(1, 0, 1)), 1e-6);
+
+		// TC02: Outside against edge
+		assertNull("the Ray not cross outside against edge",
+				triangle.findGeoIntersections(new Ray(new Point3D(-1, -1, 1), new Vector(0, 1, 0))));
+
+		// TC03: Outside against vertex
+		assertNull("the Ray not cross outside against vertex",
+				triangle.findGeoIntersections(new Ray(new Point3D(-1, -1, -1), new Vector(0, 1, 0))));
+
+		// TC04: The triangle is behind the ray
+		assertNull("the triangle is behind the ray",
+				triangle.findGeoIntersections(new Ray(new Point3D(1, 1, 1), new Vector(0, 1, 0))));
+
+		// TC05: The triangle is farther than the maximum distance
+		assertNull("the triangle is farther than the maximum distance",
+				triangle.findGeoIntersections(new Ray(new Point3D(1, -1, 1), new Vector(0, 1, 0)), 0.5));
+
+		// =============== Boundary Values Tests ==================
+		// TC11: On edge - the edges belong to the triangle
+		assertNotNull("the Ray on the edge must cross",
+				triangle.findGeoIntersections(new Ray(new Point3D(0, -1, 1), new Vector(0, 1, 0))));
+
+		// TC12: In vertex - the vertices belong to the triangle
+		assertNotNull("the Ray in the vertex must cross",
+				triangle.findGeoIntersections(new Ray(new Point3D(0, -1, 0), new Vector(0, 1, 0))));
+
+		// TC13: On edge's continuation
+		assertNull("the ray not cross on edge's continuation",
+				triangle.findGeoIntersections(new Ray(new Point3D(0, -1, 3.5), new Vector(0, 1, 0))));
+
+		// TC14: The ray is parallel to the triangle
+		assertNull("the ray parallel to the triangle not cross",
+				triangle.findGeoIntersections(new Ray(new Point3D(1, -1, 1), new Vector(1, 0, 0))));
+
+		// TC15: The ray begins on the triangle
+		assertNull("the ray begins on the triangle",
+				triangle.findGeoIntersections(new Ray(new Point3D(1, 0, 1), new Vector(0, 1, 0))));
+	}
+
+	/**
+	 * the vertices of a wavy terrain of size x size cells
+	 *
+	 * @param size - the number of cells on each axis
+	 * @return the vertices by rows
+	 */
+	private static Point3D[] terrain(int size) {
+		Point3D[] points = new Point3D[(size + 1) * (size + 1)];
+		for (int i = 0; i <= size; ++i)
+			for (int j = 0; j <= size; ++j)
+				points[i * (size + 1) + j] = new Point3D(j, i, 3 * Math.sin(j * 0.3) * Math.cos(i * 0.2));
+		return points;
+	}
+
+	/**
+	 * build the triangles of the terrain
+	 *
+	 * @param points - the vertices of the terrain
+	 * @param size   - the number of cells on each axis
+	 * @param single - true for single precision triangles
+	 * @return the triangles
+	 */
+	private static Geometry[] triangles(Point3D[] points, int size, boolean single) {
+		Material material = new Material().setKd(0.5);
+		Geometry[] triangles = new Geometry[2 * size * size];
+		int k = 0;
+		for (int i = 0; i < size; ++i)
+			for (int j = 0; j < size; ++j) {
+				Point3D a = points[i * (size + 1) + j], b = points[i * (size + 1) + j + 1];
+				Point3D c = points[(i + 1) * (size + 1) + j], d = points[(i + 1) * (size + 1) + j + 1];
+				triangles[k++] = (single ? new FloatTriangle(a, b, d) : new Triangle(a, b, d)).setMaterial(material);
+				triangles[k++] = (single ? new FloatTriangle(a, d, c) : new Triangle(a, d, c)).setMaterial(material);
+			}
+		return triangles;
+	}
+
+	/**
+	 * the closest hits of a grid of rays over the terrain
+	 *
+	 * @param bvh  - the hierarchy over the triangles
+	 * @param size - the number of cells on each axis
+	 * @param rays - the number of rays on each axis
+	 * @return the hits
+	 */
+	private static GeoPoint[] trace(Intersectable bvh, int size, int rays) {
+		GeoPoint[] hits = new GeoPoint[rays * rays];
+		Vector dir = new Vector(0.1, 0.05, -1);
+		for (int i = 0; i < rays; ++i)
+			for (int j = 0; j < rays; ++j)
+				hits[i * rays + j] = bvh.findClosestIntersection(
+						new Ray(new Point3D((j + 0.5) * size / rays, (i + 0.5) * size / rays, 20), dir));
+		return hits;
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.FloatTriangle#findGeoIntersections(primitives.Ray, double)}
+	 * through a hierarchy over a terrain - the same hits as {@link Triangle} up to
+	 * the precision of a float
+	 */
+	@Test
+	public void testTerrain() {
+		final int size = 150, rays = 300;
+		Point3D[] points = terrain(size);
+		GeoPoint[] doubleHits = trace(new BVH(new Geometries(triangles(points, size, false))), size, rays);
+		GeoPoint[] floatHits = trace(new BVH(new Geometries(triangles(points, size, true))), size, rays);
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the same hits up to the precision of a float (the rays through the
+		// edges may hit in one precision and not in the other)
+		int different = 0;
+		for (int i = 0; i < doubleHits.length; ++i)
+			if (doubleHits[i] == null ? floatHits[i] != null
+					: floatHits[i] == null || doubleHits[i].point.distance(floatHits[i].point) > 1e-3)
+				++different;
+		assertTrue("Too many different hits: " + different, different < doubleHits.length / 1000);
+	}
+}
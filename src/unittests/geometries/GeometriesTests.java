@@ -1,11 +1,13 @@
 package unittests.geometries;
 
 import static org.junit.Assert.*;
+import java.util.List;
 import org.junit.Test;
 import geometries.Geometries;
 import geometries.Plane;
 import geometries.Sphere;
 import geometries.Triangle;
+import primitives.Material;
 import primitives.Point3D;
 import primitives.Ray;
 import primitives.Vector;
@@ -54,4 +56,102 @@ public class GeometriesTests {
 		assertEquals("Only one shape is cut", 4,
 				geometries.findIntersections(new Ray(new Point3D(0.5, 6, 0.5), new Vector(0, -1, 0))).size());
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Test method for
+	 * {@link geometries.Geometries#occlusion(primitives.Ray, double, double)}.
+	 */
+	@Test
+	public void testOcclusion() {
+		var geometries = new Geometries(
+				new Sphere(new Point3D(0, 0, 3), 1).setMaterial(new Material().setKt(0.5)),
+				new Sphere(new Point3D(0, 0, 6), 1).setMaterial(new Material().setKt(0.5)),
+				new Sphere(new Point3D(0, 0, 9), 1));
+		Ray ray = new Ray(new Point3D(0, 0, 0), new Vector(0, 0, 1));
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Ray through two transparent spheres (two points each)
+		assertEquals("Wrong transmittance", 0.0625, geometries.occlusion(ray, 7.5, 0.001), 1e-10);
+
+		// TC02: Ray through an opaque sphere
+		assertEquals("Opaque sphere blocks the ray", 0.0, geometries.occlusion(ray, 100, 0.001), 0);
+
+		// TC03: Transmittance falls below the threshold
+		assertEquals("Ray must be blocked", 0.0, geometries.occlusion(ray, 7.5, 0.1), 0);
+
+		// =============== Boundary Values Tests ==================
+
+		// TC04: Maximum distance before all the spheres
+		assertEquals("There is no intersection", 1.0, geometries.occlusion(ray, 1.5, 0.001), 0);
+
+		// TC05: Empty body collection
+		assertEquals("is Empty!", 1.0, new Geometries().occlusion(ray, 100, 0.001), 0);
+
+		// TC06: An opaque body before a transparent body with a zero threshold - the
+		// query ends at the opaque body with no division by zero
+		assertEquals("Opaque sphere blocks the ray with a zero threshold", 0.0,
+				new Geometries(new Sphere(new Point3D(0, 0, 3), 1),
+						new Sphere(new Point3D(0, 0, 6), 1).setMaterial(new Material().setKt(0.5))).occlusion(ray, 100, 0),
+				0);
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.Geometries#findClosestIntersection(primitives.Ray, double)}.
+	 */
+	@Test
+	public void testFindClosestIntersection() {
+		var far = new Sphere(new Point3D(0, 0, 9), 1);
+		var near = new Sphere(new Point3D(0, 0, 3), 1);
+		var geometries = new Geometries(far, near,
+				new Triangle(new Point3D(-1, -1, 6), new Point3D(1, -1, 6), new Point3D(0, 1, 6)));
+		Ray ray = new Ray(new Point3D(0, 0, 0), new Vector(0, 0, 1));
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: The closest point is in a body after a farther body
+		var gp = geometries.findClosestIntersection(ray);
+		assertEquals("Wrong closest point", new Point3D(0, 0, 2), gp.point);
+		assertSame("Wrong closest body", near, gp.geometry);
+
+		// TC02: Maximum distance before all the bodies
+		assertNull("There is no intersection", geometries.findClosestIntersection(ray, 1.5));
+
+		// =============== Boundary Values Tests ==================
+
+		// TC03: Maximum distance on the closest point
+		assertEquals("Wrong closest point", new Point3D(0, 0, 2), geometries.findClosestIntersection(ray, 2).point);
+
+		// TC04: Empty body collection
+		assertNull("is Empty!", new Geometries().findClosestIntersection(ray));
+	}
+
+	/**
+	 * Test method for {@link geometries.Geometries#getBounded()} and
+	 * {@link geometries.Geometries#getUnbounded()}.
+	 */
+	@Test
+	public void testBoundedSplit() {
+		var plane = new Plane(new Point3D(0, 0, -10), new Vector(0, 0, 1));
+		var sphere = new Sphere(new Point3D(0, 3, 0), 2);
+		var geometries = new Geometries(plane, sphere);
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: The plane is unbounded and the sphere is bounded
+		assertFalse("Plane must be unbounded", plane.isBounded());
+		assertTrue("Sphere must be bounded", sphere.isBounded());
+		assertEquals("Wrong bounded bodies", List.of(sphere), geometries.getBounded().getBudies());
+		assertEquals("Wrong unbounded bodies", List.of(plane), geometries.getUnbounded().getBudies());
+
+		// TC02: The bounded part has the boundaries of the sphere only
+		assertEquals("Wrong boundary", new Point3D(-2, 1, -2), geometries.getBounded().getMinBoundary());
+		assertFalse("Collection with a plane must be unbounded", geometries.isBounded());
+
+		// =============== Boundary Values Tests ==================
+
+		// TC03: Empty body collection
+		assertTrue("is Empty!", new Geometries().getUnbounded().getBudies().isEmpty());
+	}
+}
@@ -0,0 +1,113 @@
+package unittests.geometries;
+
+import static org.junit.Assert.*;
+import java.util.Random;
+import org.junit.Test;
+import geometries.BVH;
+import geometries.Geometries;
+import geometries.Instance;
+import geometries.Sphere;
+import geometries.Triangle;
+import primitives.Material;
+import primitives.Point3D;
+import primitives.Ray;
+import primitives.Transform;
+import primitives.Vector;
+
+/**
+ * Testing Instance
+ *
+ * @author David and Matan
+ */
+public class InstanceTests {
+
+	/**
+	 * build a small mesh - a sphere on a triangle
+	 *
+	 * @return the geometries of the mesh
+	 */
+	private Geometries buildMesh() {
+		return new Geometries(new Sphere(new Point3D(0, 0, 1), 1),
+				new Triangle(new Point3D(-2, -2, 0), new Point3D(2, -2, 0), new Point3D(0, 2, 0)));
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.Instance#findClosestIntersection(Ray, double)}.
+	 */
+	@Test
+	public void testFindClosestIntersection() {
+		var mesh = new BVH(buildMesh());
+		var instance = new Instance(mesh, Transform.IDENTITY.scale(2).translate(new Vector(10, 0, 0)));
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Ray through the transformed sphere
+		Ray ray = new Ray(new Point3D(10, 0, 10), new Vector(0, 0, -1));
+		var gp = instance.findClosestIntersection(ray);
+		assertEquals("Wrong closest point", new Point3D(10, 0, 4), gp.point);
+		assertEquals("Wrong normal", new Vector(0, 0, 1), gp.getNormal());
+
+		// TC02: Ray beside the sphere hits the transformed triangle
+		ray = new Ray(new Point3D(13, -3, 10), new Vector(0, 0, -1));
+		assertEquals("Wrong closest point", new Point3D(13, -3, 0), instance.findClosestIntersection(ray).point);
+
+		// TC03: Maximum distance in the scene before the sphere
+		ray = new Ray(new Point3D(10, 0, 10), new Vector(0, 0, -1));
+		assertNull("There is no intersection", instance.findClosestIntersection(ray, 5.5));
+		assertNotNull("Wrong maximum distance", instance.findClosestIntersection(ray, 6.5));
+
+		// TC04: Boundaries of the transformed mesh
+		assertEquals("Wrong boundary", new Point3D(6, -4, 0), instance.getMinBoundary());
+		assertEquals("Wrong boundary", new Point3D(14, 4, 4), instance.getMaxBoundary());
+
+		// =============== Boundary Values Tests ==================
+
+		// TC05: Ray misses the instance
+		ray = new Ray(new Point3D(0, 0, 10), new Vector(0, 0, -1));
+		assertNull("There is no intersection", instance.findClosestIntersection(ray));
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.Instance#Instance(geometries.Intersectable, Transform)}
+	 * with many instances of a shared mesh under a top level hierarchy.
+	 */
+	@Test
+	public void testTwoLevels() {
+		var mesh = new BVH(buildMesh());
+		var instances = new Geometries();
+		var copies = new Geometries();
+		for (int i = 0; i < 10; ++i)
+			for (int j = 0; j < 10; ++j) {
+				instances.add(new Instance(mesh, Transform.IDENTITY.translate(i * 5, j * 5, 0)));
+				copies.add(new Sphere(new Point3D(i * 5, j * 5, 1), 1),
+						new Triangle(new Point3D(i * 5 - 2, j * 5 - 2, 0), new Point3D(i * 5 + 2, j * 5 - 2, 0),
+								new Point3D(i * 5, j * 5 + 2, 0)));
+			}
+		var top = new BVH(instances);
+		var random = new Random(5);
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Random rays find the same closest points as copies of the mesh
+		for (int i = 0; i < 200; ++i) {
+			Ray ray = new Ray(new Point3D(random.nextDouble() * 50, random.nextDouble() * 50, 10),
+					new Vector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, -1));
+			var expected = copies.findClosestIntersection(ray);
+			var found = top.findClosestIntersection(ray);
+			assertEquals("Wrong closest point", expected == null ? null : expected.point,
+					found == null ? null : found.point);
+		}
+
+		// TC02: Shadow ray through instances of a transparent sphere
+		var glass = new BVH(new Geometries(new Sphere(new Point3D(0, 0, 0), 1).setMaterial(new Material().setKt(0.5))));
+		var glasses = new Geometries();
+		for (int i = 0; i < 10; ++i)
+			glasses.add(new Instance(glass, Transform.IDENTITY.translate(i * 5, 0, 0)));
+		top = new BVH(glasses);
+		Ray ray = new Ray(new Point3D(-5, 0, 0), new Vector(1, 0, 0));
+		assertEquals("Wrong transmittance", 0.25, top.occlusion(ray, 7, 0.001), 1e-10);
+		assertEquals("Ray must be blocked", 0.0, top.occlusion(ray, 100, 0.001), 0);
+	}
+}
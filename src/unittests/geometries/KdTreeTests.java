@@ -0,0 +1,140 @@
+package unittests.geometries;
+
+import static org.junit.Assert.*;
+import java.util.Random;
+import org.junit.Test;
+import geometries.Geometries;
+import geometries.KdTree;
+import geometries.Sphere;
+import geometries.Triangle;
+import primitives.Material;
+import primitives.Point3D;
+import primitives.Ray;
+import primitives.Vector;
+
+/**
+ * Testing KdTree
+ *
+ * @author David and Matan
+ */
+public class KdTreeTests {
+
+	/**
+	 * build a row of small spheres along the x axis with a triangle behind them
+	 *
+	 * @return the geometries
+	 */
+	private Geometries buildGeometries() {
+		var geometries = new Geometries();
+		for (int i = 0; i < 20; ++i)
+			geometries.add(new Sphere(new Point3D(i * 3, 0, 0), 1));
+		geometries.add(new Triangle(new Point3D(-5, -5, -10), new Point3D(70, -5, -10), new Point3D(-5, 5, -10)));
+		return geometries;
+	}
+
+	/**
+	 * Test method for {@link geometries.KdTree#findClosestIntersection(Ray)}.
+	 */
+	@Test
+	public void testFindClosestIntersection() {
+		var kdTree = new KdTree(buildGeometries());
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Ray through one of the spheres
+		Ray ray = new Ray(new Point3D(30, 0, 10), new Vector(0, 0, -1));
+		assertEquals("Wrong closest point", new Point3D(30, 0, 1), kdTree.findClosestIntersection(ray).point);
+
+		// TC02: Ray between the spheres hits only the triangle
+		ray = new Ray(new Point3D(1.5, 0, 10), new Vector(0, 0, -1));
+		assertEquals("Wrong closest point", new Point3D(1.5, 0, -10), kdTree.findClosestIntersection(ray).point);
+
+		// TC03: Ray misses everything
+		ray = new Ray(new Point3D(100, 100, 10), new Vector(0, 0, -1));
+		assertNull("There is no intersection", kdTree.findClosestIntersection(ray));
+
+		// TC04: Ray along the row of spheres from outside
+		ray = new Ray(new Point3D(-10, 0, 0), new Vector(1, 0, 0));
+		assertEquals("Wrong closest point", new Point3D(-1, 0, 0), kdTree.findClosestIntersection(ray).point);
+
+		// TC05: Ray starts inside the scene between the spheres
+		ray = new Ray(new Point3D(31.5, 0, 0), new Vector(-1, 0, 0));
+		assertEquals("Wrong closest point", new Point3D(31, 0, 0), kdTree.findClosestIntersection(ray).point);
+
+		// TC06: Random rays find the same closest points as the bodies themselves
+		var random = new Random(3);
+		var geometries = new Geometries();
+		for (int i = 0; i < 1000; ++i)
+			geometries.add(new Sphere(
+					new Point3D(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 100), 1));
+		kdTree = new KdTree(geometries);
+		for (int i = 0; i < 200; ++i) {
+			ray = new Ray(new Point3D(-10, random.nextDouble() * 100, random.nextDouble() * 100),
+					new Vector(1, random.nextDouble() - 0.5, random.nextDouble() - 0.5));
+			var expected = ray.findClosestGeoPoint(geometries.findGeoIntersections(ray));
+			var found = kdTree.findClosestIntersection(ray);
+			assertEquals("Wrong closest point", expected == null ? null : expected.point,
+					found == null ? null : found.point);
+			var all = geometries.findGeoIntersections(ray, 50);
+			var inTree = kdTree.findGeoIntersections(ray, 50);
+			assertEquals("Wrong number of points", all == null ? 0 : all.size(), inTree == null ? 0 : inTree.size());
+		}
+	}
+
+	/**
+	 * Test method for {@link geometries.KdTree#findGeoIntersections(Ray, double)}.
+	 */
+	@Test
+	public void testFindGeoIntersections() {
+		var kdTree = new KdTree(buildGeometries());
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Ray along the row of spheres finds all their points once
+		Ray ray = new Ray(new Point3D(-10, 0, 0), new Vector(1, 0, 0));
+		assertEquals("Wrong number of points", 40, kdTree.findGeoIntersections(ray).size());
+
+		// TC02: Limited distance finds only the first spheres
+		assertEquals("Wrong number of points", 3, kdTree.findGeoIntersections(ray, 13).size());
+
+		// =============== Boundary Values Tests ==================
+
+		// TC03: Empty tree
+		assertNull("Empty tree", new KdTree(new Geometries()).findGeoIntersections(ray));
+	}
+
+	/**
+	 * Test method for {@link geometries.KdTree#occlusion(Ray, double, double)}.
+	 */
+	@Test
+	public void testOcclusion() {
+		var geometries = buildGeometries();
+		for (var body : geometries.getBudies())
+			if (body instanceof Sphere)
+				((Sphere) body).setMaterial(new Material().setKt(0.9));
+		var kdTree = new KdTree(geometries);
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Ray along the row of transparent spheres
+		Ray ray = new Ray(new Point3D(-10, 0, 0), new Vector(1, 0, 0));
+		assertEquals("Wrong transmittance", Math.pow(0.9, 40), kdTree.occlusion(ray, 100, 0.001), 1e-10);
+
+		// TC02: Limited distance passes only the first spheres
+		assertEquals("Wrong transmittance", Math.pow(0.9, 3), kdTree.occlusion(ray, 13, 0.001), 1e-10);
+
+		// TC03: Ray through a sphere is blocked by the opaque triangle
+		ray = new Ray(new Point3D(30, 0, 10), new Vector(0, 0, -1));
+		assertEquals("Ray must be blocked", 0.0, kdTree.occlusion(ray, 100, 0.001), 0);
+
+		// =============== Boundary Values Tests ==================
+
+		// TC04: Transmittance falls below the threshold
+		ray = new Ray(new Point3D(-10, 0, 0), new Vector(1, 0, 0));
+		assertEquals("Ray must be blocked", 0.0, kdTree.occlusion(ray, 100, 0.1), 0);
+
+		// TC05: Ray misses everything
+		ray = new Ray(new Point3D(100, 100, 10), new Vector(0, 0, -1));
+		assertEquals("There is no intersection", 1.0, kdTree.occlusion(ray, 100, 0.001), 0);
+	}
+}
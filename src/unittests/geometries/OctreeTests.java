@@ -0,0 +1,182 @@
+package unittests.geometries;
+
+import static org.junit.Assert.*;
+import java.util.Random;
+import org.junit.Test;
+import geometries.Geometries;
+import geometries.Octree;
+import geometries.Sphere;
+import geometries.Triangle;
+import primitives.Material;
+import primitives.Point3D;
+import primitives.Ray;
+import primitives.Vector;
+import scene.Box;
+
+/**
+ * Testing Octree
+ *
+ * @author David and Matan
+ */
+public class OctreeTests {
+
+	/**
+	 * build a row of small spheres along the x axis with a triangle behind them
+	 *
+	 * @return the geometries
+	 */
+	private Geometries buildGeometries() {
+		var geometries = new Geometries();
+		for (int i = 0; i < 20; ++i)
+			geometries.add(new Sphere(new Point3D(i * 3, 0, 0), 1));
+		geometries.add(new Triangle(new Point3D(-5, -5, -10), new Point3D(70, -5, -10), new Point3D(-5, 5, -10)));
+		return geometries;
+	}
+
+	/**
+	 * Test method for {@link geometries.Octree#findClosestIntersection(Ray)}.
+	 */
+	@Test
+	public void testFindClosestIntersection() {
+		var octree = new Octree(buildGeometries(), 2);
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Ray through one of the spheres
+		Ray ray = new Ray(new Point3D(30, 0, 10), new Vector(0, 0, -1));
+		assertEquals("Wrong closest point", new Point3D(30, 0, 1), octree.findClosestIntersection(ray).point);
+
+		// TC02: Ray between the spheres hits only the triangle
+		ray = new Ray(new Point3D(1.5, 0, 10), new Vector(0, 0, -1));
+		assertEquals("Wrong closest point", new Point3D(1.5, 0, -10), octree.findClosestIntersection(ray).point);
+
+		// TC03: Ray misses everything
+		ray = new Ray(new Point3D(100, 100, 10), new Vector(0, 0, -1));
+		assertNull("There is no intersection", octree.findClosestIntersection(ray));
+
+		// TC04: Ray along the row of spheres from outside
+		ray = new Ray(new Point3D(-10, 0, 0), new Vector(1, 0, 0));
+		assertEquals("Wrong closest point", new Point3D(-1, 0, 0), octree.findClosestIntersection(ray).point);
+
+		// TC05: Ray starts inside the scene between the spheres
+		ray = new Ray(new Point3D(31.5, 0, 0), new Vector(-1, 0, 0));
+		assertEquals("Wrong closest point", new Point3D(31, 0, 0), octree.findClosestIntersection(ray).point);
+
+		// TC06: Random rays find the same closest points as the bodies themselves
+		var random = new Random(3);
+		var geometries = new Geometries();
+		for (int i = 0; i < 1000; ++i)
+			geometries.add(new Sphere(
+					new Point3D(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 100), 1));
+		octree = new Octree(geometries, 4);
+		for (int i = 0; i < 200; ++i) {
+			ray = new Ray(new Point3D(-10, random.nextDouble() * 100, random.nextDouble() * 100),
+					new Vector(1, random.nextDouble() - 0.5, random.nextDouble() - 0.5));
+			var expected = ray.findClosestGeoPoint(geometries.findGeoIntersections(ray));
+			var found = octree.findClosestIntersection(ray);
+			assertEquals("Wrong closest point", expected == null ? null : expected.point,
+					found == null ? null : found.point);
+			var all = geometries.findGeoIntersections(ray, 50);
+			var inTree = octree.findGeoIntersections(ray, 50);
+			assertEquals("Wrong number of points", all == null ? 0 : all.size(), inTree == null ? 0 : inTree.size());
+		}
+	}
+
+	/**
+	 * Test method for {@link geometries.Octree#findGeoIntersections(Ray, double)}.
+	 */
+	@Test
+	public void testFindGeoIntersections() {
+		var octree = new Octree(buildGeometries(), 2);
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Ray along the row of spheres finds all their points once
+		Ray ray = new Ray(new Point3D(-10, 0, 0), new Vector(1, 0, 0));
+		assertEquals("Wrong number of points", 40, octree.findGeoIntersections(ray).size());
+
+		// TC02: Limited distance finds only the first spheres
+		assertEquals("Wrong number of points", 3, octree.findGeoIntersections(ray, 13).size());
+
+		// =============== Boundary Values Tests ==================
+
+		// TC03: Empty tree
+		assertNull("Empty tree", new Octree(new Geometries(), 2).findGeoIntersections(ray));
+	}
+
+	/**
+	 * Test method for {@link geometries.Octree#getNodeCount()}.
+	 */
+	@Test
+	public void testNodeCount() {
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: A small cluster in a big empty space - the uniform grid is too coarse
+		// around the cluster while the octree adapts to it
+		var geometries = new Geometries();
+		var random = new Random(5);
+		for (int i = 0; i < 500; ++i)
+			geometries.add(new Sphere(
+					new Point3D(random.nextDouble() * 10, random.nextDouble() * 10, random.nextDouble() * 10), 0.2));
+		geometries.add(new Sphere(new Point3D(1000, 1000, 1000), 1));
+		var octree = new Octree(geometries, 8);
+		var box = new Box(3, geometries);
+		assertTrue("Leaves are not finer than the voxels", (double) octree.getReferenceCount()
+				/ octree.getLeafCount() < (double) box.getReferenceCount() / box.getVoxelCount());
+		assertTrue("Too shallow", octree.getDepth() > 5);
+		assertTrue("Wrong leaves", octree.getLeafCount() < octree.getNodeCount());
+		assertTrue("Wrong references", octree.getReferenceCount() >= 501);
+
+		// =============== Boundary Values Tests ==================
+
+		// TC02: Bodies up to the threshold stay in the root
+		octree = new Octree(buildGeometries(), 21);
+		assertEquals("Wrong node count", 1, octree.getNodeCount());
+		assertEquals("Wrong depth", 0, octree.getDepth());
+
+		// TC03: Large overlapping bodies in every octant are not divided down to the
+		// maximal depth
+		geometries = new Geometries();
+		for (int i = 0; i < 20; ++i)
+			geometries.add(new Sphere(
+					new Point3D(random.nextDouble(), random.nextDouble(), random.nextDouble()), 50));
+		octree = new Octree(geometries, 4);
+		assertEquals("Wrong node count", 1, octree.getNodeCount());
+		assertEquals("Wrong depth", 0, octree.getDepth());
+	}
+
+	/**
+	 * Test method for {@link geometries.Octree#occlusion(Ray, double, double)}.
+	 */
+	@Test
+	public void testOcclusion() {
+		var geometries = buildGeometries();
+		for (var body : geometries.getBudies())
+			if (body instanceof Sphere)
+				((Sphere) body).setMaterial(new Material().setKt(0.9));
+		var octree = new Octree(geometries, 2);
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Ray along the row of transparent spheres
+		Ray ray = new Ray(new Point3D(-10, 0, 0), new Vector(1, 0, 0));
+		assertEquals("Wrong transmittance", Math.pow(0.9, 40), octree.occlusion(ray, 100, 0.001), 1e-10);
+
+		// TC02: Limited distance passes only the first spheres
+		assertEquals("Wrong transmittance", Math.pow(0.9, 3), octree.occlusion(ray, 13, 0.001), 1e-10);
+
+		// TC03: Ray through a sphere is blocked by the opaque triangle
+		ray = new Ray(new Point3D(30, 0, 10), new Vector(0, 0, -1));
+		assertEquals("Ray must be blocked", 0.0, octree.occlusion(ray, 100, 0.001), 0);
+
+		// =============== Boundary Values Tests ==================
+
+		// TC04: Transmittance falls below the threshold
+		ray = new Ray(new Point3D(-10, 0, 0), new Vector(1, 0, 0));
+		assertEquals("Ray must be blocked", 0.0, octree.occlusion(ray, 100, 0.1), 0);
+
+		// TC05: Ray misses everything
+		ray = new Ray(new Point3D(100, 100, 10), new Vector(0, 0, -1));
+		assertEquals("There is no intersection", 1.0, octree.occlusion(ray, 100, 0.001), 0);
+	}
+}
@@ -0,0 +1,196 @@
+package unittests.geometries;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import geometries.BVH;
+import geometries.Geometries;
+import geometries.Instance;
+import geometries.Intersectable.GeoPoint;
+import geometries.Triangle;
+import geometries.TriangleMesh;
+import primitives.Color;
+import primitives.Material;
+import primitives.Point3D;
+import primitives.Ray;
+import primitives.Transform;
+import primitives.Vector;
+
+/**
+ * Testing TriangleMesh
+ *
+ * @author David and Matan
+ */
+public class TriangleMeshTests {
+
+	/**
+	 * a square of two faces at z=0 and a face behind it at z=-1
+	 */
+	private static final double[] POSITIONS = { 0, 0, 0, 2, 0, 0, 2, 2, 0, 0, 2, 0, //
+			0, 0, -1, 2, 0, -1, 0, 2, -1 };
+	private static final int[] FACES = { 0, 1, 2, 0, 2, 3, 4, 5, 6 };
+
+	/**
+	 * Test method for {@link geometries.TriangleMesh#TriangleMesh(double[], int[])}.
+	 */
+	@Test
+	public void testTriangleMesh() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: a correct mesh
+		TriangleMesh mesh = new TriangleMesh(POSITIONS, FACES);
+		assertEquals("Wrong number of faces", 3, mesh.getFaceCount());
+		assertEquals("Wrong number of vertices", 7, mesh.getVertexCount());
+		assertEquals("Wrong min boundary", new Point3D(0, 0, -1), mesh.getMinBoundary());
+		assertEquals("Wrong max boundary", new Point3D(2, 2, 0), mesh.getMaxBoundary());
+
+		// TC02: an index that is not of a vertex
+		assertThrows("TriangleMesh() - index of no vertex", IllegalArgumentException.class,
+				() -> new TriangleMesh(POSITIONS, new int[] { 0, 1, 7 }));
+
+		// TC03: the vertices of a face on the same straight line
+		assertThrows("TriangleMesh() - face on a straight line", IllegalArgumentException.class,
+				() -> new TriangleMesh(new double[] { 0, 0, 0, 1, 1, 1, 2, 2, 2 }, new int[] { 0, 1, 2 }));
+
+		// =============== Boundary Values Tests ==================
+		// TC11: buffers that are not of triples
+		assertThrows("TriangleMesh() - buffer of no triples", IllegalArgumentException.class,
+				() -> new TriangleMesh(POSITIONS, new int[] { 0, 1 }));
+		// TC12: two vertices of a face at the same point
+		assertThrows("TriangleMesh() - face of the same points", IllegalArgumentException.class,
+				() -> new TriangleMesh(POSITIONS, new int[] { 0, 0, 1 }));
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.TriangleMesh#findGeoIntersections(primitives.Ray, double)}.
+	 */
+	@Test
+	public void testFindGeoIntersections() {
+		TriangleMesh mesh = new TriangleMesh(POSITIONS, FACES);
+		Vector down = new Vector(0, 0, -1);
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: through one face of the square and the face behind it
+		List<GeoPoint> result = mesh.findGeoIntersections(new Ray(new Point3D(0.5, 0.25, 1), down));
+		assertEquals("Wrong number of points", 2, result.size());
+		assertEquals("Wrong closest point", new Point3D(0.5, 0.25, 0),
+				mesh.findClosestIntersection(new Ray(new Point3D(0.5, 0.25, 1), down)).point);
+		assertEquals("Wrong normal", new Vector(0, 0, 1), result.get(0).getNormal());
+
+		// TC02: through the square only
+		result = mesh.findGeoIntersections(new Ray(new Point3D(1.5, 1, 1), down));
+		assertEquals("Wrong number of points", 1, result.size());
+		assertEquals("Wrong point", new Point3D(1.5, 1, 0), result.get(0).point);
+
+		// TC03: outside the mesh
+		assertNull("Ray outside the mesh", mesh.findGeoIntersections(new Ray(new Point3D(3, 1, 1), down)));
+
+		// TC04: the square is farther than the maximum distance
+		assertNull("The mesh is farther than the maximum distance",
+				mesh.findGeoIntersections(new Ray(new Point3D(1.5, 1, 1), down), 0.5));
+
+		// TC05: the mesh is behind the ray
+		assertNull("The mesh is behind the ray",
+				mesh.findGeoIntersections(new Ray(new Point3D(1.5, 1, 1), new Vector(0, 0, 1))));
+
+		// =============== Boundary Values Tests ==================
+		// TC11: on the edge between the faces of the square - the edges belong to the
+		// faces
+		result = mesh.findGeoIntersections(new Ray(new Point3D(1.5, 1.5, 1), new Vector(-1, -1, -1)));
+		assertNotNull("Ray on the shared edge must cross", result);
+		assertEquals("Wrong point on the shared edge", new Point3D(0.5, 0.5, 0),
+				mesh.findClosestIntersection(new Ray(new Point3D(1.5, 1.5, 1), new Vector(-1, -1, -1))).point);
+
+		// TC12: parallel to the faces
+		assertNull("Ray parallel to the faces",
+				mesh.findGeoIntersections(new Ray(new Point3D(-1, 1, 0.5), new Vector(1, 0, 0))));
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.TriangleMesh#TriangleMesh(java.util.List)}.
+	 */
+	@Test
+	public void testSurfaces() {
+		Point3D a = new Point3D(0, 0, 0), b = new Point3D(2, 0, 0), c = new Point3D(2, 2, 0), d = new Point3D(0, 2, 0);
+		Material shiny = new Material().setKs(0.8), glass = new Material().setKt(0.5);
+		Color red = new Color(200, 0, 0);
+		List<Triangle> triangles = new ArrayList<>();
+		triangles.add((Triangle) new Triangle(a, b, c).setEmission(red).setMaterial(shiny));
+		triangles.add((Triangle) new Triangle(a, c, d).setEmission(red).setMaterial(glass));
+		TriangleMesh mesh = new TriangleMesh(triangles);
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the shared points are shared vertices
+		assertEquals("Wrong number of vertices", 4, mesh.getVertexCount());
+
+		// TC02: each face with the emission and the material of its triangle
+		GeoPoint gp = mesh.findClosestIntersection(new Ray(new Point3D(1.5, 0.5, 1), new Vector(0, 0, -1)));
+		assertSame("Wrong geometry", mesh, gp.geometry);
+		assertSame("Wrong material", shiny, gp.getMaterial());
+		assertSame("Wrong emission", red, gp.getEmission());
+		assertEquals("Wrong normal of the geometry", gp.getNormal(), gp.geometry.getNormal(gp.point));
+		gp = mesh.findClosestIntersection(new Ray(new Point3D(0.5, 1.5, 1), new Vector(0, 0, -1)));
+		assertSame("Wrong material", glass, gp.getMaterial());
+
+		// TC03: the shadow through the face of glass
+		assertEquals("Wrong transparency", 0.5,
+				mesh.occlusion(new Ray(new Point3D(0.5, 1.5, 1), new Vector(0, 0, -1)), 10, 0.001), 1e-10);
+
+		// TC04: an instance of the mesh keeps the material of the face
+		gp = new Instance(mesh, Transform.IDENTITY.translate(10, 0, 0))
+				.findClosestIntersection(new Ray(new Point3D(10.5, 1.5, 1), new Vector(0, 0, -1)));
+		assertSame("Wrong material of the instance", glass, gp.getMaterial());
+	}
+
+	/**
+	 * Test method for
+	 * {@link geometries.TriangleMesh#findClosestIntersection(primitives.Ray, double)}
+	 * - the same points as the triangles, and the faces share the vertices of the
+	 * triangles
+	 */
+	@Test
+	public void testFindClosestIntersection() {
+		final int size = 100, rays = 200;
+		Point3D[] points = new Point3D[(size + 1) * (size + 1)];
+		for (int i = 0; i <= size; ++i)
+			for (int j = 0; j <= size; ++j)
+				points[i * (size + 1) + j] = new Point3D(j, i, 3 * Math.sin(j * 0.3) * Math.cos(i * 0.2));
+		Material material = new Material().setKd(0.5);
+
+		List<Triangle> triangles = new ArrayList<>();
+		for (int i = 0; i < size; ++i)
+			for (int j = 0; j < size; ++j) {
+				Point3D a = points[i * (size + 1) + j], b = points[i * (size + 1) + j + 1];
+				Point3D c = points[(i + 1) * (size + 1) + j], d = points[(i + 1) * (size + 1) + j + 1];
+				triangles.add((Triangle) new Triangle(a, b, d).setMaterial(material));
+				triangles.add((Triangle) new Triangle(a, d, c).setMaterial(material));
+			}
+		TriangleMesh mesh = new TriangleMesh(triangles);
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the same closest points as the triangles (the rays through the edges
+		// may miss the triangles)
+		BVH bvh = new BVH(new Geometries(triangles.toArray(new Triangle[0])));
+		Vector dir = new Vector(0.1, 0.05, -1);
+		int different = 0;
+		for (int i = 0; i < rays; ++i)
+			for (int j = 0; j < rays; ++j) {
+				Ray ray = new Ray(new Point3D((j + 0.5) * size / rays, (i + 0.5) * size / rays, 20), dir);
+				GeoPoint expected = bvh.findClosestIntersection(ray), gp = mesh.findClosestIntersection(ray);
+				if (expected == null ? gp != null : gp == null || !expected.point.equals(gp.point))
+					++different;
+				else if (gp != null)
+					assertTrue("Wrong normal", gp.getNormal().dotProduct(expected.getNormal()) > 1 - 1e-6);
+			}
+		assertTrue("Too many different points: " + different, different < rays * rays / 1000);
+
+		// TC02: each point of the terrain is a single vertex of the mesh
+		assertEquals("Wrong number of faces", triangles.size(), mesh.getFaceCount());
+		assertEquals("Wrong number of vertices", points.length, mesh.getVertexCount());
+	}
+}
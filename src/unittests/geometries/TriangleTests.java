@@ -4,7 +4,15 @@
 package unittests.geometries;
 
 import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import org.junit.Test;
+import geometries.Intersectable;
+import geometries.Intersectable.GeoPoint;
+import geometries.Polygon;
 import geometries.Triangle;
 import primitives.Point3D;
 import primitives.Ray;
@@ -86,4 +94,60 @@ public class TriangleTests {
 				triangle.findIntersections(new Ray(new Point3D(0, -1, 3.5), new Vector(0, 1, 0))));
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Test method for
+	 * {@link geometries.Triangle#findGeoIntersections(primitives.Ray, double)}
+	 * against the general path of a polygon of the same vertices (through its
+	 * plane).
+	 */
+	@Test
+	public void testSameAsPolygon() {
+		final int count = 300;
+		Point3D a = new Point3D(0, 0, 3), b = new Point3D(3, 0, 0), c = new Point3D(0, 1, 0);
+		Triangle triangle = new Triangle(a, b, c);
+		Polygon polygon = new Polygon(a, b, c);
+
+		// rays from around the triangle toward points near it - about a half of them
+		// cross it
+		Random random = new Random(1);
+		Ray[] rays = new Ray[count];
+		for (int i = 0; i < count; ++i) {
+			Point3D head = new Point3D(random.nextDouble() * 4 - 0.5, random.nextDouble() * 4 - 2,
+					random.nextDouble() * 4 - 0.5);
+			Point3D target = new Point3D(random.nextDouble() * 3, random.nextDouble(), random.nextDouble() * 3);
+			rays[i] = new Ray(head, target.subtract(head));
+		}
+		List<List<GeoPoint>> triangleHits = trace(triangle, rays), polygonHits = trace(polygon, rays);
+
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the same hits and the same points as the polygon
+		int hits = 0;
+		for (int i = 0; i < count; ++i) {
+			var expected = polygonHits.get(i);
+			var result = triangleHits.get(i);
+			if (expected == null)
+				assertNull("A hit that the polygon misses", result);
+			else {
+				assertNotNull("A miss that the polygon hits", result);
+				assertEquals("Wrong point", expected.get(0).point, result.get(0).point);
+				++hits;
+			}
+		}
+		assertTrue("Too few hits for the comparison: " + hits, hits > count / 10);
+	}
+
+	/**
+	 * intersect each of the rays with the geometry
+	 * 
+	 * @param geometry - the geometry
+	 * @param rays     - the rays
+	 * @return the intersections of each ray
+	 */
+	private static List<List<GeoPoint>> trace(Intersectable geometry, Ray[] rays) {
+		List<List<GeoPoint>> result = new ArrayList<>(rays.length);
+		for (Ray ray : rays)
+			result.add(geometry.findGeoIntersections(ray));
+		return result;
+	}
+
+}
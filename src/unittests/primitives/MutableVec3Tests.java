@@ -0,0 +1,94 @@
+package unittests.primitives;
+
+import static org.junit.Assert.*;
+import static primitives.Util.isZero;
+
+import org.junit.Test;
+
+import primitives.*;
+
+/**
+ * Unit tests for primitives.MutableVec3 class
+ *
+ * @author David and Matan
+ */
+public class MutableVec3Tests {
+
+	/**
+	 * Test method for
+	 * {@link primitives.MutableVec3#scaleAdd(double, primitives.Vector)}.
+	 */
+	@Test
+	public void testScaleAdd() {
+		Vector v = new Vector(1, 2, 3), u = new Vector(0, 3, -2);
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the same result as the immutable calculation, in the scratch itself
+		MutableVec3 scratch = new MutableVec3().set(v);
+		assertSame("scaleAdd() must change the scratch itself", scratch, scratch.scaleAdd(-2, u));
+		assertEquals("scaleAdd() wrong result", v.add(u.scale(-2)), scratch.toVector());
+
+		// =============== Boundary Values Tests ==================
+		// TC11: a zero result is allowed in the scratch but not as a vector
+		scratch.set(v).scaleAdd(-1, v);
+		assertTrue("scaleAdd() wrong zero result", scratch.isZero());
+		assertThrows("toVector() of a zero scratch must throw", IllegalArgumentException.class,
+				() -> new MutableVec3().toVector());
+	}
+
+	/**
+	 * Test method for
+	 * {@link primitives.MutableVec3#setCrossProduct(primitives.MutableVec3, primitives.MutableVec3)}.
+	 */
+	@Test
+	public void testSetCrossProduct() {
+		Vector v1 = new Vector(1, 2, 3), v2 = new Vector(0, 3, -2);
+		MutableVec3 a = new MutableVec3().set(v1), b = new MutableVec3().set(v2);
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the same result as the immutable cross product
+		assertEquals("setCrossProduct() wrong result", v1.crossProduct(v2),
+				new MutableVec3().setCrossProduct(a, b).toVector());
+		// TC02: the result into one of the operands
+		assertEquals("setCrossProduct() wrong result into an operand", v1.crossProduct(v2),
+				a.setCrossProduct(a, b).toVector());
+	}
+
+	/**
+	 * Test method for {@link primitives.MutableVec3#normalize()}.
+	 */
+	@Test
+	public void testNormalize() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: a unit scratch in the direction of the triple
+		MutableVec3 scratch = new MutableVec3(1, 2, 3).normalize();
+		assertTrue("normalize() result is not a unit vector", isZero(scratch.length() - 1));
+		assertEquals("normalize() wrong direction", new Vector(1, 2, 3).normalized(), scratch.toVector());
+	}
+
+	/**
+	 * Test method for {@link primitives.MutableVec3#dot(double, double, double, double, double, double)}.
+	 */
+	@Test
+	public void testDot() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the dot product of numbers and of a scratch and a vector
+		assertEquals("dot() wrong value", -28, MutableVec3.dot(1, 2, 3, -2, -4, -6), 0.00001);
+		assertEquals("dotProduct() wrong value", new Vector(1, 2, 3).dotProduct(new Vector(0, 3, -2)),
+				new MutableVec3(1, 2, 3).dotProduct(new Vector(0, 3, -2)), 0.00001);
+
+		// =============== Boundary Values Tests ==================
+		// TC11: orthogonal triples
+		assertTrue("dot() for orthogonal triples is not zero", isZero(MutableVec3.dot(1, 2, 3, 0, 3, -2)));
+	}
+
+	/**
+	 * Test method for {@link primitives.Ray#Ray(primitives.Point3D, primitives.MutableVec3)}.
+	 */
+	@Test
+	public void testRay() {
+		// ============ Equivalence Partitions Tests ==============
+		// TC01: the ray of a scratch direction is the ray of the vector
+		Point3D p0 = new Point3D(1, 0, 0);
+		assertEquals("Ray() of a scratch has a wrong direction", new Ray(p0, new Vector(1, 2, 3)).getDir(),
+				new Ray(p0, new MutableVec3(1, 2, 3)).getDir());
+	}
+}
@@ -0,0 +1,70 @@
+/**
+ * 
+ */
+package unittests.primitives;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import primitives.Point3D;
+import primitives.Transform;
+import primitives.Vector;
+
+/**
+ * Unit tests for primitives.Transform class
+ * 
+ * @author David and Matan
+ *
+ */
+public class TransformTests {
+
+	/**
+	 * Test method for {@link primitives.Transform#transformPoint(Point3D)}.
+	 */
+	@Test
+	public void testTransformPoint() {
+		var transform = Transform.IDENTITY.scale(2).rotate(new Vector(0, 0, 1), Math.PI / 2)
+				.translate(new Vector(1, 2, 3));
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Scale, rotate and move in this order
+		assertEquals("Wrong transformed point", new Point3D(-1, 4, 3), transform.transformPoint(new Point3D(1, 1, 0)));
+
+		// TC02: The inverse transform returns the point
+		assertEquals("Wrong inverse point", new Point3D(1, 1, 0), transform.inversePoint(new Point3D(-1, 4, 3)));
+
+		// TC03: Vectors are not moved
+		assertEquals("Wrong transformed vector", new Vector(0, 2, 0), transform.transformVector(new Vector(1, 0, 0)));
+
+		// =============== Boundary Values Tests ==================
+
+		// TC04: Zero scale
+		assertThrows("Transform must be invertible", IllegalArgumentException.class,
+				() -> Transform.IDENTITY.scale(1, 0, 1));
+
+		// TC05: Small uniform scale is invertible
+		var small = Transform.IDENTITY.scale(1e-4);
+		assertEquals("Wrong inverse point of a small scale", new Point3D(1, 2, 3),
+				small.inversePoint(small.transformPoint(new Point3D(1, 2, 3))));
+
+		// TC06: Columns in the same direction (of any size)
+		assertThrows("Transform must be invertible", IllegalArgumentException.class,
+				() -> Transform.IDENTITY.rotate(new Vector(0, 0, 1), Math.PI / 4).scale(1, 0, 1));
+	}
+
+	/**
+	 * Test method for {@link primitives.Transform#transformNormal(Vector)}.
+	 */
+	@Test
+	public void testTransformNormal() {
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Normal of a plane stretched along x stays orthogonal to it
+		var transform = Transform.IDENTITY.scale(4, 1, 1);
+		Vector normal = new Vector(1, 1, 0).normalize(); // of the plane x + y = 1
+		Vector onPlane = transform.transformVector(new Vector(1, -1, 0));
+		Vector transformed = transform.transformNormal(normal);
+		assertEquals("Normal must be orthogonal to the plane", 0, transformed.dotProduct(onPlane), 1e-10);
+		assertEquals("Normal must be normalized", 1, transformed.length(), 1e-10);
+	}
+}
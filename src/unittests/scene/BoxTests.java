@@ -0,0 +1,419 @@
+package unittests.scene;
+
+import static org.junit.Assert.*;
+import static unittests.RenderFixture.*;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import org.junit.Test;
+import elements.Camera;
+import geometries.Geometries;
+import geometries.Plane;
+import geometries.Sphere;
+import geometries.Triangle;
+import primitives.*;
+import renderer.RayTracerBVH;
+import renderer.RayTracerBasic;
+import renderer.RayTracerBox;
+import renderer.RayTracerKdTree;
+import renderer.RayTracerOctree;
+import renderer.Render;
+import scene.Box;
+import scene.Scene;
+
+/**
+ * Testing Box
+ *
+ * @author David and Matan
+ */
+public class BoxTests {
+
+	/**
+	 * Test method for {@link scene.Box#Box(int, Geometries)} with several scenes
+	 * rendered at the same time.
+	 */
+	@Test
+	public void testConcurrentScenes() throws Exception {
+		Scene first = buildScene(1, 0, 100), second = buildScene(2, 500, 300);
+		// each scene alone
+		int[] firstAlone = render(first, new RayTracerBox(first).setBox(3), null);
+		int[] secondAlone = render(second, new RayTracerBox(second).setBox(3), null);
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Boxes of two scenes built before rendering both at the same time on a
+		// shared pool
+		var firstTracer = new RayTracerBox(first).setBox(3);
+		var secondTracer = new RayTracerBox(second).setBox(3);
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			Future<int[]> firstJob = pool.submit(() -> render(first, firstTracer, pool));
+			Future<int[]> secondJob = pool.submit(() -> render(second, secondTracer, pool));
+			assertArrayEquals("Wrong first image", firstAlone, firstJob.get());
+			assertArrayEquals("Wrong second image", secondAlone, secondJob.get());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Test method for {@link renderer.Render#setExecutor(ExecutorService)} with a
+	 * failing task - the render must fail instead of waiting for the progress.
+	 */
+	@Test(timeout = 10000)
+	public void testFailingTask() {
+		Scene scene = buildScene(3, 0, 100);
+		var tracer = new RayTracerBasic(scene) {
+			@Override
+			public Color traceRay(Ray ray) {
+				throw new IllegalArgumentException("Broken tracer");
+			}
+		};
+		var render = new Render() //
+				.setCamera(buildCamera(scene)) //
+				.setImageWriter(new PixelsWriter(100, 100)) //
+				.setRayTracer(tracer) //
+				.setDebugPrint();
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Tasks on a shared pool with the debug print
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			render.setExecutor(pool).setMultithreading(2);
+			assertThrows("The render must fail", IllegalStateException.class, render::renderImage);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Test method for {@link scene.Box#Box(int, Geometries)} with unbounded
+	 * geometries in the scene.
+	 */
+	@Test
+	public void testUnboundedGeometries() {
+		Scene scene = buildScene(3, 0, 100);
+		scene.geometries.add(new Plane(new Point3D(0, 0, -110), new Vector(0.1, 0.1, 1)) //
+				.setEmission(new Color(java.awt.Color.GRAY)) //
+				.setMaterial(new Material().setKd(0.5).setKs(0.5).setShininess(30)));
+		int[] expected = render(scene, new RayTracerBasic(scene), null);
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: A floor plane beside the grid
+		assertArrayEquals("Wrong image with box", expected, render(scene, new RayTracerBox(scene).setBox(3), null));
+
+		// TC02: A floor plane beside the hierarchies
+		assertArrayEquals("Wrong image with BVH", expected, render(scene, new RayTracerBVH(scene).setBVH(), null));
+		assertArrayEquals("Wrong image with kd-tree", expected,
+				render(scene, new RayTracerKdTree(scene).setKdTree(), null));
+		assertArrayEquals("Wrong image with octree", expected,
+				render(scene, new RayTracerOctree(scene).setOctree(4), null));
+
+		// =============== Boundary Values Tests ==================
+
+		// TC03: Only unbounded geometries in the scene
+		var planes = new Geometries(new Plane(new Point3D(0, 0, -10), new Vector(0, 0, 1)));
+		Ray ray = new Ray(new Point3D(0, 0, 0), new Vector(0, 0, -1));
+		var box = new Box(3, planes);
+		assertEquals("Wrong closest point", new Point3D(0, 0, -10),
+				box.findClosestIntersectionInTheBox(ray, Double.POSITIVE_INFINITY).point);
+		assertEquals("Wrong number of points", 1, box.findIntersectionsInTheBox(ray, true, 100).size());
+		assertEquals("Plane must block the ray", 0.0, box.occlusionInTheBox(ray, 100, 0.001), 0);
+	}
+
+	/**
+	 * Test method for {@link scene.Box#suggestDensity(Geometries)}.
+	 */
+	@Test
+	public void testSuggestDensity() {
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Small spheres spread in a big cube get a dense grid
+		int sparse = Box.suggestDensity(buildGeometries(1000));
+		assertTrue("Wrong density", sparse > 1 && sparse <= Box.MAX_SUGGESTED_DENSITY);
+
+		// TC02: Bigger spheres in the same cube get a coarser grid
+		var random = new Random(7);
+		var big = new Geometries();
+		for (int i = 0; i < 1000; ++i)
+			big.add(new Sphere(
+					new Point3D(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 100), 3));
+		assertTrue("Wrong density", Box.suggestDensity(big) < sparse);
+
+		// =============== Boundary Values Tests ==================
+
+		// TC03: Flat scene - the thin axis doesn't blow up the grid
+		var flat = new Geometries();
+		for (int i = 0; i < 10; ++i)
+			for (int j = 0; j < 10; ++j)
+				flat.add(new Triangle(new Point3D(i, j, 0), new Point3D(i + 1, j, 0), new Point3D(i, j + 1, 0)));
+		assertEquals("Wrong density", 2, Box.suggestDensity(flat));
+
+		// TC04: No bounded bodies
+		assertEquals("Wrong density", 1, Box.suggestDensity(new Geometries()));
+	}
+
+	/**
+	 * Test method for
+	 * {@link renderer.RayTracerBox#setAutoBox(Camera, int, int)}.
+	 */
+	@Test
+	public void testAutoBox() {
+		Scene scene = buildScene(4, 0, 100);
+		int[] expected = render(scene, new RayTracerBasic(scene), null);
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: The density chosen by the pilot renders the same image
+		var tracer = new RayTracerBox(scene).setAutoBox(buildCamera(scene), 100, 100);
+		assertTrue("Wrong density", tracer.getBoxDensity() >= 1);
+		assertTrue("Pilot cost is not measured", tracer.getPilotCost() > 0);
+		assertArrayEquals("Wrong image with automatic box", expected, render(scene, tracer, null));
+
+		// TC02: The density suggested by the statistics
+		tracer = new RayTracerBox(scene).setAutoBox();
+		assertEquals("Wrong density", Box.suggestDensity(scene.geometries), tracer.getBoxDensity());
+		assertEquals("Wrong pilot cost", 0, tracer.getPilotCost(), 0);
+		assertArrayEquals("Wrong image with automatic box", expected, render(scene, tracer, null));
+
+		// TC03: The pilot boxes built on several threads
+		tracer = new RayTracerBox(scene).setBuildThreads(2).setAutoBox(buildCamera(scene), 100, 100);
+		assertTrue("Pilot cost is not measured", tracer.getPilotCost() > 0);
+		assertArrayEquals("Wrong image with automatic box", expected, render(scene, tracer, null));
+	}
+
+	/**
+	 * build random small spheres in a cube
+	 *
+	 * @param count - number of spheres
+	 * @return the geometries
+	 */
+	private Geometries buildGeometries(int count) {
+		var random = new Random(7);
+		var geometries = new Geometries();
+		for (int i = 0; i < count; ++i)
+			geometries.add(new Sphere(
+					new Point3D(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 100), 1));
+		return geometries;
+	}
+
+	/**
+	 * build a box of two spheres from z=-11 to z=11 - the ray from (0,0,-100) in
+	 * the direction of the z axis enters the box at z=-11, passes a light at the
+	 * origin (at a distance of 100) inside the box and hits only the sphere at z=10
+	 * beyond the light
+	 *
+	 * @return the box
+	 */
+	private Box buildLightInTheBox() {
+		return new Box(3, new Geometries(new Sphere(new Point3D(0, 0, 10), 1), new Sphere(new Point3D(5, 5, -10), 1)));
+	}
+
+	/**
+	 * Test method for {@link scene.Box#Box(int, Geometries, long)}.
+	 */
+	@Test
+	public void testStorageLayout() {
+		var geometries = buildGeometries(1000);
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Default budget keeps the offsets of all the voxels
+		var dense = new Box(3, geometries);
+		assertTrue("Wrong layout", dense.isDense());
+
+		// TC02: Small budget keeps only the non empty voxels with the same content
+		var sparse = new Box(3, geometries, 1024);
+		assertFalse("Wrong layout", sparse.isDense());
+		assertEquals("Wrong voxel count", dense.getVoxelCount(), sparse.getVoxelCount());
+		assertEquals("Wrong reference count", dense.getReferenceCount(), sparse.getReferenceCount());
+		assertTrue("Voxels are missing", dense.getReferenceCount() >= 1000);
+
+		// =============== Boundary Values Tests ==================
+
+		// TC03: More references than an array can hold fail clearly instead of wrapping
+		// around
+		var huge = new Geometries();
+		for (int i = 0; i < 1000; ++i)
+			huge.add(new Sphere(new Point3D(50, 50, 50), 50));
+		assertThrows("The grid must be too big", IllegalStateException.class, () -> new Box(2000000, huge));
+	}
+
+	/**
+	 * Test method for {@link scene.Box#Box(int, Geometries, long, int)}.
+	 */
+	@Test
+	public void testParallelBuild() {
+		var geometries = buildGeometries(5000);
+		var sequential = new Box(3, geometries);
+		var parallel = new Box(3, geometries, Box.DEFAULT_MEMORY_BUDGET, 4);
+		var random = new Random(11);
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: The same voxels are built by several threads
+		assertEquals("Wrong voxel count", sequential.getVoxelCount(), parallel.getVoxelCount());
+		assertEquals("Wrong reference count", sequential.getReferenceCount(), parallel.getReferenceCount());
+		assertEquals("Wrong nested grids", sequential.getSubGridCount(), parallel.getSubGridCount());
+		assertTrue("Build time is not measured", parallel.getBuildTime() > 0);
+
+		// TC02: Rays find the same points in the same order
+		for (int i = 0; i < 100; ++i) {
+			Ray ray = new Ray(new Point3D(-10, random.nextDouble() * 100, random.nextDouble() * 100),
+					new Vector(1, random.nextDouble() - 0.5, random.nextDouble() - 0.5));
+			var expected = sequential.findIntersectionsInTheBox(ray, true, Double.POSITIVE_INFINITY);
+			var found = parallel.findIntersectionsInTheBox(ray, true, Double.POSITIVE_INFINITY);
+			assertEquals("Wrong points",
+					expected == null ? null : expected.stream().map(gp -> gp.geometry).collect(Collectors.toList()),
+					found == null ? null : found.stream().map(gp -> gp.geometry).collect(Collectors.toList()));
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link scene.Box#findIntersectionsInTheBox(Ray, boolean, double)}.
+	 */
+	@Test
+	public void testFindIntersectionsInTheBox() {
+		var geometries = buildGeometries(1000);
+		var dense = new Box(3, geometries);
+		var sparse = new Box(3, geometries, 1024);
+		var random = new Random(9);
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Random rays find the same closest points in both layouts as the bodies
+		// themselves
+		for (int i = 0; i < 200; ++i) {
+			Ray ray = new Ray(new Point3D(-10, random.nextDouble() * 100, random.nextDouble() * 100),
+					new Vector(1, random.nextDouble() - 0.5, random.nextDouble() - 0.5));
+			var expected = ray.findClosestGeoPoint(geometries.findGeoIntersections(ray));
+			var inDense = ray.findClosestGeoPoint(dense.findIntersectionsInTheBox(ray, false, Double.POSITIVE_INFINITY));
+			var inSparse = ray
+					.findClosestGeoPoint(sparse.findIntersectionsInTheBox(ray, false, Double.POSITIVE_INFINITY));
+			assertEquals("Wrong closest point", expected == null ? null : expected.geometry,
+					inDense == null ? null : inDense.geometry);
+			assertEquals("Wrong closest point", expected == null ? null : expected.geometry,
+					inSparse == null ? null : inSparse.geometry);
+		}
+
+		// TC02: Shadow ray finds each intersection once
+		Ray ray = new Ray(new Point3D(-10, 50, 50), new Vector(1, 0, 0));
+		var all = geometries.findGeoIntersections(ray);
+		var inSparse = sparse.findIntersectionsInTheBox(ray, true, Double.POSITIVE_INFINITY);
+		assertEquals("Wrong number of points", all == null ? 0 : all.size(), inSparse == null ? 0 : inSparse.size());
+
+		// TC03: Primary ray tests a big triangle over many voxels once
+		var withTriangle = buildGeometries(1000);
+		withTriangle.add(new Triangle(new Point3D(0, 0, -5), new Point3D(100, 0, -5), new Point3D(0, 100, 105)));
+		ray = new Ray(new Point3D(1, 1, 150), new Vector(0.4, 0.4, -1));
+		var points = new Box(3, withTriangle).findIntersectionsInTheBox(ray, false, Double.POSITIVE_INFINITY);
+		assertEquals("Triangle is tested more than once", 1,
+				points.stream().filter(gp -> gp.geometry instanceof Triangle).count());
+
+		// =============== Boundary Values Tests ==================
+
+		// TC04: Ray misses the box
+		ray = new Ray(new Point3D(-10, 500, 50), new Vector(1, 0, 0));
+		assertNull("There is no intersection", sparse.findIntersectionsInTheBox(ray, false, Double.POSITIVE_INFINITY));
+
+		// TC05: Shadow ray from outside the box to a light inside it - the body beyond
+		// the light is not found
+		Box lit = buildLightInTheBox();
+		assertNull("The body beyond the light is found",
+				lit.findIntersectionsInTheBox(new Ray(new Point3D(0, 0, -100), new Vector(0, 0, 1)), true, 100));
+	}
+
+	/**
+	 * Test method for {@link scene.Box#findClosestIntersectionInTheBox(Ray, double)}.
+	 */
+	@Test
+	public void testFindClosestIntersectionInTheBox() {
+		var geometries = buildGeometries(1000);
+		var dense = new Box(3, geometries);
+		var sparse = new Box(3, geometries, 1024);
+		var random = new Random(17);
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Random rays find the same closest points in both layouts as the bodies
+		// themselves
+		for (int i = 0; i < 200; ++i) {
+			Ray ray = new Ray(new Point3D(-10, random.nextDouble() * 100, random.nextDouble() * 100),
+					new Vector(1, random.nextDouble() - 0.5, random.nextDouble() - 0.5));
+			var expected = geometries.findClosestIntersection(ray);
+			var inDense = dense.findClosestIntersectionInTheBox(ray, Double.POSITIVE_INFINITY);
+			var inSparse = sparse.findClosestIntersectionInTheBox(ray, Double.POSITIVE_INFINITY);
+			assertEquals("Wrong closest point", expected == null ? null : expected.geometry,
+					inDense == null ? null : inDense.geometry);
+			assertEquals("Wrong closest point", expected == null ? null : expected.geometry,
+					inSparse == null ? null : inSparse.geometry);
+		}
+
+		// =============== Boundary Values Tests ==================
+
+		// TC02: Ray misses the box
+		Ray ray = new Ray(new Point3D(-10, 500, 50), new Vector(1, 0, 0));
+		assertNull("There is no intersection", sparse.findClosestIntersectionInTheBox(ray, Double.POSITIVE_INFINITY));
+
+		// TC03: Ray from outside the box with a maximum distance inside it - the body
+		// beyond the distance is not found
+		Box lit = buildLightInTheBox();
+		assertNull("The body beyond the distance is found",
+				lit.findClosestIntersectionInTheBox(new Ray(new Point3D(0, 0, -100), new Vector(0, 0, 1)), 100));
+	}
+
+	/**
+	 * Test method for {@link scene.Box#occlusionInTheBox(Ray, double, double)}.
+	 */
+	@Test
+	public void testOcclusionInTheBox() {
+		var geometries = buildGeometries(1000);
+		for (var body : geometries.getBudies())
+			((Sphere) body).setMaterial(new Material().setKt(0.5));
+		var dense = new Box(3, geometries);
+		var sparse = new Box(3, geometries, 1024);
+		var random = new Random(13);
+
+		// ============ Equivalence Partitions Tests ==============
+
+		// TC01: Random shadow rays pass the same light as through all the bodies
+		for (int i = 0; i < 200; ++i) {
+			Ray ray = new Ray(new Point3D(random.nextDouble() * 100, random.nextDouble() * 100, 50),
+					new Vector(random.nextDouble() - 0.5, random.nextDouble() - 0.5, 1));
+			double expected = geometries.occlusion(ray, 60, 0.001);
+			assertEquals("Wrong transmittance", expected, dense.occlusionInTheBox(ray, 60, 0.001), 1e-10);
+			assertEquals("Wrong transmittance", expected, sparse.occlusionInTheBox(ray, 60, 0.001), 1e-10);
+		}
+
+		// TC02: Ray through the center of a transparent sphere is blocked below the
+		// threshold
+		Point3D center = ((Sphere) geometries.getBudies().get(0)).getCenter();
+		Ray ray = new Ray(new Point3D(-10, center.getY(), center.getZ()), new Vector(1, 0, 0));
+		assertEquals("Ray must be blocked", 0.0, sparse.occlusionInTheBox(ray, Double.POSITIVE_INFINITY, 0.3), 0);
+
+		// =============== Boundary Values Tests ==================
+
+		// TC03: Ray misses the box
+		ray = new Ray(new Point3D(-10, 500, 50), new Vector(1, 0, 0));
+		assertEquals("There is no intersection", 1.0, sparse.occlusionInTheBox(ray, Double.POSITIVE_INFINITY, 0.001),
+				0);
+
+		// TC04: Shadow ray from outside the box to a light inside it - the body beyond
+		// the light does not block it
+		Box lit = buildLightInTheBox();
+		assertEquals("The body beyond the light blocks the ray", 1.0,
+				lit.occlusionInTheBox(new Ray(new Point3D(0, 0, -100), new Vector(0, 0, 1)), 100, 0.001), 0);
+
+		// TC05: Zero threshold - the exact transmittance, an opaque body blocks the ray
+		assertEquals("Opaque body must block the ray", 0.0,
+				lit.occlusionInTheBox(new Ray(new Point3D(0, 0, -100), new Vector(0, 0, 1)), 200, 0), 0);
+		ray = new Ray(new Point3D(-10, center.getY(), center.getZ()), new Vector(1, 0, 0));
+		assertEquals("Wrong transmittance", geometries.occlusion(ray, Double.POSITIVE_INFINITY, 0),
+				sparse.occlusionInTheBox(ray, Double.POSITIVE_INFINITY, 0), 1e-10);
+	}
+}